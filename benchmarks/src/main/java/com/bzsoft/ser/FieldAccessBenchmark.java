@@ -0,0 +1,111 @@
+package com.bzsoft.ser;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Field reads and writes through {@link FieldAccessor} and through core
+ * reflection, the way the bean serializer walks the fields of a class. In the
+ * ser package, the accessors are package private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAccessBenchmark {
+
+	public static class Bean {
+
+		private long		id			= 1000000L;
+		private int			quantity	= 42;
+		private double		price		= 12.5;
+		private boolean	paid		= true;
+		private String		customer	= "customer-1";
+		private Object		status	= "NEW";
+	}
+
+	private Bean				bean;
+	private Field[]			fields;
+	private FieldAccessor[]	accessors;
+	private Field				id;
+	private FieldAccessor	idAccessor;
+
+	@Setup
+	public void setup() throws Exception {
+		bean = new Bean();
+		final List<Field> list = new ArrayList<Field>();
+		for (final Field f : Bean.class.getDeclaredFields()) {
+			if (!Modifier.isStatic(f.getModifiers())) {
+				f.setAccessible(true);
+				list.add(f);
+			}
+		}
+		fields = list.toArray(new Field[list.size()]);
+		accessors = new FieldAccessor[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			accessors[i] = FieldAccessor.of(fields[i]);
+		}
+		id = Bean.class.getDeclaredField("id");
+		id.setAccessible(true);
+		idAccessor = FieldAccessor.of(id);
+	}
+
+	@Benchmark
+	public void reflectionGetAll(final Blackhole bh) throws IllegalAccessException {
+		for (final Field f : fields) {
+			bh.consume(f.get(bean));
+		}
+	}
+
+	@Benchmark
+	public void accessorGetAll(final Blackhole bh) {
+		for (final FieldAccessor a : accessors) {
+			bh.consume(a.get(bean));
+		}
+	}
+
+	@Benchmark
+	public void reflectionCopyAll() throws IllegalAccessException {
+		for (final Field f : fields) {
+			f.set(bean, f.get(bean));
+		}
+	}
+
+	@Benchmark
+	public void accessorCopyAll() {
+		for (final FieldAccessor a : accessors) {
+			a.set(bean, a.get(bean));
+		}
+	}
+
+	@Benchmark
+	public long reflectionLong() throws IllegalAccessException {
+		final long v = id.getLong(bean) + 1;
+		id.setLong(bean, v);
+		return v;
+	}
+
+	@Benchmark
+	public long accessorLong() {
+		final long v = idAccessor.getLong(bean) + 1;
+		idAccessor.setLong(bean, v);
+		return v;
+	}
+}
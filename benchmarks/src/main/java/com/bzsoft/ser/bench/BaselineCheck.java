@@ -0,0 +1,164 @@
+package com.bzsoft.ser.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Release gate. Runs {@link SerializationBenchmark} and compares the result
+ * against a baseline file:
+ * <ul>
+ * <li><code>size.*</code> encoded size in bytes, must not grow.</li>
+ * <li><code>encode.speedup.*</code>, <code>decode.speedup.*</code> ser
+ * throughput divided by java.io throughput measured in the same run, so the
+ * value does not depend on the machine. Must not drop more than the
+ * tolerance.</li>
+ * <li><code>encode.alloc.*</code>, <code>decode.alloc.*</code> bytes
+ * allocated per operation. Must not grow more than the tolerance.</li>
+ * </ul>
+ * Usage: <code>BaselineCheck [--baseline file] [--tolerance 0.15] [--quick] [--sizes-only] [--update]</code>
+ */
+public final class BaselineCheck {
+
+	private static final String	ALLOC_NORM	= "gc.alloc.rate.norm";
+
+	private BaselineCheck() {
+		// main class
+	}
+
+	public static void main(final String[] args) throws Exception {
+		File baselineFile = new File("baseline.properties");
+		double tolerance = 0.15;
+		boolean update = false;
+		boolean quick = false;
+		boolean sizesOnly = false;
+		for (int i = 0; i < args.length; i++) {
+			if ("--baseline".equals(args[i])) {
+				baselineFile = new File(args[++i]);
+			} else if ("--tolerance".equals(args[i])) {
+				tolerance = Double.parseDouble(args[++i]);
+			} else if ("--update".equals(args[i])) {
+				update = true;
+			} else if ("--quick".equals(args[i])) {
+				quick = true;
+			} else if ("--sizes-only".equals(args[i])) {
+				sizesOnly = true;
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + args[i]);
+			}
+		}
+		final Map<String, Double> current = new TreeMap<String, Double>();
+		for (final String name : Payloads.NAMES) {
+			current.put("size." + name, (double) Payloads.serEncode(Payloads.create(name)).length);
+		}
+		if (!sizesOnly) {
+			measure(current, quick);
+		}
+		if (update) {
+			write(baselineFile, current);
+			System.out.println("Baseline written to " + baselineFile);
+			return;
+		}
+		final Properties baseline = new Properties();
+		final InputStream is = new FileInputStream(baselineFile);
+		try {
+			baseline.load(is);
+		} finally {
+			is.close();
+		}
+		int failures = 0;
+		for (final Map.Entry<String, Double> e : current.entrySet()) {
+			final String key = e.getKey();
+			final String expected = baseline.getProperty(key);
+			if (expected == null) {
+				System.out.println(String.format(Locale.ROOT, "NEW   %-28s %14.3f", key, e.getValue()));
+				continue;
+			}
+			final double base = Double.parseDouble(expected);
+			final double value = e.getValue();
+			final boolean ok;
+			if (key.startsWith("size.")) {
+				ok = value <= base;
+			} else if (key.contains(".speedup.")) {
+				ok = value >= base * (1 - tolerance);
+			} else {
+				ok = value <= base * (1 + tolerance) + 16;
+			}
+			if (!ok) {
+				failures++;
+			}
+			System.out.println(String.format(Locale.ROOT, "%-5s %-28s %14.3f baseline %14.3f", ok ? "OK" : "FAIL", key, value, base));
+		}
+		if (failures > 0) {
+			System.out.println(failures + " regression(s) against " + baselineFile);
+			System.exit(1);
+		}
+	}
+
+	private static void measure(final Map<String, Double> current, final boolean quick) throws RunnerException {
+		final ChainedOptionsBuilder opts = new OptionsBuilder().include(SerializationBenchmark.class.getName()).addProfiler(GCProfiler.class);
+		if (quick) {
+			opts.warmupIterations(2).warmupTime(TimeValue.milliseconds(500)).measurementIterations(3).measurementTime(TimeValue.milliseconds(500));
+		}
+		final Collection<RunResult> results = new Runner(opts.build()).run();
+		final Map<String, Double> scores = new TreeMap<String, Double>();
+		for (final RunResult r : results) {
+			final String method = r.getParams().getBenchmark();
+			final String key = method.substring(method.lastIndexOf('.') + 1) + "." + r.getParams().getParam("payload");
+			scores.put(key, r.getPrimaryResult().getScore());
+			for (final Map.Entry<String, Result> e : r.getSecondaryResults().entrySet()) {
+				if (e.getKey().endsWith(ALLOC_NORM)) {
+					scores.put(key + ".alloc", e.getValue().getScore());
+				}
+			}
+		}
+		for (final String name : Payloads.NAMES) {
+			for (final String op : new String[] { "encode", "decode" }) {
+				final String suffix = Character.toUpperCase(op.charAt(0)) + op.substring(1) + "." + name;
+				final Double ser = scores.get("ser" + suffix);
+				final Double jdk = scores.get("jdk" + suffix);
+				if (ser != null && jdk != null) {
+					current.put(op + ".speedup." + name, ser / jdk);
+				}
+				final Double alloc = scores.get("ser" + suffix + ".alloc");
+				if (alloc != null) {
+					current.put(op + ".alloc." + name, alloc);
+				}
+			}
+		}
+	}
+
+	private static void write(final File file, final Map<String, Double> values) throws IOException {
+		final PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.ISO_8859_1));
+		try {
+			w.println("# ser performance baseline, regenerate with: BaselineCheck --update");
+			w.println("# size.*           encoded bytes (must not grow)");
+			w.println("# *.speedup.*      ser ops/s divided by java.io ops/s in the same run (must not drop)");
+			w.println("# *.alloc.*        bytes allocated per operation (must not grow)");
+			for (final Map.Entry<String, Double> e : values.entrySet()) {
+				w.println(e.getKey() + "=" + String.format(Locale.ROOT, "%.3f", e.getValue()));
+			}
+		} finally {
+			w.close();
+		}
+	}
+}
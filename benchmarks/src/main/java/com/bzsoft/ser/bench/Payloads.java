@@ -0,0 +1,159 @@
+package com.bzsoft.ser.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.bzsoft.ser.ObjectInputStream;
+import com.bzsoft.ser.ObjectOutputStream;
+
+/**
+ * Benchmark payloads, one per family of header codes written by
+ * BaseSerializer. Every payload is deterministic so the encoded sizes can be
+ * recorded in the regression baseline.
+ */
+public final class Payloads {
+
+	public static final String[]	NAMES	= { "smallInt", "int", "packedLong", "string8", "string64", "string1024", "intArray", "longArray",
+			"doubleArray", "booleanArray", "objectArray", "hashMap", "treeMap", "bean", "beanList" };
+
+	private static final long		SEED	= 0x5EEDL;
+
+	public static final class Order implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private long					id;
+		private String					customer;
+		private String					status;
+		private int						quantity;
+		private double					price;
+		private boolean				paid;
+		private Date					created;
+
+		Order(final Random r, final int i) {
+			id = 1000000L + i;
+			customer = "customer-" + r.nextInt(1000);
+			status = i % 3 == 0 ? "NEW" : "SHIPPED";
+			quantity = r.nextInt(100);
+			price = r.nextInt(100000) / 100D;
+			paid = r.nextBoolean();
+			created = new Date(1400000000000L + i * 1000L);
+		}
+	}
+
+	private Payloads() {
+		// util class
+	}
+
+	public static Object create(final String name) {
+		final Random r = new Random(SEED);
+		if ("smallInt".equals(name)) {
+			return Integer.valueOf(7);
+		} else if ("int".equals(name)) {
+			return Integer.valueOf(123456789);
+		} else if ("packedLong".equals(name)) {
+			return Long.valueOf(1234567890123L);
+		} else if ("string8".equals(name)) {
+			return randomString(r, 8);
+		} else if ("string64".equals(name)) {
+			return randomString(r, 64);
+		} else if ("string1024".equals(name)) {
+			return randomString(r, 1024);
+		} else if ("intArray".equals(name)) {
+			final int[] a = new int[1024];
+			for (int i = 0; i < a.length; i++) {
+				a[i] = r.nextInt(1 << 20);
+			}
+			return a;
+		} else if ("longArray".equals(name)) {
+			final long[] a = new long[1024];
+			for (int i = 0; i < a.length; i++) {
+				a[i] = 1400000000000L + i * 1000L + r.nextInt(100);
+			}
+			return a;
+		} else if ("doubleArray".equals(name)) {
+			final double[] a = new double[1024];
+			for (int i = 0; i < a.length; i++) {
+				a[i] = r.nextGaussian();
+			}
+			return a;
+		} else if ("booleanArray".equals(name)) {
+			final boolean[] a = new boolean[1024];
+			for (int i = 0; i < a.length; i++) {
+				a[i] = r.nextInt(10) == 0;
+			}
+			return a;
+		} else if ("objectArray".equals(name)) {
+			final Object[] a = new Object[256];
+			for (int i = 0; i < a.length; i++) {
+				a[i] = i % 2 == 0 ? (Object) Integer.valueOf(r.nextInt()) : randomString(r, 12);
+			}
+			return a;
+		} else if ("hashMap".equals(name)) {
+			final Map<String, Integer> m = new HashMap<String, Integer>();
+			for (int i = 0; i < 256; i++) {
+				m.put("key-" + i, r.nextInt(1000));
+			}
+			return m;
+		} else if ("treeMap".equals(name)) {
+			final Map<String, Integer> m = new TreeMap<String, Integer>();
+			for (int i = 0; i < 256; i++) {
+				m.put("key-" + i, r.nextInt(1000));
+			}
+			return m;
+		} else if ("bean".equals(name)) {
+			return new Order(r, 1);
+		} else if ("beanList".equals(name)) {
+			final List<Order> l = new ArrayList<Order>();
+			for (int i = 0; i < 256; i++) {
+				l.add(new Order(r, i));
+			}
+			return l;
+		}
+		throw new IllegalArgumentException("Unknown payload: " + name);
+	}
+
+	private static String randomString(final Random r, final int size) {
+		final String chars = "0123456789abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+		final StringBuilder b = new StringBuilder(size);
+		for (int i = 0; i < size; i++) {
+			b.append(chars.charAt(r.nextInt(chars.length())));
+		}
+		return b.toString();
+	}
+
+	public static byte[] serEncode(final Object o) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeObject(o);
+		out.flush();
+		return bos.toByteArray();
+	}
+
+	public static Object serDecode(final byte[] b) throws IOException, ClassNotFoundException {
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(b));
+		return in.readObject();
+	}
+
+	public static byte[] jdkEncode(final Object o) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(bos);
+		out.writeObject(o);
+		out.flush();
+		return bos.toByteArray();
+	}
+
+	public static Object jdkDecode(final byte[] b) throws IOException, ClassNotFoundException {
+		final java.io.ObjectInputStream in = new java.io.ObjectInputStream(new ByteArrayInputStream(b));
+		return in.readObject();
+	}
+}
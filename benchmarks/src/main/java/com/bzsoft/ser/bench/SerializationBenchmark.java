@@ -0,0 +1,66 @@
+package com.bzsoft.ser.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encode and decode throughput of every payload family, for ser and for
+ * java.io object serialization. Run with <code>-prof gc</code> to get the
+ * allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-opens", "java.base/java.lang=ALL-UNNAMED", "--add-opens", "java.base/java.util=ALL-UNNAMED",
+		"--add-modules", "jdk.incubator.vector" })
+public class SerializationBenchmark {
+
+	@Param({ "smallInt", "int", "packedLong", "string8", "string64", "string1024", "intArray", "longArray", "doubleArray", "booleanArray",
+			"objectArray", "hashMap", "treeMap", "bean", "beanList" })
+	public String	payload;
+
+	private Object	value;
+	private byte[]	serBytes;
+	private byte[]	jdkBytes;
+
+	@Setup
+	public void setup() throws IOException {
+		value = Payloads.create(payload);
+		serBytes = Payloads.serEncode(value);
+		jdkBytes = Payloads.jdkEncode(value);
+	}
+
+	@Benchmark
+	public byte[] serEncode() throws IOException {
+		return Payloads.serEncode(value);
+	}
+
+	@Benchmark
+	public Object serDecode() throws IOException, ClassNotFoundException {
+		return Payloads.serDecode(serBytes);
+	}
+
+	@Benchmark
+	public byte[] jdkEncode() throws IOException {
+		return Payloads.jdkEncode(value);
+	}
+
+	@Benchmark
+	public Object jdkDecode() throws IOException, ClassNotFoundException {
+		return Payloads.jdkDecode(jdkBytes);
+	}
+}
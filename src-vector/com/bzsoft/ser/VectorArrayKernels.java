@@ -0,0 +1,259 @@
+package com.bzsoft.ser;
+
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ArrayKernels} on the Vector API, with the preferred vector size of
+ * the CPU. Big-endian output is made by swapping bytes with shuffles, and
+ * narrowing uses lane casts to a smaller shape. Narrowings whose result would
+ * be below 64 bits stay scalar, as do the tails of the arrays.
+ * <p>
+ * Only loaded by {@link ArrayKernels#INSTANCE} when the incubator module is
+ * present.
+ */
+final class VectorArrayKernels extends ArrayKernels {
+
+	private static final VectorSpecies<Integer>	I				= IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Long>		L				= LongVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Float>		F				= FloatVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Double>	D				= DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Byte>		B				= ByteVector.SPECIES_PREFERRED;
+	private static final boolean						SWAP			= ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+	/** ints and longs narrowed to bytes, shorts and ints, null if too small */
+	private static final VectorSpecies<Byte>		INT_BYTES	= species(byte.class, I.vectorBitSize() / 4);
+	private static final VectorSpecies<Short>		INT_SHORTS	= species(short.class, I.vectorBitSize() / 2);
+	private static final VectorSpecies<Byte>		LONG_BYTES	= species(byte.class, L.vectorBitSize() / 8);
+	private static final VectorSpecies<Short>		LONG_SHORTS	= species(short.class, L.vectorBitSize() / 4);
+	private static final VectorSpecies<Integer>	LONG_INTS	= species(int.class, L.vectorBitSize() / 2);
+
+	private static final VectorShuffle<Byte>		SWAP4			= swap(B, 4);
+	private static final VectorShuffle<Byte>		SWAP8			= swap(B, 8);
+	private static final VectorShuffle<Byte>		INT_SWAP2	= INT_SHORTS == null ? null : swap(byteSpecies(INT_SHORTS), 2);
+	private static final VectorShuffle<Byte>		LONG_SWAP2	= LONG_SHORTS == null ? null : swap(byteSpecies(LONG_SHORTS), 2);
+	private static final VectorShuffle<Byte>		LONG_SWAP4	= LONG_INTS == null ? null : swap(byteSpecies(LONG_INTS), 4);
+
+	private static <E> VectorSpecies<E> species(final Class<E> type, final int bits) {
+		return bits < 64 ? null : VectorSpecies.of(type, VectorShape.forBitSize(bits));
+	}
+
+	private static VectorSpecies<Byte> byteSpecies(final VectorSpecies<?> species) {
+		return VectorSpecies.of(byte.class, species.vectorShape());
+	}
+
+	/**
+	 * Reverses the bytes of every <code>width</code> byte group.
+	 */
+	private static VectorShuffle<Byte> swap(final VectorSpecies<Byte> species, final int width) {
+		return VectorShuffle.fromOp(species, i -> i & -width | width - 1 - (i & width - 1));
+	}
+
+	private static ByteVector toBigEndian(final ByteVector v, final VectorShuffle<Byte> swap) {
+		return SWAP ? v.rearrange(swap) : v;
+	}
+
+	@Override
+	protected long range(final int[] a) {
+		IntVector vmin = IntVector.broadcast(I, Integer.MAX_VALUE);
+		IntVector vmax = IntVector.broadcast(I, Integer.MIN_VALUE);
+		final int bound = I.loopBound(a.length);
+		int i = 0;
+		for (; i < bound; i += I.length()) {
+			final IntVector v = IntVector.fromArray(I, a, i);
+			vmin = vmin.min(v);
+			vmax = vmax.max(v);
+		}
+		int min = vmin.reduceLanes(VectorOperators.MIN);
+		int max = vmax.reduceLanes(VectorOperators.MAX);
+		for (; i < a.length; i++) {
+			min = Math.min(min, a[i]);
+			max = Math.max(max, a[i]);
+		}
+		return (long) min << 32 | max & 0xFFFFFFFFL;
+	}
+
+	@Override
+	protected long[] range(final long[] a) {
+		LongVector vmin = LongVector.broadcast(L, Long.MAX_VALUE);
+		LongVector vmax = LongVector.broadcast(L, Long.MIN_VALUE);
+		final int bound = L.loopBound(a.length);
+		int i = 0;
+		for (; i < bound; i += L.length()) {
+			final LongVector v = LongVector.fromArray(L, a, i);
+			vmin = vmin.min(v);
+			vmax = vmax.max(v);
+		}
+		long min = vmin.reduceLanes(VectorOperators.MIN);
+		long max = vmax.reduceLanes(VectorOperators.MAX);
+		for (; i < a.length; i++) {
+			min = Math.min(min, a[i]);
+			max = Math.max(max, a[i]);
+		}
+		return new long[] { min, max };
+	}
+
+	@Override
+	protected void narrow(final int[] src, final int from, final int to, final byte[] dst, int off, final int width) {
+		final int n = I.length();
+		int i = from;
+		if (width == 1 && INT_BYTES != null) {
+			for (; i + n <= to; i += n, off += n) {
+				IntVector.fromArray(I, src, i).castShape(INT_BYTES, 0).reinterpretAsBytes().intoArray(dst, off);
+			}
+		} else if (width == 2 && INT_SHORTS != null) {
+			for (; i + n <= to; i += n, off += 2 * n) {
+				toBigEndian(IntVector.fromArray(I, src, i).castShape(INT_SHORTS, 0).reinterpretAsBytes(), INT_SWAP2).intoArray(dst, off);
+			}
+		}
+		super.narrow(src, i, to, dst, off, width);
+	}
+
+	@Override
+	protected void narrow(final long[] src, final int from, final int to, final byte[] dst, int off, final int width) {
+		final int n = L.length();
+		int i = from;
+		if (width == 1 && LONG_BYTES != null) {
+			for (; i + n <= to; i += n, off += n) {
+				LongVector.fromArray(L, src, i).castShape(LONG_BYTES, 0).reinterpretAsBytes().intoArray(dst, off);
+			}
+		} else if (width == 2 && LONG_SHORTS != null) {
+			for (; i + n <= to; i += n, off += 2 * n) {
+				toBigEndian(LongVector.fromArray(L, src, i).castShape(LONG_SHORTS, 0).reinterpretAsBytes(), LONG_SWAP2).intoArray(dst, off);
+			}
+		} else if (width == 4 && LONG_INTS != null) {
+			for (; i + n <= to; i += n, off += 4 * n) {
+				toBigEndian(LongVector.fromArray(L, src, i).castShape(LONG_INTS, 0).reinterpretAsBytes(), LONG_SWAP4).intoArray(dst, off);
+			}
+		}
+		super.narrow(src, i, to, dst, off, width);
+	}
+
+	@Override
+	protected void widen(final byte[] src, int off, final int[] dst, final int from, final int to, final int width) {
+		final int n = I.length();
+		int i = from;
+		if (width == 1 && INT_BYTES != null) {
+			for (; i + n <= to; i += n, off += n) {
+				((IntVector) ByteVector.fromArray(INT_BYTES, src, off).castShape(I, 0)).intoArray(dst, i);
+			}
+		} else if (width == 2 && INT_SHORTS != null) {
+			final VectorSpecies<Byte> bytes = INT_SWAP2.vectorSpecies();
+			for (; i + n <= to; i += n, off += 2 * n) {
+				((IntVector) toBigEndian(ByteVector.fromArray(bytes, src, off), INT_SWAP2).reinterpretAsShorts().castShape(I, 0)).intoArray(dst, i);
+			}
+		}
+		super.widen(src, off, dst, i, to, width);
+	}
+
+	@Override
+	protected void widen(final byte[] src, int off, final long[] dst, final int from, final int to, final int width) {
+		final int n = L.length();
+		int i = from;
+		if (width == 1 && LONG_BYTES != null) {
+			for (; i + n <= to; i += n, off += n) {
+				((LongVector) ByteVector.fromArray(LONG_BYTES, src, off).castShape(L, 0)).intoArray(dst, i);
+			}
+		} else if (width == 2 && LONG_SHORTS != null) {
+			final VectorSpecies<Byte> bytes = LONG_SWAP2.vectorSpecies();
+			for (; i + n <= to; i += n, off += 2 * n) {
+				((LongVector) toBigEndian(ByteVector.fromArray(bytes, src, off), LONG_SWAP2).reinterpretAsShorts().castShape(L, 0)).intoArray(dst, i);
+			}
+		} else if (width == 4 && LONG_INTS != null) {
+			final VectorSpecies<Byte> bytes = LONG_SWAP4.vectorSpecies();
+			for (; i + n <= to; i += n, off += 4 * n) {
+				((LongVector) toBigEndian(ByteVector.fromArray(bytes, src, off), LONG_SWAP4).reinterpretAsInts().castShape(L, 0)).intoArray(dst, i);
+			}
+		}
+		super.widen(src, off, dst, i, to, width);
+	}
+
+	@Override
+	protected void put(final int[] src, final int from, final int to, final byte[] dst, int off) {
+		final int n = I.length();
+		int i = from;
+		for (; i + n <= to; i += n, off += 4 * n) {
+			toBigEndian(IntVector.fromArray(I, src, i).reinterpretAsBytes(), SWAP4).intoArray(dst, off);
+		}
+		super.put(src, i, to, dst, off);
+	}
+
+	@Override
+	protected void put(final long[] src, final int from, final int to, final byte[] dst, int off) {
+		final int n = L.length();
+		int i = from;
+		for (; i + n <= to; i += n, off += 8 * n) {
+			toBigEndian(LongVector.fromArray(L, src, i).reinterpretAsBytes(), SWAP8).intoArray(dst, off);
+		}
+		super.put(src, i, to, dst, off);
+	}
+
+	@Override
+	protected void put(final float[] src, final int from, final int to, final byte[] dst, int off) {
+		final int n = F.length();
+		int i = from;
+		for (; i + n <= to; i += n, off += 4 * n) {
+			toBigEndian(FloatVector.fromArray(F, src, i).reinterpretAsBytes(), SWAP4).intoArray(dst, off);
+		}
+		super.put(src, i, to, dst, off);
+	}
+
+	@Override
+	protected void put(final double[] src, final int from, final int to, final byte[] dst, int off) {
+		final int n = D.length();
+		int i = from;
+		for (; i + n <= to; i += n, off += 8 * n) {
+			toBigEndian(DoubleVector.fromArray(D, src, i).reinterpretAsBytes(), SWAP8).intoArray(dst, off);
+		}
+		super.put(src, i, to, dst, off);
+	}
+
+	@Override
+	protected void get(final byte[] src, int off, final int[] dst, final int from, final int to) {
+		final int n = I.length();
+		int i = from;
+		for (; i + n <= to; i += n, off += 4 * n) {
+			toBigEndian(ByteVector.fromArray(B, src, off), SWAP4).reinterpretAsInts().intoArray(dst, i);
+		}
+		super.get(src, off, dst, i, to);
+	}
+
+	@Override
+	protected void get(final byte[] src, int off, final long[] dst, final int from, final int to) {
+		final int n = L.length();
+		int i = from;
+		for (; i + n <= to; i += n, off += 8 * n) {
+			toBigEndian(ByteVector.fromArray(B, src, off), SWAP8).reinterpretAsLongs().intoArray(dst, i);
+		}
+		super.get(src, off, dst, i, to);
+	}
+
+	@Override
+	protected void get(final byte[] src, int off, final float[] dst, final int from, final int to) {
+		final int n = F.length();
+		int i = from;
+		for (; i + n <= to; i += n, off += 4 * n) {
+			toBigEndian(ByteVector.fromArray(B, src, off), SWAP4).reinterpretAsFloats().intoArray(dst, i);
+		}
+		super.get(src, off, dst, i, to);
+	}
+
+	@Override
+	protected void get(final byte[] src, int off, final double[] dst, final int from, final int to) {
+		final int n = D.length();
+		int i = from;
+		for (; i + n <= to; i += n, off += 8 * n) {
+			toBigEndian(ByteVector.fromArray(B, src, off), SWAP8).reinterpretAsDoubles().intoArray(dst, i);
+		}
+		super.get(src, off, dst, i, to);
+	}
+}
@@ -0,0 +1,255 @@
+package com.bzsoft.ser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class file of the hidden classes behind {@link FieldAccessor}.
+ * The class takes the method handles of its field from the class data into
+ * static final fields and overrides the accessor methods of the field kind
+ * with a call to the matching handle. The bytes only depend on the kind.
+ */
+final class AccessorClassWriter {
+
+	/** Java 17, no stack map needed as the code has no branches */
+	private static final int			VERSION				= 61;
+
+	private static final int			ACC_PUBLIC			= 0x0001;
+	private static final int			ACC_PRIVATE			= 0x0002;
+	private static final int			ACC_STATIC			= 0x0008;
+	private static final int			ACC_FINAL			= 0x0010;
+	private static final int			ACC_SUPER			= 0x0020;
+	private static final int			ACC_SYNTHETIC		= 0x1000;
+
+	private static final int			CONSTANT_UTF8		= 1;
+	private static final int			CONSTANT_CLASS		= 7;
+	private static final int			CONSTANT_STRING	= 8;
+	private static final int			CONSTANT_FIELD		= 9;
+	private static final int			CONSTANT_METHOD	= 10;
+	private static final int			CONSTANT_NAME_TYPE	= 12;
+
+	private static final int			ICONST_0				= 0x03;
+	private static final int			LDC_W					= 0x13;
+	private static final int			ALOAD_0				= 0x2a;
+	private static final int			ALOAD_1				= 0x2b;
+	private static final int			GETSTATIC			= 0xb2;
+	private static final int			PUTSTATIC			= 0xb3;
+	private static final int			INVOKEVIRTUAL		= 0xb6;
+	private static final int			INVOKESPECIAL		= 0xb7;
+	private static final int			INVOKESTATIC		= 0xb8;
+	private static final int			CHECKCAST			= 0xc0;
+	private static final int			ARETURN				= 0xb0;
+	private static final int			RETURN				= 0xb1;
+
+	/** by field kind: accessor name suffix, descriptor, load of the value in slot 2 and return */
+	private static final String[]		TYPE_NAMES			= { null, "Boolean", "Byte", "Char", "Short", "Int", "Long", "Float", "Double" };
+	private static final String		DESCRIPTORS			= "LZBCSIJFD";
+	private static final int[]			LOADS					= { 0x2c, 0x1c, 0x1c, 0x1c, 0x1c, 0x1c, 0x20, 0x24, 0x28 };
+	private static final int[]			RETURNS				= { ARETURN, 0xac, 0xac, 0xac, 0xac, 0xac, 0xad, 0xae, 0xaf };
+
+	private static final String		NAME					= "com/bzsoft/ser/FieldAccessor$Generated";
+	private static final String		SUPER					= "com/bzsoft/ser/FieldAccessor";
+	private static final String		HANDLE				= "java/lang/invoke/MethodHandle";
+	private static final String		HANDLES				= "java/lang/invoke/MethodHandles";
+	private static final String		HANDLE_DESC			= "Ljava/lang/invoke/MethodHandle;";
+	private static final String		OBJECT_DESC			= "Ljava/lang/Object;";
+	/** static fields, in class data order */
+	private static final String[]		FIELDS				= { "GET", "SET", "TYPED_GET", "TYPED_SET" };
+
+	private final ByteArrayOutputStream	poolBytes;
+	private final DataOutputStream		pool;
+	private final Map<String, Integer>	entries;
+	private int									poolCount;
+
+	private AccessorClassWriter() {
+		poolBytes = new ByteArrayOutputStream();
+		pool = new DataOutputStream(poolBytes);
+		entries = new HashMap<String, Integer>();
+		poolCount = 1;
+	}
+
+	/**
+	 * Class file of the accessor of a field of the given kind. The class data
+	 * must be a list of the (Object)Object getter and the (Object,Object)void
+	 * setter, followed for primitives by the getter and setter of the exact
+	 * field type.
+	 */
+	static byte[] write(final int kind) {
+		try {
+			return new AccessorClassWriter().writeClass(kind);
+		} catch (final IOException e) {
+			// in memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private byte[] writeClass(final int kind) throws IOException {
+		final int handles = kind == FieldAccessor.OBJECT ? 2 : 4;
+		final ByteArrayOutputStream membersBytes = new ByteArrayOutputStream();
+		final DataOutputStream members = new DataOutputStream(membersBytes);
+		final int thisClass = classRef(NAME);
+		final int superClass = classRef(SUPER);
+
+		members.writeShort(handles);
+		for (int i = 0; i < handles; i++) {
+			members.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+			members.writeShort(utf8(FIELDS[i]));
+			members.writeShort(utf8(HANDLE_DESC));
+			members.writeShort(0);
+		}
+
+		members.writeShort(handles == 2 ? 4 : 6);
+		// constructor
+		Code code = new Code();
+		code.op(ALOAD_0);
+		code.op(ALOAD_1);
+		code.op(INVOKESPECIAL, methodRef(SUPER, "<init>", "(Ljava/lang/reflect/Field;)V"));
+		code.op(RETURN);
+		method(members, ACC_PUBLIC, "<init>", "(Ljava/lang/reflect/Field;)V", code);
+		// static initializer
+		code = new Code();
+		for (int i = 0; i < handles; i++) {
+			code.op(INVOKESTATIC, methodRef(HANDLES, "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;"));
+			code.op(LDC_W, string("_"));
+			code.op(LDC_W, classRef(HANDLE));
+			code.op(ICONST_0 + i);
+			code.op(INVOKESTATIC, methodRef(HANDLES, "classDataAt",
+					"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)Ljava/lang/Object;"));
+			code.op(CHECKCAST, classRef(HANDLE));
+			code.op(PUTSTATIC, fieldRef(FIELDS[i]));
+		}
+		code.op(RETURN);
+		method(members, ACC_STATIC, "<clinit>", "()V", code);
+		// boxed accessors
+		accessor(members, "get", "(" + OBJECT_DESC + ")" + OBJECT_DESC, FIELDS[0], ARETURN, -1);
+		accessor(members, "set", "(" + OBJECT_DESC + OBJECT_DESC + ")V", FIELDS[1], RETURN, LOADS[FieldAccessor.OBJECT]);
+		if (handles == 4) {
+			final char t = DESCRIPTORS.charAt(kind);
+			accessor(members, "get" + TYPE_NAMES[kind], "(" + OBJECT_DESC + ")" + t, FIELDS[2], RETURNS[kind], -1);
+			accessor(members, "set" + TYPE_NAMES[kind], "(" + OBJECT_DESC + t + ")V", FIELDS[3], RETURN, LOADS[kind]);
+		}
+		// attributes
+		members.writeShort(0);
+
+		final ByteArrayOutputStream classBytes = new ByteArrayOutputStream(256 + poolBytes.size() + membersBytes.size());
+		final DataOutputStream out = new DataOutputStream(classBytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(VERSION);
+		out.writeShort(poolCount);
+		poolBytes.writeTo(out);
+		out.writeShort(ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		// interfaces
+		out.writeShort(0);
+		membersBytes.writeTo(out);
+		out.flush();
+		return classBytes.toByteArray();
+	}
+
+	/**
+	 * Method calling the handle of a static field on the object in slot 1 and,
+	 * if <code>load</code> is not negative, the value loaded by it.
+	 */
+	private void accessor(final DataOutputStream members, final String name, final String desc, final String handle, final int ret,
+			final int load) throws IOException {
+		final Code code = new Code();
+		code.op(GETSTATIC, fieldRef(handle));
+		code.op(ALOAD_1);
+		if (load >= 0) {
+			code.op(load);
+		}
+		code.op(INVOKEVIRTUAL, methodRef(HANDLE, "invokeExact", desc));
+		code.op(ret);
+		method(members, ACC_PUBLIC | ACC_FINAL, name, desc, code);
+	}
+
+	private void method(final DataOutputStream members, final int access, final String name, final String desc, final Code code)
+			throws IOException {
+		members.writeShort(access);
+		members.writeShort(utf8(name));
+		members.writeShort(utf8(desc));
+		members.writeShort(1);
+		members.writeShort(utf8("Code"));
+		members.writeInt(12 + code.bytes.size());
+		// handle, object and a long or double value at most
+		members.writeShort(4);
+		// this, object and a long or double value
+		members.writeShort(4);
+		members.writeInt(code.bytes.size());
+		code.bytes.writeTo(members);
+		// exception table and attributes
+		members.writeShort(0);
+		members.writeShort(0);
+	}
+
+	private int utf8(final String s) throws IOException {
+		final Integer index = entries.get("U" + s);
+		if (index != null) {
+			return index;
+		}
+		pool.writeByte(CONSTANT_UTF8);
+		pool.writeUTF(s);
+		return add("U" + s);
+	}
+
+	private int classRef(final String name) throws IOException {
+		return ref(CONSTANT_CLASS, "C" + name, utf8(name));
+	}
+
+	private int string(final String s) throws IOException {
+		return ref(CONSTANT_STRING, "S" + s, utf8(s));
+	}
+
+	private int fieldRef(final String name) throws IOException {
+		return ref(CONSTANT_FIELD, "F" + name, classRef(NAME), nameAndType(name, HANDLE_DESC));
+	}
+
+	private int methodRef(final String owner, final String name, final String desc) throws IOException {
+		return ref(CONSTANT_METHOD, "M" + owner + "." + name + desc, classRef(owner), nameAndType(name, desc));
+	}
+
+	private int nameAndType(final String name, final String desc) throws IOException {
+		return ref(CONSTANT_NAME_TYPE, "N" + name + desc, utf8(name), utf8(desc));
+	}
+
+	private int ref(final int tag, final String key, final int... indexes) throws IOException {
+		final Integer index = entries.get(key);
+		if (index != null) {
+			return index;
+		}
+		pool.writeByte(tag);
+		for (final int i : indexes) {
+			pool.writeShort(i);
+		}
+		return add(key);
+	}
+
+	private int add(final String key) {
+		final int index = poolCount++;
+		entries.put(key, index);
+		return index;
+	}
+
+	/**
+	 * Bytecode of a method body.
+	 */
+	private static final class Code {
+
+		private final ByteArrayOutputStream	bytes	= new ByteArrayOutputStream();
+
+		private void op(final int opcode) {
+			bytes.write(opcode);
+		}
+
+		private void op(final int opcode, final int index) {
+			bytes.write(opcode);
+			bytes.write(index >>> 8);
+			bytes.write(index);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package com.bzsoft.ser;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Loops over primitive arrays used by the array codecs: range of values,
+ * narrowing to 1, 2 or 4 byte big-endian values and back, and big-endian
+ * copies of whole arrays into byte[] buffers.
+ * <p>
+ * This class is the scalar version. {@link #INSTANCE} is a
+ * <code>VectorArrayKernels</code>, built from src-vector by the
+ * <code>vector</code> profile, when it is on the class path, the
+ * <code>jdk.incubator.vector</code> module is in the boot layer
+ * (<code>--add-modules jdk.incubator.vector</code>) and works on this JVM, unless the system property
+ * <code>com.bzsoft.ser.vector</code> is <code>false</code>.
+ */
+class ArrayKernels {
+
+	protected static final String			VECTOR_MODULE	= "jdk.incubator.vector";
+
+	private static final VarHandle			SHORT				= MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle			INT				= MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle			LONG				= MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	/** after the VarHandles, the self check runs the scalar kernels */
+	protected static final ArrayKernels	INSTANCE			= select();
+
+	private static ArrayKernels select() {
+		if (!"false".equals(System.getProperty("com.bzsoft.ser.vector")) && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+			try {
+				final ArrayKernels vector = (ArrayKernels) Class.forName("com.bzsoft.ser.VectorArrayKernels").getDeclaredConstructor()
+						.newInstance();
+				if (vector.agreesWith(new ArrayKernels())) {
+					return vector;
+				}
+			} catch (final Throwable e) {
+				// API of another JDK version or not supported, stay scalar
+			}
+		}
+		return new ArrayKernels();
+	}
+
+	/**
+	 * Runs every kernel on a small array against the scalar ones.
+	 */
+	private boolean agreesWith(final ArrayKernels scalar) {
+		final int n = 203;
+		final int[] ints = new int[n];
+		final long[] longs = new long[n];
+		final float[] floats = new float[n];
+		final double[] doubles = new double[n];
+		for (int i = 0; i < n; i++) {
+			ints[i] = i * 0x01020305 - 77;
+			longs[i] = i * 0x0102030405060709L - 7777;
+			floats[i] = i * 1.5f;
+			doubles[i] = i * -2.25;
+		}
+		if (range(ints) != scalar.range(ints) || range(longs)[0] != scalar.range(longs)[0] || range(longs)[1] != scalar.range(longs)[1]) {
+			return false;
+		}
+		final byte[] a = new byte[n * 8 + 3];
+		final byte[] b = new byte[n * 8 + 3];
+		final int[] ia = new int[n];
+		final int[] ib = new int[n];
+		final long[] la = new long[n];
+		final long[] lb = new long[n];
+		for (int width = 1; width <= 4; width <<= 1) {
+			if (width < 4) {
+				narrow(ints, 1, n, a, 3, width);
+				scalar.narrow(ints, 1, n, b, 3, width);
+				widen(a, 3, ia, 1, n, width);
+				scalar.widen(b, 3, ib, 1, n, width);
+				if (!Arrays.equals(a, b) || !Arrays.equals(ia, ib)) {
+					return false;
+				}
+			}
+			narrow(longs, 1, n, a, 3, width);
+			scalar.narrow(longs, 1, n, b, 3, width);
+			widen(a, 3, la, 1, n, width);
+			scalar.widen(b, 3, lb, 1, n, width);
+			if (!Arrays.equals(a, b) || !Arrays.equals(la, lb)) {
+				return false;
+			}
+		}
+		put(ints, 1, n, a, 3);
+		scalar.put(ints, 1, n, b, 3);
+		get(a, 3, ia, 1, n);
+		ia[0] = ints[0];
+		if (!Arrays.equals(a, b) || !Arrays.equals(ia, ints)) {
+			return false;
+		}
+		put(longs, 1, n, a, 3);
+		scalar.put(longs, 1, n, b, 3);
+		get(a, 3, la, 1, n);
+		la[0] = longs[0];
+		if (!Arrays.equals(a, b) || !Arrays.equals(la, longs)) {
+			return false;
+		}
+		final float[] fa = new float[n];
+		put(floats, 1, n, a, 3);
+		scalar.put(floats, 1, n, b, 3);
+		get(a, 3, fa, 1, n);
+		fa[0] = floats[0];
+		if (!Arrays.equals(a, b) || !Arrays.equals(fa, floats)) {
+			return false;
+		}
+		final double[] da = new double[n];
+		put(doubles, 1, n, a, 3);
+		scalar.put(doubles, 1, n, b, 3);
+		get(a, 3, da, 1, n);
+		da[0] = doubles[0];
+		return Arrays.equals(a, b) && Arrays.equals(da, doubles);
+	}
+
+	/**
+	 * Minimum in the high and maximum in the low 32 bits.
+	 */
+	protected long range(final int[] a) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (final int v : a) {
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+		}
+		return (long) min << 32 | max & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Minimum and maximum.
+	 */
+	protected long[] range(final long[] a) {
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (final long v : a) {
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+		}
+		return new long[] { min, max };
+	}
+
+	/**
+	 * Writes <code>src[from, to)</code> as <code>width</code> byte (1 or 2)
+	 * big-endian values at <code>dst[off]</code>.
+	 */
+	protected void narrow(final int[] src, final int from, final int to, final byte[] dst, int off, final int width) {
+		if (width == 1) {
+			for (int i = from; i < to; i++) {
+				dst[off++] = (byte) src[i];
+			}
+		} else {
+			for (int i = from; i < to; i++, off += 2) {
+				SHORT.set(dst, off, (short) src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Writes <code>src[from, to)</code> as <code>width</code> byte (1, 2 or 4)
+	 * big-endian values at <code>dst[off]</code>.
+	 */
+	protected void narrow(final long[] src, final int from, final int to, final byte[] dst, int off, final int width) {
+		if (width == 1) {
+			for (int i = from; i < to; i++) {
+				dst[off++] = (byte) src[i];
+			}
+		} else if (width == 2) {
+			for (int i = from; i < to; i++, off += 2) {
+				SHORT.set(dst, off, (short) src[i]);
+			}
+		} else {
+			for (int i = from; i < to; i++, off += 4) {
+				INT.set(dst, off, (int) src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads signed <code>width</code> byte (1 or 2) big-endian values at
+	 * <code>src[off]</code> into <code>dst[from, to)</code>.
+	 */
+	protected void widen(final byte[] src, int off, final int[] dst, final int from, final int to, final int width) {
+		if (width == 1) {
+			for (int i = from; i < to; i++) {
+				dst[i] = src[off++];
+			}
+		} else {
+			for (int i = from; i < to; i++, off += 2) {
+				dst[i] = (short) SHORT.get(src, off);
+			}
+		}
+	}
+
+	/**
+	 * Reads signed <code>width</code> byte (1, 2 or 4) big-endian values at
+	 * <code>src[off]</code> into <code>dst[from, to)</code>.
+	 */
+	protected void widen(final byte[] src, int off, final long[] dst, final int from, final int to, final int width) {
+		if (width == 1) {
+			for (int i = from; i < to; i++) {
+				dst[i] = src[off++];
+			}
+		} else if (width == 2) {
+			for (int i = from; i < to; i++, off += 2) {
+				dst[i] = (short) SHORT.get(src, off);
+			}
+		} else {
+			for (int i = from; i < to; i++, off += 4) {
+				dst[i] = (int) INT.get(src, off);
+			}
+		}
+	}
+
+	protected void put(final int[] src, final int from, final int to, final byte[] dst, int off) {
+		for (int i = from; i < to; i++, off += 4) {
+			INT.set(dst, off, src[i]);
+		}
+	}
+
+	protected void put(final long[] src, final int from, final int to, final byte[] dst, int off) {
+		for (int i = from; i < to; i++, off += 8) {
+			LONG.set(dst, off, src[i]);
+		}
+	}
+
+	protected void put(final float[] src, final int from, final int to, final byte[] dst, int off) {
+		for (int i = from; i < to; i++, off += 4) {
+			INT.set(dst, off, Float.floatToIntBits(src[i]));
+		}
+	}
+
+	protected void put(final double[] src, final int from, final int to, final byte[] dst, int off) {
+		for (int i = from; i < to; i++, off += 8) {
+			LONG.set(dst, off, Double.doubleToLongBits(src[i]));
+		}
+	}
+
+	protected void get(final byte[] src, int off, final int[] dst, final int from, final int to) {
+		for (int i = from; i < to; i++, off += 4) {
+			dst[i] = (int) INT.get(src, off);
+		}
+	}
+
+	protected void get(final byte[] src, int off, final long[] dst, final int from, final int to) {
+		for (int i = from; i < to; i++, off += 8) {
+			dst[i] = (long) LONG.get(src, off);
+		}
+	}
+
+	protected void get(final byte[] src, int off, final float[] dst, final int from, final int to) {
+		for (int i = from; i < to; i++, off += 4) {
+			dst[i] = Float.intBitsToFloat((int) INT.get(src, off));
+		}
+	}
+
+	protected void get(final byte[] src, int off, final double[] dst, final int from, final int to) {
+		for (int i = from; i < to; i++, off += 8) {
+			dst[i] = Double.longBitsToDouble((long) LONG.get(src, off));
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package com.bzsoft.ser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * OutputStream handing filled buffers to a background thread that writes them
+ * to the target stream or channel, so serialization goes on while the
+ * previous buffers reach the disk or the network. To be placed under an
+ * {@link ObjectOutputStream}:
+ *
+ * <pre>
+ * new ObjectOutputStream(new AsyncOutputStream(fileChannel))
+ * </pre>
+ *
+ * There are <code>buffers</code> buffers in all. When every one of them is
+ * waiting to be written the caller blocks until the writer frees one.
+ * {@link #flush()} and {@link #close()} wait until everything written before
+ * has reached the target. A failure of the writer thread is thrown by the
+ * next call. Not thread safe, only one thread may write.
+ */
+public class AsyncOutputStream extends OutputStream {
+
+	public static final int					DEFAULT_BUFFER_SIZE	= 1024 * 1024;
+	public static final int					DEFAULT_BUFFERS		= 4;
+
+	/** bytes to write, or a flush request without buffer */
+	private static final class Chunk {
+
+		private final byte[]				buf;
+		private final int					len;
+		private final CountDownLatch	done;
+
+		private Chunk(final byte[] buf, final int len, final CountDownLatch done) {
+			this.buf = buf;
+			this.len = len;
+			this.done = done;
+		}
+	}
+
+	private static final Chunk				STOP						= new Chunk(null, 0, null);
+
+	private final OutputStream				os;
+	private final WritableByteChannel	channel;
+	private final BlockingQueue<Chunk>	filled;
+	private final BlockingQueue<byte[]>	free;
+	private final Thread						writer;
+	private volatile IOException			failure;
+	private byte[]								buf;
+	private int									pos;
+	private boolean							closed;
+
+	public AsyncOutputStream(final OutputStream os) {
+		this(os, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS);
+	}
+
+	/**
+	 * @param bufferSize
+	 *           bytes handed to the writer at once
+	 * @param buffers
+	 *           buffers in the ring, at least 2
+	 */
+	public AsyncOutputStream(final OutputStream os, final int bufferSize, final int buffers) {
+		this(os, null, bufferSize, buffers);
+	}
+
+	public AsyncOutputStream(final WritableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS);
+	}
+
+	/**
+	 * Writes to a channel, for instance a FileChannel. Flushing does not force
+	 * the channel to the device.
+	 */
+	public AsyncOutputStream(final WritableByteChannel channel, final int bufferSize, final int buffers) {
+		this(null, channel, bufferSize, buffers);
+	}
+
+	private AsyncOutputStream(final OutputStream os, final WritableByteChannel channel, final int bufferSize, final int buffers) {
+		if (bufferSize <= 0 || buffers < 2) {
+			throw new IllegalArgumentException("Invalid buffers " + buffers + " of " + bufferSize + " bytes");
+		}
+		this.os = os;
+		this.channel = channel;
+		filled = new LinkedBlockingQueue<Chunk>();
+		free = new ArrayBlockingQueue<byte[]>(buffers);
+		for (int i = 1; i < buffers; i++) {
+			free.add(new byte[bufferSize]);
+		}
+		buf = new byte[bufferSize];
+		pos = 0;
+		closed = false;
+		writer = new Thread(this::drain, "ser-async-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Body of the writer thread. After a failure it keeps taking chunks
+	 * without writing them, so the caller never waits for a buffer forever.
+	 */
+	private void drain() {
+		try {
+			while (true) {
+				final Chunk chunk = filled.take();
+				if (chunk == STOP) {
+					return;
+				}
+				if (failure == null) {
+					try {
+						if (chunk.buf != null) {
+							writeTarget(chunk.buf, chunk.len);
+						} else if (os != null) {
+							os.flush();
+						}
+					} catch (final IOException e) {
+						failure = e;
+					} catch (final RuntimeException e) {
+						failure = new IOException(e);
+					}
+				}
+				if (chunk.buf != null) {
+					free.add(chunk.buf);
+				}
+				if (chunk.done != null) {
+					chunk.done.countDown();
+				}
+			}
+		} catch (final InterruptedException e) {
+			// stopped
+		}
+	}
+
+	private void writeTarget(final byte[] b, final int len) throws IOException {
+		if (os != null) {
+			os.write(b, 0, len);
+		} else {
+			final ByteBuffer bb = ByteBuffer.wrap(b, 0, len);
+			while (bb.hasRemaining()) {
+				channel.write(bb);
+			}
+		}
+	}
+
+	private void checkState() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		final IOException e = failure;
+		if (e != null) {
+			throw new IOException("Background write failed", e);
+		}
+	}
+
+	/**
+	 * Hands the current buffer to the writer and takes a free one.
+	 */
+	private void submit() throws IOException {
+		checkState();
+		try {
+			filled.put(new Chunk(buf, pos, null));
+			buf = free.take();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		pos = 0;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		if (pos == buf.length) {
+			submit();
+		}
+		buf[pos++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (pos == buf.length) {
+				submit();
+			}
+			final int n = Math.min(len, buf.length - pos);
+			System.arraycopy(b, off, buf, pos, n);
+			pos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Waits until all bytes written so far have been written to the target
+	 * and the target stream has been flushed.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (pos > 0) {
+			submit();
+		}
+		checkState();
+		final CountDownLatch done = new CountDownLatch(1);
+		try {
+			filled.put(new Chunk(null, 0, done));
+			done.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		checkState();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			closed = true;
+			filled.add(STOP);
+			try {
+				writer.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (os != null) {
+				os.close();
+			} else {
+				channel.close();
+			}
+		}
+	}
+}
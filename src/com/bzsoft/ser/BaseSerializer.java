@@ -9,8 +9,13 @@ import java.io.StreamCorruptedException;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
@@ -180,7 +185,25 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		public static final int	DATE								= 140;
 		public static final int	UUID								= 142;
 
-		// 144 to 149 reserved for other non recursive objects
+		// strings longer than 10 chars, byte length and bytes
+		public static final int	STRING_LATIN1					= 144;
+		public static final int	STRING_UTF8						= 145;
+		// string dictionary, slot of a known string or a string to add
+		public static final int	STRING_DICT_REF				= 146;
+		public static final int	STRING_DICT_ADD				= 147;
+
+		// 148 to 149 reserved for other non recursive objects
+
+		// sorted or clustered arrays, see SortedArrays
+		public static final int	ARRAY_INT_DELTA				= 150;
+		public static final int	ARRAY_INT_FOR					= 151;
+		public static final int	ARRAY_LONG_DELTA				= 152;
+		public static final int	ARRAY_LONG_FOR					= 153;
+		// runs of equal booleans, for sparse or dense bitmaps
+		public static final int	ARRAY_BOOLEAN_RLE				= 154;
+		// java.util.BitSet, as bytes or as runs of clear and set bits
+		public static final int	BITSET							= 155;
+		public static final int	BITSET_RLE						= 156;
 
 		public static final int	ARRAY_OBJECT					= 158;
 		// special cases for BTree values which stores references
@@ -200,22 +223,93 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		public static final int	JAVA_SERIALIZATION			= 172;
 		public static final int	BEAN								= 173;
 		public static final int	OBJECT_STACK					= 174;
+		// bean with field values in layout order, see BeanSerializer
+		public static final int	BEAN_COMPACT					= 175;
+		// list and map of unknown size, elements follow up to END
+		public static final int	ARRAYLIST_UNSIZED				= 176;
+		public static final int	HASHMAP_UNSIZED				= 177;
+		public static final int	END								= 178;
+		// bean with a table of field value lengths, see BeanSerializer
+		public static final int	BEAN_INDEXED					= 179;
 
 		public static final int	CLASS_ID							= 189;
 		public static final int	CLASS_NID						= 190;
+		// class name followed by its field layout
+		public static final int	CLASS_NID_LAYOUT				= 191;
 
 		public static final int	RESET								= 254;
 	}
 
+	protected final TrackingPolicy	trackingPolicy;
+	protected final int					stringDictionarySize;
+
 	/**
 	 * Utility class similar to ArrayList, but with fast identity search.
 	 */
 
+	protected BaseSerializer() {
+		this(TrackingPolicy.FULL);
+	}
+
+	protected BaseSerializer(final TrackingPolicy trackingPolicy) {
+		this(trackingPolicy, 0);
+	}
+
+	/**
+	 * @param trackingPolicy
+	 *           objects written as back references
+	 * @param stringDictionarySize
+	 *           slots of the per stream dictionary of strings compared by value,
+	 *           0 to disable it. The reader must use the same size.
+	 */
+	protected BaseSerializer(final TrackingPolicy trackingPolicy, final int stringDictionarySize) {
+		this.trackingPolicy = trackingPolicy;
+		this.stringDictionarySize = stringDictionarySize;
+	}
+
+	public TrackingPolicy getTrackingPolicy() {
+		return trackingPolicy;
+	}
+
+	/**
+	 * Empty reference set following the tracking policy of this serializer.
+	 */
+	@Override
+	public ReferenceSet<Object> newReferenceSet() {
+		return new ReferenceSet<Object>(trackingPolicy, stringDictionarySize);
+	}
+
 	@Override
 	public void serializeObject(final DataOutput out, final Object obj, final ReferenceSet<Object> rset) throws IOException {
 		serialize(out, obj, rset);
 	}
 
+	/**
+	 * Serializes an object straight into a heap or direct buffer, starting at
+	 * its position. The message is self contained, it can be read back with
+	 * {@link #deserialize(ByteBuffer)} by any serializer.
+	 * 
+	 * @param buf
+	 *           the buffer, its position is moved past the message
+	 * @param obj
+	 *           the object
+	 * @return the number of bytes written
+	 * @throws BufferOverflowException
+	 *            if the message does not fit, the buffer position is left
+	 *            unchanged and the caller can retry with a bigger buffer
+	 * @throws IOException
+	 *            Signals that an I/O exception has occurred.
+	 */
+	public int serialize(final ByteBuffer buf, final Object obj) throws IOException {
+		final ByteBufferDataOutput out = new ByteBufferDataOutput(buf);
+		final BaseSerializer ser = getMessageSerializer();
+		ser.clearClassRegistry();
+		ser.serialize(out, obj, ser.newReferenceSet());
+		final int written = out.position() - buf.position();
+		buf.position(out.position());
+		return written;
+	}
+
 	protected void serialize(final DataOutput out, final Object obj, ReferenceSet<Object> objectStack) throws IOException {
 		if (obj == null) {
 			out.writeByte(Header.NULL);
@@ -242,7 +336,11 @@ public abstract class BaseSerializer implements Serializer<Object> {
 			serializeLong(out, (Long) obj);
 			return;
 		} else if (clazz == String.class) {
-			serializeString(out, (String) obj, null);
+			if (objectStack != null && objectStack.getStrings() != null) {
+				serializeDictionaryString(out, (String) obj, objectStack.getStrings());
+			} else {
+				serializeString(out, (String) obj, null);
+			}
 			return;
 		} else if (clazz == Boolean.class) {
 			out.writeByte((Boolean) obj ? Header.BOOLEAN_TRUE : Header.BOOLEAN_FALSE);
@@ -267,42 +365,54 @@ public abstract class BaseSerializer implements Serializer<Object> {
 			serializeByteArray(out, b);
 			return;
 		} else if (obj instanceof boolean[]) {
-			out.writeByte(Header.ARRAY_BOOLEAN);
-			final boolean[] abool = (boolean[]) obj;
-			Utils.packInt(out, abool.length);// write the number of booleans
-			final byte[] a = booleanToByteArray(abool);
-			out.write(a);
+			serializeBooleanArray(out, (boolean[]) obj);
 			return;
 		} else if (obj instanceof short[]) {
 			out.writeByte(Header.ARRAY_SHORT);
 			final short[] a = (short[]) obj;
 			Utils.packInt(out, a.length);
-			for (final short s : a) {
-				out.writeShort(s);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).write(a);
+			} else {
+				for (final short s : a) {
+					out.writeShort(s);
+				}
 			}
 			return;
 		} else if (obj instanceof char[]) {
 			out.writeByte(Header.ARRAY_CHAR);
 			final char[] a = (char[]) obj;
 			Utils.packInt(out, a.length);
-			for (final char s : a) {
-				out.writeChar(s);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).write(a);
+			} else {
+				for (final char s : a) {
+					out.writeChar(s);
+				}
 			}
 			return;
 		} else if (obj instanceof float[]) {
 			out.writeByte(Header.ARRAY_FLOAT);
 			final float[] a = (float[]) obj;
 			Utils.packInt(out, a.length);
-			for (final float s : a) {
-				out.writeFloat(s);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).write(a);
+			} else {
+				for (final float s : a) {
+					out.writeFloat(s);
+				}
 			}
 			return;
 		} else if (obj instanceof double[]) {
 			out.writeByte(Header.ARRAY_DOUBLE);
 			final double[] a = (double[]) obj;
 			Utils.packInt(out, a.length);
-			for (final double s : a) {
-				out.writeDouble(s);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).write(a);
+			} else {
+				for (final double s : a) {
+					out.writeDouble(s);
+				}
 			}
 			return;
 		} else if (obj instanceof int[]) {
@@ -339,6 +449,9 @@ public abstract class BaseSerializer implements Serializer<Object> {
 			out.writeLong(uuid.getMostSignificantBits());
 			out.writeLong(uuid.getLeastSignificantBits());
 			return;
+		} else if (clazz == BitSet.class) {
+			serializeBitSet(out, (BitSet) obj);
+			return;
 		}
 
 		/**
@@ -346,7 +459,7 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		 * initialized
 		 */
 		if (objectStack == null) {
-			objectStack = new ReferenceSet<Object>();
+			objectStack = newReferenceSet();
 			objectStack.add(obj);
 		}
 		if (obj instanceof Object[]) {
@@ -465,24 +578,135 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		}
 	}
 
+	private static void serializeBooleanArray(final DataOutput out, final boolean[] val) throws IOException {
+		final int packed = val.length + 7 >>> 3;
+		if (booleanRunsSize(val, packed) < packed) {
+			out.writeByte(Header.ARRAY_BOOLEAN_RLE);
+			Utils.packInt(out, val.length);
+			out.writeBoolean(val[0]);
+			int from = 0;
+			while (from < val.length) {
+				final int to = runEnd(val, from);
+				Utils.packInt(out, to - from);
+				from = to;
+			}
+		} else {
+			out.writeByte(Header.ARRAY_BOOLEAN);
+			Utils.packInt(out, val.length);// write the number of booleans
+			out.write(booleanToByteArray(val));
+		}
+	}
+
+	/**
+	 * Bytes of the first value and run lengths of ARRAY_BOOLEAN_RLE, counting
+	 * stops once <code>limit</code> is reached.
+	 */
+	private static int booleanRunsSize(final boolean[] val, final int limit) {
+		int size = 1;
+		int from = 0;
+		while (from < val.length && size < limit) {
+			final int to = runEnd(val, from);
+			size += Utils.packedLongSize(to - from);
+			from = to;
+		}
+		return size;
+	}
+
+	private static int runEnd(final boolean[] val, final int from) {
+		final boolean v = val[from];
+		int to = from + 1;
+		while (to < val.length && val[to] == v) {
+			to++;
+		}
+		return to;
+	}
+
+	/**
+	 * BITSET_RLE holds the length of the BitSet and pairs of clear and set run
+	 * lengths, BITSET the bytes of {@link BitSet#toByteArray()}.
+	 */
+	private static void serializeBitSet(final DataOutput out, final BitSet bits) throws IOException {
+		final int length = bits.length();
+		final int packed = length + 7 >>> 3;
+		if (bitSetRunsSize(bits, packed) < packed) {
+			out.writeByte(Header.BITSET_RLE);
+			Utils.packInt(out, length);
+			int from = 0;
+			for (int set = bits.nextSetBit(0); set >= 0; set = bits.nextSetBit(from)) {
+				final int clear = bits.nextClearBit(set);
+				Utils.packInt(out, set - from);
+				Utils.packInt(out, clear - set);
+				from = clear;
+			}
+		} else {
+			out.writeByte(Header.BITSET);
+			final byte[] b = bits.toByteArray();
+			Utils.packInt(out, b.length);
+			out.write(b);
+		}
+	}
+
+	private static int bitSetRunsSize(final BitSet bits, final int limit) {
+		int size = 0;
+		int from = 0;
+		for (int set = bits.nextSetBit(0); set >= 0 && size < limit; set = bits.nextSetBit(from)) {
+			final int clear = bits.nextClearBit(set);
+			size += Utils.packedLongSize(set - from) + Utils.packedLongSize(clear - set);
+			from = clear;
+		}
+		return size;
+	}
+
 	private static void serializeLongArray(final DataOutput out, final long[] val) throws IOException {
-		long max = Long.MIN_VALUE;
-		long min = Long.MAX_VALUE;
-		for (final long i : val) {
-			max = Math.max(max, i);
-			min = Math.min(min, i);
+		final long[] range = ArrayKernels.INSTANCE.range(val);
+		final long min = range[0];
+		final long max = range[1];
+		if (val.length >= SortedArrays.MIN_LENGTH) {
+			final long[] sizes = SortedArrays.sizes(val);
+			final long fixed;
+			if (Byte.MIN_VALUE <= min && max <= Byte.MAX_VALUE) {
+				fixed = val.length;
+			} else if (Short.MIN_VALUE <= min && max <= Short.MAX_VALUE) {
+				fixed = 2L * val.length;
+			} else if (0 <= min) {
+				fixed = sizes[2];
+			} else if (Integer.MIN_VALUE <= min && max <= Integer.MAX_VALUE) {
+				fixed = 4L * val.length;
+			} else {
+				fixed = 8L * val.length;
+			}
+			if (sizes[0] < fixed && sizes[0] <= sizes[1]) {
+				out.writeByte(Header.ARRAY_LONG_DELTA);
+				Utils.packInt(out, val.length);
+				SortedArrays.writeDelta(out, val);
+				return;
+			}
+			if (sizes[1] < fixed) {
+				out.writeByte(Header.ARRAY_LONG_FOR);
+				Utils.packInt(out, val.length);
+				SortedArrays.writeFrames(out, val);
+				return;
+			}
 		}
 		if (Byte.MIN_VALUE <= min && max <= Byte.MAX_VALUE) {
 			out.writeByte(Header.ARRAY_LONG_BYTE);
 			Utils.packInt(out, val.length);
-			for (final long i : val) {
-				out.write((int) i);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).writeNarrow(val, 1);
+			} else {
+				for (final long i : val) {
+					out.write((int) i);
+				}
 			}
 		} else if (Short.MIN_VALUE <= min && max <= Short.MAX_VALUE) {
 			out.writeByte(Header.ARRAY_LONG_SHORT);
 			Utils.packInt(out, val.length);
-			for (final long i : val) {
-				out.writeShort((int) i);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).writeNarrow(val, 2);
+			} else {
+				for (final long i : val) {
+					out.writeShort((int) i);
+				}
 			}
 		} else if (0 <= min) {
 			out.writeByte(Header.ARRAY_LONG_PACKED);
@@ -493,36 +717,74 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		} else if (Integer.MIN_VALUE <= min && max <= Integer.MAX_VALUE) {
 			out.writeByte(Header.ARRAY_LONG_INT);
 			Utils.packInt(out, val.length);
-			for (final long i : val) {
-				out.writeInt((int) i);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).writeNarrow(val, 4);
+			} else {
+				for (final long i : val) {
+					out.writeInt((int) i);
+				}
 			}
 		} else {
 			out.writeByte(Header.ARRAY_LONG);
 			Utils.packInt(out, val.length);
-			for (final long i : val) {
-				out.writeLong(i);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).write(val);
+			} else {
+				for (final long i : val) {
+					out.writeLong(i);
+				}
 			}
 		}
 	}
 
 	private static void serializeIntArray(final DataOutput out, final int[] val) throws IOException {
-		int max = Integer.MIN_VALUE;
-		int min = Integer.MAX_VALUE;
-		for (final int i : val) {
-			max = Math.max(max, i);
-			min = Math.min(min, i);
+		final long range = ArrayKernels.INSTANCE.range(val);
+		final int min = (int) (range >> 32);
+		final int max = (int) range;
+		if (val.length >= SortedArrays.MIN_LENGTH) {
+			final long[] sizes = SortedArrays.sizes(val);
+			final long fixed;
+			if (Byte.MIN_VALUE <= min && max <= Byte.MAX_VALUE) {
+				fixed = val.length;
+			} else if (Short.MIN_VALUE <= min && max <= Short.MAX_VALUE) {
+				fixed = 2L * val.length;
+			} else if (0 <= min) {
+				fixed = sizes[2];
+			} else {
+				fixed = 4L * val.length;
+			}
+			if (sizes[0] < fixed && sizes[0] <= sizes[1]) {
+				out.writeByte(Header.ARRAY_INT_DELTA);
+				Utils.packInt(out, val.length);
+				SortedArrays.writeDelta(out, val);
+				return;
+			}
+			if (sizes[1] < fixed) {
+				out.writeByte(Header.ARRAY_INT_FOR);
+				Utils.packInt(out, val.length);
+				SortedArrays.writeFrames(out, val);
+				return;
+			}
 		}
 		if (Byte.MIN_VALUE <= min && max <= Byte.MAX_VALUE) {
 			out.writeByte(Header.ARRAY_INT_BYTE);
 			Utils.packInt(out, val.length);
-			for (final int i : val) {
-				out.writeByte(i);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).writeNarrow(val, 1);
+			} else {
+				for (final int i : val) {
+					out.writeByte(i);
+				}
 			}
 		} else if (Short.MIN_VALUE <= min && max <= Short.MAX_VALUE) {
 			out.writeByte(Header.ARRAY_INT_SHORT);
 			Utils.packInt(out, val.length);
-			for (final int i : val) {
-				out.writeShort(i);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).writeNarrow(val, 2);
+			} else {
+				for (final int i : val) {
+					out.writeShort(i);
+				}
 			}
 		} else if (0 <= min) {
 			out.writeByte(Header.ARRAY_INT_PACKED);
@@ -533,8 +795,12 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		} else {
 			out.writeByte(Header.ARRAY_INT);
 			Utils.packInt(out, val.length);
-			for (final int i : val) {
-				out.writeInt(i);
+			if (out instanceof BulkDataOutput) {
+				((BulkDataOutput) out).write(val);
+			} else {
+				for (final int i : val) {
+					out.writeInt(i);
+				}
 			}
 		}
 	}
@@ -549,6 +815,28 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		}
 	}
 
+	/**
+	 * Writes the header of a list, or of a map if <code>map</code> is true, of
+	 * unknown size. The elements follow one by one, map entries as key and
+	 * value, and {@link #serializeEnd(DataOutput)} closes it. It is read back
+	 * as an ArrayList or a HashMap.
+	 */
+	public void serializeOpen(final DataOutput out, final boolean map, final ReferenceSet<Object> objectStack) throws IOException {
+		if (objectStack != null) {
+			// stands for the container the reader adds before its elements
+			objectStack.add(new Object());
+		}
+		out.writeByte(map ? Header.HASHMAP_UNSIZED : Header.ARRAYLIST_UNSIZED);
+	}
+
+	/**
+	 * Closes a list or map opened with
+	 * {@link #serializeOpen(DataOutput, boolean, ReferenceSet)}.
+	 */
+	public void serializeEnd(final DataOutput out) throws IOException {
+		out.writeByte(Header.END);
+	}
+
 	private void serializeCollection(final int header, final DataOutput out, final Object obj, final ReferenceSet<Object> objectStack)
 			throws IOException {
 		final Collection<?> l = (Collection<?>) obj;
@@ -586,20 +874,73 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		return new String(b);
 	}
 
+	/**
+	 * Reads a STRING_LATIN1 or STRING_UTF8 body, decoding the bytes straight
+	 * into the String.
+	 */
+	protected static String deserializeEncodedString(final DataInput din, final Charset charset) throws IOException {
+		final int len = Utils.unpackInt(din);
+		if (din instanceof BulkDataInput) {
+			return ((BulkDataInput) din).readString(len, charset);
+		}
+		final byte[] b = new byte[len];
+		din.readFully(b);
+		return new String(b, charset);
+	}
+
 	@Override
 	public Object deserializeObject(final DataInput is, final ReferenceSet<Object> objectStack) throws IOException, ClassNotFoundException {
 		return deserialize(is, objectStack);
 	}
 
-	public Object deserialize(final DataInput is, ReferenceSet<Object> objectStack) throws IOException, ClassNotFoundException {
-		Object ret = null;
-		int ir = 0;
-		long lr = 0;
+	/**
+	 * Reads a message written by {@link #serialize(ByteBuffer, Object)} straight
+	 * from the buffer, starting at its position. Primitive arrays are copied out
+	 * of the buffer with bulk views.
+	 * 
+	 * @param buf
+	 *           the buffer, its position is moved past the message
+	 * @return the object
+	 * @throws IOException
+	 *            Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *            the class not found exception
+	 */
+	public Object deserialize(final ByteBuffer buf) throws IOException, ClassNotFoundException {
+		final ByteBufferDataInput in = new ByteBufferDataInput(buf);
+		final BaseSerializer ser = getMessageSerializer();
+		ser.clearClassRegistry();
+		final Object ret = ser.deserialize(in, ser.newReferenceSet());
+		buf.position(in.position());
+		return ret;
+	}
+
+	public Object deserialize(final DataInput is, final ReferenceSet<Object> objectStack) throws IOException, ClassNotFoundException {
+		return deserialize(readHeader(is, objectStack), is, objectStack);
+	}
+
+	/**
+	 * Reads the header of the next object, clearing the reference set on every
+	 * RESET before it.
+	 */
+	protected int readHeader(final DataInput is, final ReferenceSet<Object> objectStack) throws IOException {
 		int head = is.readUnsignedByte();
 		while (head == Header.RESET) {
-			objectStack.clear();
+			if (objectStack != null) {
+				objectStack.clear();
+			}
 			head = is.readUnsignedByte();
 		}
+		return head;
+	}
+
+	/**
+	 * Reads the rest of an object whose header was already read.
+	 */
+	protected Object deserialize(final int head, final DataInput is, ReferenceSet<Object> objectStack) throws IOException, ClassNotFoundException {
+		Object ret = null;
+		int ir = 0;
+		long lr = 0;
 		/** first try to deserialize object without allocating object stack */
 		switch (head) {
 		case Header.ZERO_FAIL:
@@ -811,6 +1152,16 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		case Header.STRING:
 			ret = deserializeString(is, Utils.unpackInt(is));
 			break;
+		case Header.STRING_LATIN1:
+			ret = deserializeEncodedString(is, StandardCharsets.ISO_8859_1);
+			break;
+		case Header.STRING_UTF8:
+			ret = deserializeEncodedString(is, StandardCharsets.UTF_8);
+			break;
+		case Header.STRING_DICT_REF:
+		case Header.STRING_DICT_ADD:
+			ret = deserializeDictionaryString(is, head, objectStack == null ? null : objectStack.getStrings());
+			break;
 		case Header.STRING_0:
 			ret = Utils.EMPTY_STRING;
 			break;
@@ -844,13 +1195,16 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		}
 		/** something else which needs object stack initialized */
 		if (objectStack == null) {
-			objectStack = new ReferenceSet<Object>();
+			objectStack = newReferenceSet();
 		}
 		final int oldObjectStackSize = objectStack.getSize();
 		switch (head) {
 		case Header.OBJECT_STACK:
 			final int index = Utils.unpackInt(is);
 			ret = objectStack.elementOf(index);
+			if (ret == ReferenceSet.SKIPPED) {
+				throw new StreamCorruptedException("Reference to skipped object " + index);
+			}
 			break;
 		case Header.ARRAYLIST:
 			ret = deserializeArrayList(is, objectStack);
@@ -876,6 +1230,12 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		case Header.HASHMAP:
 			ret = deserializeHashMap(is, objectStack);
 			break;
+		case Header.ARRAYLIST_UNSIZED:
+			ret = deserializeUnsizedArrayList(is, objectStack);
+			break;
+		case Header.HASHMAP_UNSIZED:
+			ret = deserializeUnsizedHashMap(is, objectStack);
+			break;
 		case Header.LINKEDHASHMAP:
 			ret = deserializeLinkedHashMap(is, objectStack);
 			break;
@@ -907,52 +1267,85 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		case Header.ARRAY_BOOLEAN:
 			ret = readBooleanArray(is);
 			break;
+		case Header.ARRAY_BOOLEAN_RLE:
+			ret = readBooleanRuns(is);
+			break;
+		case Header.BITSET:
+			ret = BitSet.valueOf(deserializeArrayByte(is));
+			break;
+		case Header.BITSET_RLE:
+			ret = readBitSetRuns(is);
+			break;
 		case Header.ARRAY_SHORT:
 			int size = Utils.unpackInt(is);
 			ret = new short[size];
 			final short[] sarray = (short[]) ret;
-			for (int i = 0; i < size; i++) {
-				sarray[i] = is.readShort();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readFully(sarray);
+			} else {
+				for (int i = 0; i < size; i++) {
+					sarray[i] = is.readShort();
+				}
 			}
 			break;
 		case Header.ARRAY_DOUBLE:
 			size = Utils.unpackInt(is);
 			ret = new double[size];
 			final double[] darray = (double[]) ret;
-			for (int i = 0; i < size; i++) {
-				darray[i] = is.readDouble();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readFully(darray);
+			} else {
+				for (int i = 0; i < size; i++) {
+					darray[i] = is.readDouble();
+				}
 			}
 			break;
 		case Header.ARRAY_FLOAT:
 			size = Utils.unpackInt(is);
 			ret = new float[size];
 			final float[] farray = (float[]) ret;
-			for (int i = 0; i < size; i++) {
-				farray[i] = is.readFloat();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readFully(farray);
+			} else {
+				for (int i = 0; i < size; i++) {
+					farray[i] = is.readFloat();
+				}
 			}
 			break;
 		case Header.ARRAY_CHAR:
 			size = Utils.unpackInt(is);
 			ret = new char[size];
 			final char[] carray = (char[]) ret;
-			for (int i = 0; i < size; i++) {
-				carray[i] = is.readChar();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readFully(carray);
+			} else {
+				for (int i = 0; i < size; i++) {
+					carray[i] = is.readChar();
+				}
 			}
 			break;
 		case Header.ARRAY_INT_BYTE:
 			size = Utils.unpackInt(is);
 			ret = new int[size];
 			final int[] ibarray = (int[]) ret;
-			for (int i = 0; i < size; i++) {
-				ibarray[i] = is.readByte();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readWiden(ibarray, 1);
+			} else {
+				for (int i = 0; i < size; i++) {
+					ibarray[i] = is.readByte();
+				}
 			}
 			break;
 		case Header.ARRAY_INT_SHORT:
 			size = Utils.unpackInt(is);
 			ret = new int[size];
 			final int[] isarray = (int[]) ret;
-			for (int i = 0; i < size; i++) {
-				isarray[i] = is.readShort();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readWiden(isarray, 2);
+			} else {
+				for (int i = 0; i < size; i++) {
+					isarray[i] = is.readShort();
+				}
 			}
 			break;
 		case Header.ARRAY_INT_PACKED:
@@ -967,24 +1360,46 @@ public abstract class BaseSerializer implements Serializer<Object> {
 			size = Utils.unpackInt(is);
 			ret = new int[size];
 			final int[] iarray = (int[]) ret;
-			for (int i = 0; i < size; i++) {
-				iarray[i] = is.readInt();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readFully(iarray);
+			} else {
+				for (int i = 0; i < size; i++) {
+					iarray[i] = is.readInt();
+				}
 			}
 			break;
+		case Header.ARRAY_INT_DELTA:
+			size = Utils.unpackInt(is);
+			ret = new int[size];
+			SortedArrays.readDelta(is, (int[]) ret);
+			break;
+		case Header.ARRAY_INT_FOR:
+			size = Utils.unpackInt(is);
+			ret = new int[size];
+			SortedArrays.readFrames(is, (int[]) ret);
+			break;
 		case Header.ARRAY_LONG_BYTE:
 			size = Utils.unpackInt(is);
 			ret = new long[size];
 			final long[] lbarray = (long[]) ret;
-			for (int i = 0; i < size; i++) {
-				lbarray[i] = is.readByte();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readWiden(lbarray, 1);
+			} else {
+				for (int i = 0; i < size; i++) {
+					lbarray[i] = is.readByte();
+				}
 			}
 			break;
 		case Header.ARRAY_LONG_SHORT:
 			size = Utils.unpackInt(is);
 			ret = new long[size];
 			final long[] lsarray = (long[]) ret;
-			for (int i = 0; i < size; i++) {
-				lsarray[i] = is.readShort();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readWiden(lsarray, 2);
+			} else {
+				for (int i = 0; i < size; i++) {
+					lsarray[i] = is.readShort();
+				}
 			}
 			break;
 		case Header.ARRAY_LONG_PACKED:
@@ -999,18 +1414,36 @@ public abstract class BaseSerializer implements Serializer<Object> {
 			size = Utils.unpackInt(is);
 			ret = new long[size];
 			final long[] liarray = (long[]) ret;
-			for (int i = 0; i < size; i++) {
-				liarray[i] = is.readInt();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readWiden(liarray, 4);
+			} else {
+				for (int i = 0; i < size; i++) {
+					liarray[i] = is.readInt();
+				}
 			}
 			break;
 		case Header.ARRAY_LONG:
 			size = Utils.unpackInt(is);
 			ret = new long[size];
 			final long[] larray = (long[]) ret;
-			for (int i = 0; i < size; i++) {
-				larray[i] = is.readLong();
+			if (is instanceof BulkDataInput) {
+				((BulkDataInput) is).readFully(larray);
+			} else {
+				for (int i = 0; i < size; i++) {
+					larray[i] = is.readLong();
+				}
 			}
 			break;
+		case Header.ARRAY_LONG_DELTA:
+			size = Utils.unpackInt(is);
+			ret = new long[size];
+			SortedArrays.readDelta(is, (long[]) ret);
+			break;
+		case Header.ARRAY_LONG_FOR:
+			size = Utils.unpackInt(is);
+			ret = new long[size];
+			SortedArrays.readFrames(is, (long[]) ret);
+			break;
 		case Header.BIGINTEGER:
 			ret = new BigInteger(deserializeArrayByte(is));
 			break;
@@ -1107,6 +1540,17 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		return s;
 	}
 
+	private ArrayList<Object> deserializeUnsizedArrayList(final DataInput is, final ReferenceSet<Object> objectStack) throws IOException,
+			ClassNotFoundException {
+		final ArrayList<Object> s = new ArrayList<Object>();
+		objectStack.add(s);
+		int head;
+		while ((head = readHeader(is, objectStack)) != Header.END) {
+			s.add(deserialize(head, is, objectStack));
+		}
+		return s;
+	}
+
 	private static ArrayList<Object> deserializeArrayListPackedLong(final DataInput is) throws IOException {
 		final int size = is.readUnsignedByte();
 		if (size < 0) {
@@ -1198,6 +1642,18 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		return s;
 	}
 
+	private HashMap<Object, Object> deserializeUnsizedHashMap(final DataInput is, final ReferenceSet<Object> objectStack) throws IOException,
+			ClassNotFoundException {
+		final HashMap<Object, Object> s = new HashMap<Object, Object>();
+		objectStack.add(s);
+		int head;
+		while ((head = readHeader(is, objectStack)) != Header.END) {
+			final Object key = deserialize(head, is, objectStack);
+			s.put(key, deserialize(is, objectStack));
+		}
+		return s;
+	}
+
 	private LinkedHashMap<Object, Object> deserializeLinkedHashMap(final DataInput is, final ReferenceSet<Object> objectStack) throws IOException,
 			ClassNotFoundException {
 		final int size = Utils.unpackInt(is);
@@ -1219,6 +1675,363 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		return s;
 	}
 
+	/**
+	 * Moves the stream past the next object without building it. Every object
+	 * the reader would have added to the reference set gets a placeholder, so
+	 * the objects read after it resolve their back references the same way, a
+	 * back reference to a skipped object can not be read. With a null
+	 * reference set nothing is tracked, which is enough to step over whole
+	 * messages.
+	 * <p>
+	 * Fixed size bodies are skipped by their length, packed numbers and
+	 * nested objects one by one. Class names are still resolved, as the ids
+	 * of the classes they register may be used later in the stream, and so
+	 * are the strings added to the string dictionary.
+	 * 
+	 * @param is
+	 *           the input
+	 * @param objectStack
+	 *           the reference set of the stream, or null
+	 * @throws IOException
+	 *            Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *            the class not found exception
+	 */
+	public void skip(final DataInput is, final ReferenceSet<Object> objectStack) throws IOException, ClassNotFoundException {
+		skip(readHeader(is, objectStack), is, objectStack);
+	}
+
+	/**
+	 * Moves the buffer position past a message written by
+	 * {@link #serialize(ByteBuffer, Object)}.
+	 */
+	public void skip(final ByteBuffer buf) throws IOException, ClassNotFoundException {
+		final ByteBufferDataInput in = new ByteBufferDataInput(buf);
+		final BaseSerializer ser = getMessageSerializer();
+		ser.clearClassRegistry();
+		ser.skip(in, null);
+		buf.position(in.position());
+	}
+
+	/**
+	 * Skips the rest of an object whose header was already read.
+	 */
+	protected void skip(final int head, final DataInput is, final ReferenceSet<Object> objectStack) throws IOException,
+			ClassNotFoundException {
+		final int bodySize = scalarBodySize(head);
+		if (bodySize >= 0) {
+			skipFully(is, bodySize);
+			addSkipped(objectStack, true);
+			return;
+		}
+		if (head > Header.STRING_0 && head <= Header.STRING_10) {
+			skipPacked(is, head - Header.STRING_0);
+			addSkipped(objectStack, true);
+			return;
+		}
+		boolean value = false;
+		int size;
+		switch (head) {
+		case Header.ZERO_FAIL:
+			throw new StreamCorruptedException("Zero Header, data corrupted");
+		case Header.NULL:
+			return;
+		case Header.OBJECT_STACK:
+			Utils.unpackInt(is);
+			return;
+		case Header.JAVA_SERIALIZATION:
+			throw new StreamCorruptedException("Wrong header, data were probably serialized with java.lang.ObjectOutputStream");
+		case Header.STRING:
+			skipPacked(is, Utils.unpackInt(is));
+			value = true;
+			break;
+		case Header.STRING_LATIN1:
+		case Header.STRING_UTF8:
+			skipFully(is, Utils.unpackInt(is));
+			value = true;
+			break;
+		case Header.STRING_DICT_REF:
+		case Header.STRING_DICT_ADD:
+			skipDictionaryString(is, head, objectStack);
+			value = true;
+			break;
+		case Header.BIGINTEGER:
+			skipFully(is, Utils.unpackInt(is));
+			value = true;
+			break;
+		case Header.BIGDECIMAL:
+			skipFully(is, Utils.unpackInt(is));
+			Utils.unpackInt(is);
+			value = true;
+			break;
+		case Header.CLASS:
+			skipClass(is);
+			value = true;
+			break;
+		case Header.ARRAY_BYTE_ALL_EQUAL:
+			Utils.unpackInt(is);
+			skipFully(is, 1);
+			break;
+		case Header.ARRAY_BYTE:
+		case Header.BITSET:
+		case Header.ARRAY_INT_BYTE:
+		case Header.ARRAY_LONG_BYTE:
+			skipFully(is, Utils.unpackInt(is));
+			break;
+		case Header.ARRAY_SHORT:
+		case Header.ARRAY_CHAR:
+		case Header.ARRAY_INT_SHORT:
+		case Header.ARRAY_LONG_SHORT:
+			skipFully(is, 2L * Utils.unpackInt(is));
+			break;
+		case Header.ARRAY_FLOAT:
+		case Header.ARRAY_INT:
+		case Header.ARRAY_LONG_INT:
+			skipFully(is, 4L * Utils.unpackInt(is));
+			break;
+		case Header.ARRAY_DOUBLE:
+		case Header.ARRAY_LONG:
+			skipFully(is, 8L * Utils.unpackInt(is));
+			break;
+		case Header.ARRAY_BOOLEAN:
+			skipFully(is, Utils.unpackInt(is) + 7L >>> 3);
+			break;
+		case Header.ARRAY_BOOLEAN_RLE:
+			size = Utils.unpackInt(is);
+			is.readBoolean();
+			skipRuns(is, size, false);
+			break;
+		case Header.BITSET_RLE:
+			skipRuns(is, Utils.unpackInt(is), true);
+			break;
+		case Header.ARRAY_INT_PACKED:
+		case Header.ARRAY_LONG_PACKED:
+		case Header.ARRAY_INT_DELTA:
+		case Header.ARRAY_LONG_DELTA:
+			skipPacked(is, Utils.unpackInt(is));
+			break;
+		case Header.ARRAY_INT_FOR:
+			SortedArrays.skipFrames(is, Utils.unpackInt(is), 32);
+			break;
+		case Header.ARRAY_LONG_FOR:
+			SortedArrays.skipFrames(is, Utils.unpackInt(is), 64);
+			break;
+		case Header.ARRAYLIST_PACKED_LONG:
+		case Header.ARRAY_OBJECT_PACKED_LONG:
+			skipPacked(is, is.readUnsignedByte());
+			break;
+		case Header.ARRAY_OBJECT_ALL_NULL:
+			Utils.unpackInt(is);
+			skipClass(is);
+			break;
+		case Header.ARRAY_OBJECT_NO_REFS:
+			size = Utils.unpackInt(is);
+			skipClass(is);
+			skipElements(is, size, null);
+			break;
+		case Header.ARRAY_OBJECT:
+			size = Utils.unpackInt(is);
+			skipClass(is);
+			addSkipped(objectStack, false);
+			skipElements(is, size, objectStack);
+			return;
+		case Header.ARRAYLIST:
+		case Header.LINKEDLIST:
+		case Header.HASHSET:
+		case Header.LINKEDHASHSET:
+			size = Utils.unpackInt(is);
+			addSkipped(objectStack, false);
+			skipElements(is, size, objectStack);
+			return;
+		case Header.HASHMAP:
+		case Header.LINKEDHASHMAP:
+		case Header.PROPERTIES:
+			size = Utils.unpackInt(is);
+			addSkipped(objectStack, false);
+			skipElements(is, 2L * size, objectStack);
+			return;
+		case Header.TREESET:
+		case Header.TREEMAP:
+			size = Utils.unpackInt(is);
+			addSkipped(objectStack, false);
+			// comparator
+			skip(is, objectStack);
+			skipElements(is, head == Header.TREEMAP ? 2L * size : size, objectStack);
+			return;
+		case Header.ARRAYLIST_UNSIZED:
+		case Header.HASHMAP_UNSIZED:
+			addSkipped(objectStack, false);
+			int next;
+			while ((next = readHeader(is, objectStack)) != Header.END) {
+				skip(next, is, objectStack);
+				if (head == Header.HASHMAP_UNSIZED) {
+					skip(is, objectStack);
+				}
+			}
+			return;
+		default:
+			skipUnknownHeader(is, head, objectStack);
+			return;
+		}
+		addSkipped(objectStack, value);
+	}
+
+	/**
+	 * Bytes following the header of a number, boolean, date, UUID or empty
+	 * string, -1 for any other header.
+	 */
+	private static int scalarBodySize(final int head) {
+		if (head >= Header.BOOLEAN_TRUE && head <= Header.INT_MAX_VALUE || head >= Header.LONG_M9 && head <= Header.LONG_MAX_VALUE) {
+			return 0;
+		}
+		if (head >= Header.INT_MF1 && head <= Header.INT_F3) {
+			return (head - Header.INT_MF1 >>> 1) + 1;
+		}
+		if (head >= Header.LONG_MF1 && head <= Header.LONG_F7) {
+			return (head - Header.LONG_MF1 >>> 1) + 1;
+		}
+		switch (head) {
+		case Header.BYTE_M1:
+		case Header.BYTE_0:
+		case Header.BYTE_1:
+		case Header.CHAR_0:
+		case Header.CHAR_1:
+		case Header.SHORT_M1:
+		case Header.SHORT_0:
+		case Header.SHORT_1:
+		case Header.FLOAT_M1:
+		case Header.FLOAT_0:
+		case Header.FLOAT_1:
+		case Header.DOUBLE_M1:
+		case Header.DOUBLE_0:
+		case Header.DOUBLE_1:
+		case Header.STRING_0:
+			return 0;
+		case Header.BYTE:
+		case Header.CHAR_255:
+		case Header.SHORT_255:
+		case Header.SHORT_M255:
+		case Header.FLOAT_255:
+		case Header.DOUBLE_255:
+			return 1;
+		case Header.CHAR:
+		case Header.SHORT:
+		case Header.FLOAT_SHORT:
+		case Header.DOUBLE_SHORT:
+			return 2;
+		case Header.INT:
+		case Header.FLOAT:
+		case Header.DOUBLE_INT:
+			return 4;
+		case Header.LONG:
+		case Header.DOUBLE:
+		case Header.DATE:
+			return 8;
+		case Header.UUID:
+			return 16;
+		default:
+			return -1;
+		}
+	}
+
+	private void skipElements(final DataInput is, final long count, final ReferenceSet<Object> objectStack) throws IOException,
+			ClassNotFoundException {
+		if (count < 0) {
+			throw new StreamCorruptedException("Invalid size " + count);
+		}
+		for (long i = 0; i < count; i++) {
+			skip(is, objectStack);
+		}
+	}
+
+	/**
+	 * Skips a dictionary string. The dictionary, if tracked, sees the same adds
+	 * and hits as when reading, so the added strings are decoded.
+	 */
+	private void skipDictionaryString(final DataInput is, final int head, final ReferenceSet<Object> objectStack) throws IOException,
+			ClassNotFoundException {
+		if (objectStack != null) {
+			deserializeDictionaryString(is, head, objectStack.getStrings());
+		} else if (head == Header.STRING_DICT_REF) {
+			Utils.unpackInt(is);
+		} else {
+			skip(is, null);
+		}
+	}
+
+	/**
+	 * Skips the runs of an ARRAY_BOOLEAN_RLE body, or the pairs of set and
+	 * clear runs of a BITSET_RLE one, covering <code>length</code> bits.
+	 */
+	private static void skipRuns(final DataInput is, final int length, final boolean pairs) throws IOException {
+		long from = 0;
+		while (from < length) {
+			final int run = Utils.unpackInt(is);
+			final int clear = pairs ? Utils.unpackInt(is) : 0;
+			if (run < 0 || clear < 0 || !pairs && run == 0 || pairs && clear == 0) {
+				throw new StreamCorruptedException("Invalid run");
+			}
+			from += run + (long) clear;
+			if (from > length) {
+				throw new StreamCorruptedException("Invalid run");
+			}
+		}
+	}
+
+	private static void skipPacked(final DataInput is, final int count) throws IOException {
+		if (count < 0) {
+			throw new StreamCorruptedException("Invalid size " + count);
+		}
+		for (int i = 0; i < count; i++) {
+			Utils.unpackLong(is);
+		}
+	}
+
+	/**
+	 * Placeholder of a skipped object, unless nothing is tracked.
+	 */
+	protected static void addSkipped(final ReferenceSet<Object> objectStack, final boolean value) {
+		if (objectStack != null) {
+			objectStack.addSkipped(value);
+		}
+	}
+
+	/**
+	 * Skips n bytes, reading them when the input does not skip.
+	 */
+	protected static void skipFully(final DataInput is, long n) throws IOException {
+		if (n < 0) {
+			throw new StreamCorruptedException("Invalid length " + n);
+		}
+		while (n > 0) {
+			final int skipped = is.skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+			if (skipped > 0) {
+				n -= skipped;
+			} else {
+				// throws EOFException at the end of the input
+				is.readByte();
+				n--;
+			}
+		}
+	}
+
+	/**
+	 * Skips a class written by {@link #serializeClass(DataOutput, Class)}. It
+	 * is read, subclasses may register the classes they see.
+	 */
+	protected void skipClass(final DataInput is) throws IOException, ClassNotFoundException {
+		deserializeClass(is);
+	}
+
+	/**
+	 * Skips an object with a header of a subclass, reading it unless the
+	 * subclass overrides this method too.
+	 */
+	protected void skipUnknownHeader(final DataInput is, final int head, final ReferenceSet<Object> objectStack) throws IOException,
+			ClassNotFoundException {
+		deserialize(head, is, objectStack);
+	}
+
 	/** override this method to extend BaseSerializer functionality */
 	protected void serializeUnknownObject(final DataOutput out, final Object obj, final ReferenceSet<Object> objectStack)
 			throws ObjectStreamException, IOException {
@@ -1233,72 +2046,33 @@ public abstract class BaseSerializer implements Serializer<Object> {
 
 	/**
 	 * Builds a byte array from the array of booleans, compressing up to 8
-	 * booleans per byte.
+	 * booleans per byte, the first one in the lowest bit.
 	 * 
 	 * @param bool
 	 *           The booleans to be compressed.
 	 * @return The fully compressed byte array.
 	 */
 	protected static byte[] booleanToByteArray(final boolean[] bool) {
-		final int boolLen = bool.length;
-		final int mod8 = boolLen % 8;
-		final byte[] boolBytes = new byte[boolLen / 8 + (boolLen % 8 == 0 ? 0 : 1)];
-		final boolean isFlushWith8 = mod8 == 0;
-		final int length = isFlushWith8 ? boolBytes.length : boolBytes.length - 1;
+		final int full = bool.length >>> 3;
+		final byte[] boolBytes = new byte[bool.length + 7 >>> 3];
 		int x = 0;
-		int boolByteIndex;
-		for (boolByteIndex = 0; boolByteIndex < length;) {
-			final byte b = (byte) ((bool[x++] ? 0x01 : 0x00) << 0 | (bool[x++] ? 0x01 : 0x00) << 1 | (bool[x++] ? 0x01 : 0x00) << 2
-					| (bool[x++] ? 0x01 : 0x00) << 3 | (bool[x++] ? 0x01 : 0x00) << 4 | (bool[x++] ? 0x01 : 0x00) << 5 | (bool[x++] ? 0x01 : 0x00) << 6 | (bool[x++] ? 0x01
-					: 0x00) << 7);
-			boolBytes[boolByteIndex++] = b;
-		}
-		if (!isFlushWith8) {// If length is not a multiple of 8 we must do the
-									// last byte conditionally on every element.
-			byte b = (byte) 0x00;
-
-			switch (mod8) {
-			case 1:
-				b |= (bool[x++] ? 0x01 : 0x00) << 0;
-				break;
-			case 2:
-				b |= (bool[x++] ? 0x01 : 0x00) << 0 | (bool[x++] ? 0x01 : 0x00) << 1;
-				break;
-			case 3:
-				b |= (bool[x++] ? 0x01 : 0x00) << 0 | (bool[x++] ? 0x01 : 0x00) << 1 | (bool[x++] ? 0x01 : 0x00) << 2;
-				break;
-			case 4:
-				b |= (bool[x++] ? 0x01 : 0x00) << 0 | (bool[x++] ? 0x01 : 0x00) << 1 | (bool[x++] ? 0x01 : 0x00) << 2 | (bool[x++] ? 0x01 : 0x00) << 3;
-				break;
-			case 5:
-				b |= (bool[x++] ? 0x01 : 0x00) << 0 | (bool[x++] ? 0x01 : 0x00) << 1 | (bool[x++] ? 0x01 : 0x00) << 2 | (bool[x++] ? 0x01 : 0x00) << 3
-						| (bool[x++] ? 0x01 : 0x00) << 4;
-				break;
-			case 6:
-				b |= (bool[x++] ? 0x01 : 0x00) << 0 | (bool[x++] ? 0x01 : 0x00) << 1 | (bool[x++] ? 0x01 : 0x00) << 2 | (bool[x++] ? 0x01 : 0x00) << 3
-						| (bool[x++] ? 0x01 : 0x00) << 4 | (bool[x++] ? 0x01 : 0x00) << 5;
-				break;
-			case 7:
-				b |= (bool[x++] ? 0x01 : 0x00) << 0 | (bool[x++] ? 0x01 : 0x00) << 1 | (bool[x++] ? 0x01 : 0x00) << 2 | (bool[x++] ? 0x01 : 0x00) << 3
-						| (bool[x++] ? 0x01 : 0x00) << 4 | (bool[x++] ? 0x01 : 0x00) << 5 | (bool[x++] ? 0x01 : 0x00) << 6;
-				break;
-			case 8:
-				b |= (bool[x++] ? 0x01 : 0x00) << 0 | (bool[x++] ? 0x01 : 0x00) << 1 | (bool[x++] ? 0x01 : 0x00) << 2 | (bool[x++] ? 0x01 : 0x00) << 3
-						| (bool[x++] ? 0x01 : 0x00) << 4 | (bool[x++] ? 0x01 : 0x00) << 5 | (bool[x++] ? 0x01 : 0x00) << 6 | (bool[x++] ? 0x01 : 0x00) << 7;
-				break;
+		for (int i = 0; i < full; i++, x += 8) {
+			boolBytes[i] = (byte) ((bool[x] ? 0x01 : 0) | (bool[x + 1] ? 0x02 : 0) | (bool[x + 2] ? 0x04 : 0) | (bool[x + 3] ? 0x08 : 0)
+					| (bool[x + 4] ? 0x10 : 0) | (bool[x + 5] ? 0x20 : 0) | (bool[x + 6] ? 0x40 : 0) | (bool[x + 7] ? 0x80 : 0));
+		}
+		// last byte if the length is not a multiple of 8
+		for (; x < bool.length; x++) {
+			if (bool[x]) {
+				boolBytes[full] |= 1 << (x & 7);
 			}
-			boolBytes[boolByteIndex++] = b;
 		}
 		return boolBytes;
 	}
 
 	/**
 	 * Unpacks an integer from the DataInput indicating the number of booleans
-	 * that are compressed. It then calculates the number of bytes, reads them
-	 * in, and decompresses and converts them into an array of booleans using the
-	 * toBooleanArray(byte[]); method. The array of booleans are trimmed to
-	 * <code>numBools</code> elements. This is necessary in situations where the
-	 * number of booleans is not a multiple of 8.
+	 * that are compressed, reads the bytes holding them and decompresses them
+	 * straight into an array of <code>numBools</code> booleans.
 	 * 
 	 * @return The boolean array decompressed from the bytes read in.
 	 * @throws IOException
@@ -1306,22 +2080,69 @@ public abstract class BaseSerializer implements Serializer<Object> {
 	 */
 	protected static boolean[] readBooleanArray(final DataInput is) throws IOException {
 		final int numBools = Utils.unpackInt(is);
-		final int length = numBools / 8 + (numBools % 8 == 0 ? 0 : 1);
-		final byte[] boolBytes = new byte[length];
+		final byte[] boolBytes = new byte[numBools + 7 >>> 3];
 		is.readFully(boolBytes);
-		final boolean[] tmp = new boolean[boolBytes.length * 8];
-		final int len = boolBytes.length;
-		int boolIndex = 0;
-		for (int x = 0; x < len; x++) {
-			for (int y = 0; y < 8; y++) {
-				tmp[boolIndex++] = (boolBytes[x] & 0x01 << y) != 0x00;
+		final boolean[] bool = new boolean[numBools];
+		for (int i = 0; i < numBools; i++) {
+			bool[i] = (boolBytes[i >>> 3] & 1 << (i & 7)) != 0;
+		}
+		return bool;
+	}
+
+	/**
+	 * Reads ARRAY_BOOLEAN_RLE: the number of booleans, the first value and the
+	 * lengths of the runs of alternating values.
+	 */
+	protected static boolean[] readBooleanRuns(final DataInput is) throws IOException {
+		final boolean[] bool = new boolean[Utils.unpackInt(is)];
+		boolean v = is.readBoolean();
+		int from = 0;
+		while (from < bool.length) {
+			final int to = from + Utils.unpackInt(is);
+			if (to <= from || to > bool.length) {
+				throw new StreamCorruptedException("Invalid boolean run");
+			}
+			if (v) {
+				Arrays.fill(bool, from, to, true);
 			}
+			v = !v;
+			from = to;
 		}
-		// Trim excess booleans
-		final boolean[] finalBoolArray = new boolean[numBools];
-		System.arraycopy(tmp, 0, finalBoolArray, 0, numBools);
-		// Return the trimmed, uncompressed boolean array
-		return finalBoolArray;
+		return bool;
+	}
+
+	private static BitSet readBitSetRuns(final DataInput is) throws IOException {
+		final int length = Utils.unpackInt(is);
+		final BitSet bits = new BitSet(length);
+		int from = 0;
+		while (from < length) {
+			final int set = from + Utils.unpackInt(is);
+			final int clear = set + Utils.unpackInt(is);
+			if (set < from || clear <= set || clear > length) {
+				throw new StreamCorruptedException("Invalid bit run");
+			}
+			bits.set(set, clear);
+			from = clear;
+		}
+		return bits;
+	}
+
+	/**
+	 * Forgets the classes seen so far, so the next message does not refer to
+	 * classes registered by an earlier one. Nothing to do here, class names are
+	 * always written in full.
+	 */
+	protected void clearClassRegistry() {
+		// empty
+	}
+
+	/**
+	 * Serializer used by the buffer entry points, with a class registry of its
+	 * own so a message never resets the classes of a stream written or read
+	 * with this serializer. This one has no such state, it is used as is.
+	 */
+	protected BaseSerializer getMessageSerializer() {
+		return this;
 	}
 
 	protected void serializeClass(final DataOutput out, final Class<?> clazz) throws IOException {
@@ -1366,30 +2187,130 @@ public abstract class BaseSerializer implements Serializer<Object> {
 					return;
 				}
 				rset.add(val);
+				if (rset.getStrings() != null) {
+					serializeDictionaryString(out, val, rset.getStrings());
+					return;
+				}
 			}
 			if (len <= 10) {
 				out.writeByte(Header.STRING_0 + len);
+				for (int i = 0; i < len; i++) {
+					Utils.packInt(out, val.charAt(i));
+				}
 			} else {
-				out.writeByte(Header.STRING);
-				Utils.packInt(out, len);
+				serializeLongString(out, val);
+			}
+		}
+	}
+
+	/**
+	 * Writes a string through the dictionary: its slot if an equal string is
+	 * there, otherwise the string itself, added to the dictionary on both
+	 * sides.
+	 */
+	protected void serializeDictionaryString(final DataOutput out, final String val, final StringDictionary strings) throws IOException {
+		if (!StringDictionary.accepts(val)) {
+			serializeString(out, val, null);
+			return;
+		}
+		final int slot = strings.indexOf(val);
+		if (slot != -1) {
+			out.writeByte(Header.STRING_DICT_REF);
+			Utils.packInt(out, slot);
+			return;
+		}
+		strings.add(val);
+		out.writeByte(Header.STRING_DICT_ADD);
+		serializeString(out, val, null);
+	}
+
+	/**
+	 * Reads the body of STRING_DICT_REF and STRING_DICT_ADD.
+	 */
+	protected String deserializeDictionaryString(final DataInput in, final int head, final StringDictionary strings) throws IOException {
+		if (strings == null) {
+			throw new StreamCorruptedException("String dictionary header without dictionary");
+		}
+		if (head == Header.STRING_DICT_REF) {
+			final String s = strings.get(Utils.unpackInt(in));
+			if (s == null) {
+				throw new StreamCorruptedException("Unknown string slot");
 			}
+			return s;
+		}
+		final String s = deserializeString(in, null);
+		strings.add(s);
+		return s;
+	}
+
+	/**
+	 * Writes a string longer than 10 chars. Latin-1 bytes if every char is below
+	 * 256, UTF-8 otherwise, and a packed int per char if it has unpaired
+	 * surrogates that UTF-8 can not hold.
+	 */
+	protected static void serializeLongString(final DataOutput out, final String val) throws IOException {
+		final int len = val.length();
+		int bits = 0;
+		for (int i = 0; i < len; i++) {
+			bits |= val.charAt(i);
+		}
+		final byte[] b;
+		if (bits < 256) {
+			out.writeByte(Header.STRING_LATIN1);
+			b = val.getBytes(StandardCharsets.ISO_8859_1);
+		} else if (bits < Character.MIN_SURROGATE || isWellFormed(val)) {
+			out.writeByte(Header.STRING_UTF8);
+			b = val.getBytes(StandardCharsets.UTF_8);
+		} else {
+			out.writeByte(Header.STRING);
+			Utils.packInt(out, len);
 			for (int i = 0; i < len; i++) {
 				Utils.packInt(out, val.charAt(i));
 			}
+			return;
+		}
+		Utils.packInt(out, b.length);
+		out.write(b);
+	}
+
+	private static boolean isWellFormed(final String val) {
+		final int len = val.length();
+		for (int i = 0; i < len; i++) {
+			final char c = val.charAt(i);
+			if (Character.isHighSurrogate(c)) {
+				if (++i == len || !Character.isLowSurrogate(val.charAt(i))) {
+					return false;
+				}
+			} else if (Character.isLowSurrogate(c)) {
+				return false;
+			}
 		}
+		return true;
 	}
 
 	@Override
 	public String deserializeString(final DataInput in, final ReferenceSet<Object> rset) throws IOException {
 		final int header = in.readUnsignedByte();
+		final String s;
 		switch (header) {
 		case Header.OBJECT_STACK:
 			final int index = Utils.unpackInt(in);
 			return (String) rset.elementOf(index);
-		case Header.STRING:
-			return deserializeString(in, Utils.unpackInt(in));
 		case Header.STRING_0:
 			return Utils.EMPTY_STRING;
+		case Header.STRING:
+			s = deserializeString(in, Utils.unpackInt(in));
+			break;
+		case Header.STRING_LATIN1:
+			s = deserializeEncodedString(in, StandardCharsets.ISO_8859_1);
+			break;
+		case Header.STRING_UTF8:
+			s = deserializeEncodedString(in, StandardCharsets.UTF_8);
+			break;
+		case Header.STRING_DICT_REF:
+		case Header.STRING_DICT_ADD:
+			s = deserializeDictionaryString(in, header, rset == null ? null : rset.getStrings());
+			break;
 		case Header.STRING_1:
 		case Header.STRING_2:
 		case Header.STRING_3:
@@ -1400,10 +2321,16 @@ public abstract class BaseSerializer implements Serializer<Object> {
 		case Header.STRING_8:
 		case Header.STRING_9:
 		case Header.STRING_10:
-			return deserializeString(in, header - Header.STRING_0);
+			s = deserializeString(in, header - Header.STRING_0);
+			break;
 		default:
 			throw new StreamCorruptedException();
 		}
+		// serializeString tracks non empty strings when given a reference set
+		if (rset != null) {
+			rset.add(s);
+		}
+		return s;
 	}
 
 	@Override
@@ -1,9 +1,7 @@
 package com.bzsoft.ser;
 
 import java.io.DataInput;
-import java.io.DataInputStream;
 import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.InvalidClassException;
@@ -11,17 +9,22 @@ import java.io.InvalidObjectException;
 import java.io.NotSerializableException;
 import java.io.Serializable;
 import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BeanSerializer extends BaseSerializer {
 
@@ -51,8 +54,9 @@ public class BeanSerializer extends BaseSerializer {
 	}
 
 	protected static final class FieldInfo implements Comparable<FieldInfo> {
-		private final String	name;
-		private final Field	field;
+		private final String				name;
+		private final Field				field;
+		private final FieldAccessor	accessor;
 
 		protected FieldInfo(final String name, final Class<?> clazz) throws IOException {
 			this.name = name;
@@ -79,6 +83,7 @@ public class BeanSerializer extends BaseSerializer {
 				aClazz = aClazz.getSuperclass();
 			}
 			this.field = field;
+			accessor = FieldAccessor.of(field);
 		}
 
 		public String getName() {
@@ -89,6 +94,10 @@ public class BeanSerializer extends BaseSerializer {
 			return field;
 		}
 
+		public FieldAccessor getAccessor() {
+			return accessor;
+		}
+
 		@Override
 		public int hashCode() {
 			return field.hashCode();
@@ -110,10 +119,15 @@ public class BeanSerializer extends BaseSerializer {
 		}
 	}
 
+	/**
+	 * Metadata of a class. Immutable once built, so one instance per class is
+	 * shared by all serializers.
+	 */
 	protected static final class ClassInfo {
 
 		private final String											name;
-		private final List<FieldInfo>								fields;
+		private final FieldInfo[]									fields;
+		private final int												referenceFieldCount;
 		private final Map<Class<?>, Map<String, Integer>>	mClassNameID;
 		private final boolean										isEnum;
 		private final boolean										externalizable;
@@ -121,14 +135,15 @@ public class BeanSerializer extends BaseSerializer {
 
 		protected ClassInfo(final String name, final FieldInfo[] fields, final boolean isEnum, final boolean isExternalizable,
 				final SpecialSerializationInfo ssi) {
-			this.fields = new ArrayList<FieldInfo>();
+			this.fields = fields.clone();
 			this.mClassNameID = new HashMap<Class<?>, Map<String, Integer>>();
 			this.name = name;
 			this.isEnum = isEnum;
 			externalizable = isExternalizable;
 			this.ssi = ssi;
-			for (final FieldInfo f : fields) {
-				final int index = this.fields.size();
+			int refs = 0;
+			for (int index = 0; index < fields.length; index++) {
+				final FieldInfo f = fields[index];
 				final Class<?> clazz = f.getField().getDeclaringClass();
 				Map<String, Integer> map = mClassNameID.get(clazz);
 				if (map == null) {
@@ -136,16 +151,22 @@ public class BeanSerializer extends BaseSerializer {
 					mClassNameID.put(clazz, map);
 				}
 				map.put(f.getName(), index);
-				this.fields.add(f);
+				if (f.getAccessor().getKind() == FieldAccessor.OBJECT) {
+					refs++;
+				}
 			}
+			referenceFieldCount = refs;
 		}
 
 		public String getName() {
 			return name;
 		}
 
+		/**
+		 * The shared field array, must not be modified.
+		 */
 		public FieldInfo[] getFields() {
-			return fields.toArray(new FieldInfo[fields.size()]);
+			return fields;
 		}
 
 		public boolean isEnum() {
@@ -173,20 +194,19 @@ public class BeanSerializer extends BaseSerializer {
 		}
 
 		public FieldInfo getField(final int serialId) {
-			return fields.get(serialId);
+			return fields[serialId];
 		}
 
-		public int addFieldInfo(final FieldInfo field) {
-			final int index = fields.size();
-			final Class<?> clazz = field.getField().getDeclaringClass();
-			Map<String, Integer> map = mClassNameID.get(clazz);
-			if (map == null) {
-				map = new HashMap<String, Integer>();
-				mClassNameID.put(clazz, map);
-			}
-			map.put(field.getName(), index);
-			fields.add(field);
-			return index;
+		public int getFieldCount() {
+			return fields.length;
+		}
+
+		/**
+		 * Number of non primitive fields, the bits in the null bitmap of a
+		 * compact bean.
+		 */
+		public int getReferenceFieldCount() {
+			return referenceFieldCount;
 		}
 
 		@Override
@@ -198,6 +218,11 @@ public class BeanSerializer extends BaseSerializer {
 	protected static final Method									sunConstructor;
 	protected static final Object									sunReflFac;
 	protected static final Map<Class<?>, Constructor<?>>	class2constuctor;
+	/**
+	 * Metadata of every class serialized in this JVM, built once per class and
+	 * shared by all serializers. Only class ids are kept per serializer.
+	 */
+	protected static final ClassValue<ClassInfo>				class2classInfo;
 
 	static {
 		Method sc = null;
@@ -215,19 +240,141 @@ public class BeanSerializer extends BaseSerializer {
 		} catch (final Exception e) {
 			// ignore
 		}
-		class2constuctor = new IdentityHashMap<Class<?>, Constructor<?>>();
+		class2constuctor = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+		class2classInfo = new ClassValue<ClassInfo>() {
+			@Override
+			protected ClassInfo computeValue(final Class<?> type) {
+				try {
+					return createClassInfo(type);
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
 		sunConstructor = sc;
 		sunReflFac = srf;
 	}
 
+	/**
+	 * Settings of a {@link BeanSerializer}, all off by default.
+	 */
+	public static final class Options {
+
+		private ClassRegistry	registry;
+		private boolean			compact;
+		private TrackingPolicy	trackingPolicy	= TrackingPolicy.FULL;
+		private int					stringDictionarySize;
+		private Set<Class<?>>	indexedClasses	= Collections.<Class<?>> emptySet();
+
+		/**
+		 * @param registry
+		 *           classes with fixed ids, always written by id. May be null.
+		 */
+		public Options registry(final ClassRegistry registry) {
+			this.registry = registry;
+			return this;
+		}
+
+		/**
+		 * @param compact
+		 *           if true, the field layout of a class is written once with
+		 *           the class name and beans are written as their field values
+		 *           in layout order, without field ids. Both forms are always
+		 *           read. The layout of registered classes is never written.
+		 */
+		public Options compact(final boolean compact) {
+			this.compact = compact;
+			return this;
+		}
+
+		/**
+		 * @param trackingPolicy
+		 *           objects written as back references, {@link TrackingPolicy#FULL}
+		 *           by default
+		 */
+		public Options trackingPolicy(final TrackingPolicy trackingPolicy) {
+			if (trackingPolicy == null) {
+				throw new IllegalArgumentException("No tracking policy");
+			}
+			this.trackingPolicy = trackingPolicy;
+			return this;
+		}
+
+		/**
+		 * @param stringDictionarySize
+		 *           slots of the per stream dictionary that writes equal strings
+		 *           as a slot number, 0 to disable it
+		 */
+		public Options stringDictionarySize(final int stringDictionarySize) {
+			this.stringDictionarySize = stringDictionarySize;
+			return this;
+		}
+
+		/**
+		 * @param indexedClasses
+		 *           plain field classes written with the length of every field
+		 *           value, so single fields can be read with
+		 *           {@link BeanSerializer#deserializeIndexed(ByteBuffer)}. Field
+		 *           values are written on their own, without references to each
+		 *           other or to the rest of the stream, so these classes must not
+		 *           be part of a cycle. May be null.
+		 */
+		public Options indexedClasses(final Set<Class<?>> indexedClasses) {
+			this.indexedClasses = indexedClasses == null ? Collections.<Class<?>> emptySet() : indexedClasses;
+			return this;
+		}
+	}
+
 	protected final List<ClassInfo>								registered;
 	protected final Map<Class<?>, Integer>						class2classId;
 	protected final Map<Integer, Class<?>>						classId2class;
+	protected final boolean											compact;
+	protected final ClassRegistry									registry;
+	/** classes written as BEAN_INDEXED */
+	protected final Set<Class<?>>									indexed;
+	/** writes and reads the field values of indexed beans, created on first use */
+	private BeanSerializer											fieldSerializer;
+	/** reads and writes the messages of the buffer entry points, created on first use */
+	private BeanSerializer											messageSerializer;
+	/** field values of the indexed bean being written */
+	private BufferedDataOutput										fieldValues;
 
 	public BeanSerializer() {
+		this(new Options());
+	}
+
+	/**
+	 * @param options
+	 *           settings of the serializer, the reader must use the same ones.
+	 *           Later changes to the options do not affect the serializer.
+	 */
+	public BeanSerializer(final Options options) {
+		super(options.trackingPolicy, options.stringDictionarySize);
+		compact = options.compact;
+		registry = options.registry;
+		indexed = new HashSet<Class<?>>(options.indexedClasses);
 		registered = new ArrayList<ClassInfo>();
-		class2classId = new HashMap<Class<?>, Integer>();
+		class2classId = new IdentityHashMap<Class<?>, Integer>();
 		classId2class = new HashMap<Integer, Class<?>>();
+		if (registry != null) {
+			for (int id = 0; id < registry.size(); id++) {
+				final Class<?> clazz = registry.getClassById(id);
+				ClassInfo info = null;
+				if (clazz != null) {
+					try {
+						if (clazz != Object.class) {
+							assertClassSerializable(clazz);
+						}
+						info = getClassInfo(clazz);
+					} catch (final IOException e) {
+						throw new IllegalArgumentException("Could not register " + clazz.getName(), e);
+					}
+					class2classId.put(clazz, id);
+					classId2class.put(id, clazz);
+				}
+				registered.add(info);
+			}
+		}
 	}
 
 	private final static List<FieldInfo> getFieldInfo(final Class<?> clazz) throws IOException {
@@ -260,10 +407,7 @@ public class BeanSerializer extends BaseSerializer {
 		if (containsClass(clazz)) {
 			return class2classId.get(clazz);
 		}
-		final boolean externalizable = isExternalizable(clazz);
-		final SpecialSerializationInfo ssi = getSpecialSerializationInfo(clazz);
-		final List<FieldInfo> fiList = externalizable || ssi != null ? Collections.<FieldInfo> emptyList() : getFieldInfo(clazz);
-		final ClassInfo info = new ClassInfo(clazz.getName(), fiList.toArray(new FieldInfo[fiList.size()]), clazz.isEnum(), externalizable, ssi);
+		final ClassInfo info = getClassInfo(clazz);
 		final int id = registered.size();
 		class2classId.put(clazz, id);
 		classId2class.put(id, clazz);
@@ -271,6 +415,24 @@ public class BeanSerializer extends BaseSerializer {
 		return id;
 	}
 
+	/**
+	 * Shared metadata of a class, built on first use.
+	 */
+	protected static ClassInfo getClassInfo(final Class<?> clazz) throws IOException {
+		try {
+			return class2classInfo.get(clazz);
+		} catch (final UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static ClassInfo createClassInfo(final Class<?> clazz) throws IOException {
+		final boolean externalizable = isExternalizable(clazz);
+		final SpecialSerializationInfo ssi = getSpecialSerializationInfo(clazz);
+		final List<FieldInfo> fiList = externalizable || ssi != null ? Collections.<FieldInfo> emptyList() : getFieldInfo(clazz);
+		return new ClassInfo(clazz.getName(), fiList.toArray(new FieldInfo[fiList.size()]), clazz.isEnum(), externalizable, ssi);
+	}
+
 	protected static boolean isExternalizable(final Class<?> clazz) {
 		return Externalizable.class.isAssignableFrom(clazz);
 	}
@@ -329,14 +491,14 @@ public class BeanSerializer extends BaseSerializer {
 		if (fieldInfo.field == null) {
 			throw new NoSuchFieldError(object.getClass() + "." + fieldInfo.getName());
 		}
-		return fieldInfo.field.get(object);
+		return fieldInfo.accessor.get(object);
 	}
 
 	public void setFieldValue(final FieldInfo fieldInfo, final Object object, final Object value) throws IllegalAccessException {
 		if (fieldInfo.field == null) {
 			throw new NoSuchFieldError(object.getClass() + "." + fieldInfo.getName());
 		}
-		fieldInfo.field.set(object, value);
+		fieldInfo.accessor.set(object, value);
 	}
 
 	public boolean containsClass(final Class<?> clazz) {
@@ -347,12 +509,30 @@ public class BeanSerializer extends BaseSerializer {
 		return class2classId.get(clazz);
 	}
 
+	/**
+	 * Forgets the classes registered while serializing, keeping the ones of
+	 * the {@link ClassRegistry}.
+	 */
+	@Override
+	protected void clearClassRegistry() {
+		final int base = registry == null ? 0 : registry.size();
+		for (int id = registered.size() - 1; id >= base; id--) {
+			class2classId.remove(classId2class.remove(id));
+			registered.remove(id);
+		}
+	}
+
 	@Override
 	protected void serializeClass(final DataOutput out, final Class<?> clazz) throws IOException {
 		Integer classId = getClassId(clazz);
 		if (classId != null) {
 			out.write(Header.CLASS_ID);
 			Utils.packInt(out, classId);
+		} else if (compact) {
+			out.write(Header.CLASS_NID_LAYOUT);
+			classId = registerClass(clazz);
+			super.serializeClass(out, clazz);
+			serializeLayout(out, registered.get(classId));
 		} else {
 			out.write(Header.CLASS_NID);
 			classId = registerClass(clazz);
@@ -360,6 +540,36 @@ public class BeanSerializer extends BaseSerializer {
 		}
 	}
 
+	/**
+	 * Writes the field count and the field names in layout order.
+	 */
+	protected void serializeLayout(final DataOutput out, final ClassInfo classInfo) throws IOException {
+		final int count = classInfo.getFieldCount();
+		Utils.packInt(out, count);
+		for (int i = 0; i < count; i++) {
+			serializeString(out, classInfo.getField(i).getName(), null);
+		}
+	}
+
+	/**
+	 * Reads a layout written by {@link #serializeLayout(DataOutput, ClassInfo)}
+	 * and checks it matches the local class.
+	 */
+	protected void deserializeLayout(final DataInput in, final ClassInfo classInfo) throws IOException, ClassNotFoundException {
+		final int count = Utils.unpackInt(in);
+		if (count != classInfo.getFieldCount()) {
+			throw new InvalidClassException(classInfo.getName(), "Field count mismatch, stream " + count + " local "
+					+ classInfo.getFieldCount());
+		}
+		for (int i = 0; i < count; i++) {
+			final String name = (String) deserializeObject(in, null);
+			if (!name.equals(classInfo.getField(i).getName())) {
+				throw new InvalidClassException(classInfo.getName(), "Field layout mismatch at " + i + ", stream " + name
+						+ " local " + classInfo.getField(i).getName());
+			}
+		}
+	}
+
 	@Override
 	protected Class<?> deserializeClass(final DataInput in) throws IOException, ClassNotFoundException {
 		final int type = in.readUnsignedByte();
@@ -369,17 +579,45 @@ public class BeanSerializer extends BaseSerializer {
 		} else if (type == Header.CLASS_NID) {
 			final Class<?> clazz = super.deserializeClass(in);
 			classId = registerClass(clazz);
+		} else if (type == Header.CLASS_NID_LAYOUT) {
+			final Class<?> clazz = super.deserializeClass(in);
+			classId = registerClass(clazz);
+			deserializeLayout(in, registered.get(classId));
 		} else {
 			throw new StreamCorruptedException();
 		}
-		return classId2class.get(classId);
+		final Class<?> clazz = classId2class.get(classId);
+		if (clazz == null) {
+			throw new StreamCorruptedException("Unknown class id " + classId);
+		}
+		return clazz;
 	}
 
 	@Override
 	protected void serializeUnknownObject(final DataOutput out, final Object obj, final ReferenceSet<Object> objectStack) throws IOException {
+		final Class<?> clazz = obj.getClass();
+		if (isIndexed(clazz)) {
+			out.write(Header.BEAN_INDEXED);
+			serializeClass(out, clazz);
+			try {
+				serializeIndexedFields(out, registered.get(getClassId(clazz)), obj);
+			} catch (final IllegalAccessException e) {
+				throw new StreamCorruptedException();
+			}
+			return;
+		}
+		if (isCompact(clazz)) {
+			out.write(Header.BEAN_COMPACT);
+			serializeClass(out, clazz);
+			try {
+				serializeCompactFields(out, registered.get(getClassId(clazz)), obj, objectStack);
+			} catch (final IllegalAccessException e) {
+				throw new StreamCorruptedException();
+			}
+			return;
+		}
 		out.write(Header.BEAN);
 		// write class header
-		final Class<?> clazz = obj.getClass();
 		serializeClass(out, clazz);
 		final Integer classId = getClassId(clazz);
 		final ClassInfo classInfo = registered.get(classId);
@@ -388,12 +626,12 @@ public class BeanSerializer extends BaseSerializer {
 			final int ordinal = ((Enum<?>) obj).ordinal();
 			Utils.packInt(out, ordinal);
 		} else if (classInfo.isExternalizable()) {
-			final ObjectOutputStream os = new ObjectOutputStream((DataOutputStream) out, this, objectStack);
+			final ObjectOutputStream os = new ObjectOutputStream(out, this, objectStack);
 			((Externalizable) obj).writeExternal(os);
 			os.close();
 			return;
 		} else if (ssi != null) {
-			final ObjectOutputStream os = new ObjectOutputStream((DataOutputStream) out, this, objectStack);
+			final ObjectOutputStream os = new ObjectOutputStream(out, this, objectStack);
 			try {
 				ssi.getWriteObject().invoke(obj, os);
 			} catch (final Exception e) {
@@ -409,8 +647,7 @@ public class BeanSerializer extends BaseSerializer {
 					final int fieldId = classInfo.getFieldId(f.getField().getDeclaringClass(), f.getName());
 					Utils.packInt(out, fieldId);
 					// and write value
-					final Object fieldValue = getFieldValue(classInfo.getField(fieldId), obj);
-					serialize(out, fieldValue, objectStack);
+					serializeField(out, classInfo.getField(fieldId), obj, objectStack);
 				}
 			} catch (final IllegalAccessException e) {
 				throw new StreamCorruptedException();
@@ -418,8 +655,321 @@ public class BeanSerializer extends BaseSerializer {
 		}
 	}
 
+	/**
+	 * Plain field beans use the compact form when the compact mode is on, enums,
+	 * Externalizable and custom writeObject classes do not.
+	 */
+	protected boolean isCompact(final Class<?> clazz) throws IOException {
+		if (!compact || clazz.isEnum() || isExternalizable(clazz)) {
+			return false;
+		}
+		final Integer classId = getClassId(clazz);
+		if (classId != null) {
+			return registered.get(classId).getSsi() == null;
+		}
+		assertClassSerializable(clazz);
+		return getClassInfo(clazz).getSsi() == null;
+	}
+
+	/**
+	 * Plain field classes of the indexed set.
+	 */
+	protected boolean isIndexed(final Class<?> clazz) throws IOException {
+		if (indexed.isEmpty() || !indexed.contains(clazz) || clazz.isEnum() || isExternalizable(clazz)) {
+			return false;
+		}
+		assertClassSerializable(clazz);
+		return getClassInfo(clazz).getSsi() == null;
+	}
+
+	/**
+	 * Serializer of the field values of indexed beans, with the same settings
+	 * and its own class ids, cleared before every field.
+	 */
+	protected BeanSerializer getFieldSerializer() {
+		if (fieldSerializer == null) {
+			fieldSerializer = new BeanSerializer(options());
+		}
+		return fieldSerializer;
+	}
+
+	/**
+	 * Options this serializer was built with.
+	 */
+	private Options options() {
+		return new Options().registry(registry).compact(compact).trackingPolicy(trackingPolicy).stringDictionarySize(stringDictionarySize)
+				.indexedClasses(indexed);
+	}
+
+	@Override
+	protected BeanSerializer getMessageSerializer() {
+		if (messageSerializer == null) {
+			messageSerializer = new BeanSerializer(options());
+		}
+		return messageSerializer;
+	}
+
+	/**
+	 * Writes the field count, the byte length of every field value in layout
+	 * order and the values. Every value is written as a message of its own,
+	 * with its own references and classes, so it can be read without the
+	 * others.
+	 */
+	protected void serializeIndexedFields(final DataOutput out, final ClassInfo classInfo, final Object obj) throws IOException,
+			IllegalAccessException {
+		final BeanSerializer fs = getFieldSerializer();
+		if (fieldValues == null) {
+			fieldValues = new BufferedDataOutput(null);
+		}
+		final BufferedDataOutput values = fieldValues;
+		values.clear();
+		final int count = classInfo.getFieldCount();
+		final int[] lengths = new int[count];
+		for (int i = 0; i < count; i++) {
+			final int start = values.size();
+			fs.clearClassRegistry();
+			fs.serializeField(values, classInfo.getField(i), obj, null);
+			lengths[i] = values.size() - start;
+		}
+		Utils.packInt(out, count);
+		for (final int length : lengths) {
+			Utils.packInt(out, length);
+		}
+		values.writeTo(out);
+	}
+
+	/**
+	 * Reads the fields written by
+	 * {@link #serializeIndexedFields(DataOutput, ClassInfo, Object)} into the
+	 * object.
+	 */
+	protected void deserializeIndexedFields(final DataInput in, final ClassInfo classInfo, final Object obj) throws IOException,
+			ClassNotFoundException, IllegalAccessException {
+		final int count = readIndexedFieldCount(in, classInfo);
+		for (int i = 0; i < count; i++) {
+			// lengths are only needed to read single fields
+			Utils.unpackInt(in);
+		}
+		final BeanSerializer fs = getFieldSerializer();
+		for (int i = 0; i < count; i++) {
+			fs.clearClassRegistry();
+			fs.deserializeField(in, classInfo.getField(i), obj, null);
+		}
+	}
+
+	private static int readIndexedFieldCount(final DataInput in, final ClassInfo classInfo) throws IOException {
+		final int count = Utils.unpackInt(in);
+		if (count != classInfo.getFieldCount()) {
+			throw new InvalidClassException(classInfo.getName(), "Field count mismatch, stream " + count + " local "
+					+ classInfo.getFieldCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the class and the field lengths of a BEAN_INDEXED message written
+	 * by {@link #serialize(ByteBuffer, Object)}, leaving the field values to be
+	 * read one by one when asked for. The buffer position is moved past the
+	 * message, the returned view reads from the buffer and does not copy it.
+	 *
+	 * @param buf
+	 *           the buffer
+	 * @return a view of the bean
+	 * @throws StreamCorruptedException
+	 *            if the message is not an indexed bean
+	 * @throws IOException
+	 *            Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *            the class not found exception
+	 */
+	public IndexedBean deserializeIndexed(final ByteBuffer buf) throws IOException, ClassNotFoundException {
+		final int start = buf.position();
+		final ByteBufferDataInput in = new ByteBufferDataInput(buf);
+		final BeanSerializer ms = getMessageSerializer();
+		ms.clearClassRegistry();
+		final int head = in.readUnsignedByte();
+		if (head != Header.BEAN_INDEXED) {
+			throw new StreamCorruptedException("Not an indexed bean: " + head);
+		}
+		final Class<?> clazz = ms.deserializeClass(in);
+		final ClassInfo classInfo = ms.registered.get(ms.class2classId.get(clazz));
+		assertClassSerializable(clazz);
+		final int count = readIndexedFieldCount(in, classInfo);
+		final int[] offsets = new int[count + 1];
+		for (int i = 0; i < count; i++) {
+			final int length = Utils.unpackInt(in);
+			if (length < 0 || length > buf.limit() - in.position() - offsets[i]) {
+				throw new StreamCorruptedException("Invalid length " + length + " of field " + i);
+			}
+			offsets[i + 1] = offsets[i] + length;
+		}
+		final int valuesStart = in.position();
+		final int end = valuesStart + offsets[count];
+		if (end > buf.limit()) {
+			throw new StreamCorruptedException("Truncated indexed bean");
+		}
+		final ByteBuffer message = buf.duplicate();
+		message.position(start);
+		message.limit(end);
+		final ByteBuffer values = buf.duplicate();
+		values.position(valuesStart);
+		values.limit(end);
+		buf.position(end);
+		return new IndexedBean(this, clazz, classInfo, message.slice(), values.slice(), offsets);
+	}
+
+	/**
+	 * Reads a field value of an indexed bean.
+	 */
+	protected Object deserializeIndexedField(final ByteBuffer value) throws IOException, ClassNotFoundException {
+		final BeanSerializer fs = getFieldSerializer();
+		fs.clearClassRegistry();
+		return fs.deserialize(new ByteBufferDataInput(value), null);
+	}
+
+	/**
+	 * Writes a null bitmap for the reference fields followed by the field
+	 * values in layout order. Primitives are written without headers, null
+	 * references are not written at all.
+	 */
+	protected void serializeCompactFields(final DataOutput out, final ClassInfo classInfo, final Object obj,
+			final ReferenceSet<Object> objectStack) throws IOException, IllegalAccessException {
+		final int count = classInfo.getFieldCount();
+		final Object[] values = new Object[count];
+		final byte[] nulls = new byte[(classInfo.getReferenceFieldCount() + 7) >>> 3];
+		for (int i = 0, bit = 0; i < count; i++) {
+			final FieldInfo f = classInfo.getField(i);
+			if (f.getAccessor().getKind() == FieldAccessor.OBJECT) {
+				final Object value = getFieldValue(f, obj);
+				if (value == null) {
+					nulls[bit >>> 3] |= 1 << (bit & 7);
+				}
+				values[i] = value;
+				bit++;
+			}
+		}
+		out.write(nulls);
+		for (int i = 0; i < count; i++) {
+			final FieldInfo f = classInfo.getField(i);
+			final FieldAccessor a = f.getAccessor();
+			switch (a.getKind()) {
+			case FieldAccessor.BOOLEAN:
+				out.writeBoolean(a.getBoolean(obj));
+				break;
+			case FieldAccessor.BYTE:
+				out.writeByte(a.getByte(obj));
+				break;
+			case FieldAccessor.CHAR:
+				out.writeChar(a.getChar(obj));
+				break;
+			case FieldAccessor.SHORT:
+				out.writeShort(a.getShort(obj));
+				break;
+			case FieldAccessor.INT:
+				final int iv = a.getInt(obj);
+				Utils.packUnsignedInt(out, iv << 1 ^ iv >> 31);
+				break;
+			case FieldAccessor.LONG:
+				final long lv = a.getLong(obj);
+				Utils.packUnsignedLong(out, lv << 1 ^ lv >> 63);
+				break;
+			case FieldAccessor.FLOAT:
+				out.writeFloat(a.getFloat(obj));
+				break;
+			case FieldAccessor.DOUBLE:
+				out.writeDouble(a.getDouble(obj));
+				break;
+			default:
+				if (values[i] != null) {
+					serialize(out, values[i], objectStack);
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads the fields written by
+	 * {@link #serializeCompactFields(DataOutput, ClassInfo, Object, ReferenceSet)}
+	 * into the object.
+	 */
+	protected void deserializeCompactFields(final DataInput in, final ClassInfo classInfo, final Object obj,
+			final ReferenceSet<Object> objectStack) throws IOException, ClassNotFoundException, IllegalAccessException {
+		final int count = classInfo.getFieldCount();
+		final byte[] nulls = new byte[(classInfo.getReferenceFieldCount() + 7) >>> 3];
+		in.readFully(nulls);
+		for (int i = 0, bit = 0; i < count; i++) {
+			final FieldInfo f = classInfo.getField(i);
+			final FieldAccessor a = f.getAccessor();
+			switch (a.getKind()) {
+			case FieldAccessor.BOOLEAN:
+				a.setBoolean(obj, in.readBoolean());
+				break;
+			case FieldAccessor.BYTE:
+				a.setByte(obj, in.readByte());
+				break;
+			case FieldAccessor.CHAR:
+				a.setChar(obj, in.readChar());
+				break;
+			case FieldAccessor.SHORT:
+				a.setShort(obj, in.readShort());
+				break;
+			case FieldAccessor.INT:
+				final int iv = Utils.unpackInt(in);
+				a.setInt(obj, iv >>> 1 ^ -(iv & 1));
+				break;
+			case FieldAccessor.LONG:
+				final long lv = Utils.unpackLong(in);
+				a.setLong(obj, lv >>> 1 ^ -(lv & 1));
+				break;
+			case FieldAccessor.FLOAT:
+				a.setFloat(obj, in.readFloat());
+				break;
+			case FieldAccessor.DOUBLE:
+				a.setDouble(obj, in.readDouble());
+				break;
+			default:
+				if ((nulls[bit >>> 3] & 1 << (bit & 7)) == 0) {
+					setFieldValue(f, obj, deserialize(in, objectStack));
+				}
+				bit++;
+				break;
+			}
+		}
+	}
+
 	@Override
 	protected Object deserializeUnknownHeader(final DataInput in, final int head, final ReferenceSet<Object> objectStack) throws IOException {
+		if (head == Header.BEAN_INDEXED) {
+			try {
+				final Class<?> clazz = deserializeClass(in);
+				final ClassInfo classInfo = registered.get(class2classId.get(clazz));
+				assertClassSerializable(clazz);
+				final Object o = createInstanceSkippingConstructor(clazz);
+				objectStack.add(o);
+				deserializeIndexedFields(in, classInfo, o);
+				return o;
+			} catch (final IOException e) {
+				throw e;
+			} catch (final Exception e) {
+				throw new StreamCorruptedException(e.getMessage());
+			}
+		}
+		if (head == Header.BEAN_COMPACT) {
+			try {
+				final Class<?> clazz = deserializeClass(in);
+				final ClassInfo classInfo = registered.get(class2classId.get(clazz));
+				assertClassSerializable(clazz);
+				final Object o = createInstanceSkippingConstructor(clazz);
+				objectStack.add(o);
+				deserializeCompactFields(in, classInfo, o, objectStack);
+				return o;
+			} catch (final IOException e) {
+				throw e;
+			} catch (final Exception e) {
+				throw new StreamCorruptedException(e.getMessage());
+			}
+		}
 		if (head != Header.BEAN) {
 			throw new StreamCorruptedException();
 		}
@@ -429,36 +979,223 @@ public class BeanSerializer extends BaseSerializer {
 			final Integer classId = class2classId.get(clazz);
 			final ClassInfo classInfo = registered.get(classId);
 			assertClassSerializable(clazz);
-			final SpecialSerializationInfo ssi = classInfo.getSsi();
-			Object o;
-			if (classInfo.isEnum) {
-				final int ordinal = Utils.unpackInt(in);
-				o = clazz.getEnumConstants()[ordinal];
-			} else {
-				o = createInstanceSkippingConstructor(clazz);
-			}
+			return deserializeBean(in, clazz, classInfo, objectStack);
+		} catch (final Exception e) {
+			e.printStackTrace();
+			throw new StreamCorruptedException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads a BEAN body, after the class.
+	 */
+	private Object deserializeBean(final DataInput in, final Class<?> clazz, final ClassInfo classInfo, final ReferenceSet<Object> objectStack)
+			throws IOException, ReflectiveOperationException {
+		final SpecialSerializationInfo ssi = classInfo.getSsi();
+		if (classInfo.isEnum) {
+			// written as its ordinal alone
+			final Object o = clazz.getEnumConstants()[Utils.unpackInt(in)];
 			objectStack.add(o);
-			if (classInfo.isExternalizable()) {
-				final ObjectInputStream in2 = new ObjectInputStream((DataInputStream) in, this, objectStack);
-				((Externalizable) o).readExternal(in2);
-				in2.close();
-			} else if (ssi != null) {
-				final ObjectInputStream in2 = new ObjectInputStream((DataInputStream) in, this, objectStack);
-				ssi.getReadObject().invoke(o, in2);
-				in2.close();
+			return o;
+		}
+		final Object o = createInstanceSkippingConstructor(clazz);
+		objectStack.add(o);
+		if (classInfo.isExternalizable()) {
+			final ObjectInputStream in2 = new ObjectInputStream(in, this, objectStack);
+			((Externalizable) o).readExternal(in2);
+			in2.close();
+		} else if (ssi != null) {
+			final ObjectInputStream in2 = new ObjectInputStream(in, this, objectStack);
+			ssi.getReadObject().invoke(o, in2);
+			in2.close();
+		} else {
+			final int fieldCount = Utils.unpackInt(in);
+			for (int i = 0; i < fieldCount; i++) {
+				final int fieldId = Utils.unpackInt(in);
+				deserializeField(in, classInfo.getField(fieldId), o, objectStack);
+			}
+		}
+		return o;
+	}
+
+	/**
+	 * Skips beans without creating them. Field values are skipped by the kind
+	 * of their field, Externalizable and custom readObject beans can only be
+	 * read by their class and are read.
+	 */
+	@Override
+	protected void skipUnknownHeader(final DataInput in, final int head, final ReferenceSet<Object> objectStack) throws IOException,
+			ClassNotFoundException {
+		if (head != Header.BEAN && head != Header.BEAN_COMPACT && head != Header.BEAN_INDEXED) {
+			super.skipUnknownHeader(in, head, objectStack);
+			return;
+		}
+		final Class<?> clazz = deserializeClass(in);
+		final ClassInfo classInfo = registered.get(class2classId.get(clazz));
+		if (head == Header.BEAN_INDEXED) {
+			addSkipped(objectStack, false);
+			final int count = readIndexedFieldCount(in, classInfo);
+			long length = 0;
+			for (int i = 0; i < count; i++) {
+				length += Utils.unpackInt(in);
+			}
+			skipFully(in, length);
+		} else if (head == Header.BEAN_COMPACT) {
+			addSkipped(objectStack, false);
+			skipCompactFields(in, classInfo, objectStack);
+		} else if (classInfo.isExternalizable() || classInfo.getSsi() != null) {
+			try {
+				deserializeBean(in, clazz, classInfo, objectStack == null ? newReferenceSet() : objectStack);
+			} catch (final ClassNotFoundException e) {
+				throw e;
+			} catch (final ReflectiveOperationException e) {
+				throw new StreamCorruptedException(e.getMessage());
+			}
+		} else {
+			addSkipped(objectStack, false);
+			if (classInfo.isEnum()) {
+				Utils.unpackInt(in);
 			} else {
 				final int fieldCount = Utils.unpackInt(in);
 				for (int i = 0; i < fieldCount; i++) {
-					final int fieldId = Utils.unpackInt(in);
-					final FieldInfo f = classInfo.getField(fieldId);
-					final Object fieldValue = deserialize(in, objectStack);
-					setFieldValue(f, o, fieldValue);
+					final FieldInfo f = classInfo.getField(Utils.unpackInt(in));
+					// primitive fields are not tracked
+					skip(in, f.getAccessor().getKind() == FieldAccessor.OBJECT ? objectStack : null);
 				}
 			}
-			return o;
-		} catch (final Exception e) {
-			e.printStackTrace();
-			throw new StreamCorruptedException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Skips the fields written by
+	 * {@link #serializeCompactFields(DataOutput, ClassInfo, Object, ReferenceSet)}.
+	 * Runs of fixed size primitives are skipped at once.
+	 */
+	protected void skipCompactFields(final DataInput in, final ClassInfo classInfo, final ReferenceSet<Object> objectStack)
+			throws IOException, ClassNotFoundException {
+		final int count = classInfo.getFieldCount();
+		final int nullBytes = classInfo.getReferenceFieldCount() + 7 >>> 3;
+		// the null bitmap fits in a long for up to 64 reference fields
+		final byte[] nulls = nullBytes > 8 ? new byte[nullBytes] : null;
+		long mask = 0;
+		if (nulls != null) {
+			in.readFully(nulls);
+		} else {
+			for (int i = 0; i < nullBytes; i++) {
+				mask |= (long) in.readUnsignedByte() << 8 * i;
+			}
+		}
+		long pending = 0;
+		for (int i = 0, bit = 0; i < count; i++) {
+			switch (classInfo.getField(i).getAccessor().getKind()) {
+			case FieldAccessor.BOOLEAN:
+			case FieldAccessor.BYTE:
+				pending += 1;
+				break;
+			case FieldAccessor.CHAR:
+			case FieldAccessor.SHORT:
+				pending += 2;
+				break;
+			case FieldAccessor.FLOAT:
+				pending += 4;
+				break;
+			case FieldAccessor.DOUBLE:
+				pending += 8;
+				break;
+			case FieldAccessor.INT:
+			case FieldAccessor.LONG:
+				skipFully(in, pending);
+				pending = 0;
+				Utils.unpackLong(in);
+				break;
+			default:
+				final boolean isNull = nulls != null ? (nulls[bit >>> 3] & 1 << (bit & 7)) != 0 : (mask >>> bit & 1) != 0;
+				if (!isNull) {
+					skipFully(in, pending);
+					pending = 0;
+					skip(in, objectStack);
+				}
+				bit++;
+				break;
+			}
+		}
+		skipFully(in, pending);
+	}
+
+	/**
+	 * Writes a field value. Primitive fields are read and written with their
+	 * own type, without boxing and without reference tracking.
+	 */
+	protected void serializeField(final DataOutput out, final FieldInfo fieldInfo, final Object obj, final ReferenceSet<Object> objectStack)
+			throws IOException, IllegalAccessException {
+		final FieldAccessor a = fieldInfo.getAccessor();
+		switch (a.getKind()) {
+		case FieldAccessor.BOOLEAN:
+			serializeBoolean(out, a.getBoolean(obj));
+			break;
+		case FieldAccessor.BYTE:
+			serializeByte(out, a.getByte(obj));
+			break;
+		case FieldAccessor.CHAR:
+			serializeChar(out, a.getChar(obj));
+			break;
+		case FieldAccessor.SHORT:
+			serializeShort(out, a.getShort(obj));
+			break;
+		case FieldAccessor.INT:
+			serializeInt(out, a.getInt(obj));
+			break;
+		case FieldAccessor.LONG:
+			serializeLong(out, a.getLong(obj));
+			break;
+		case FieldAccessor.FLOAT:
+			serializeFloat(out, a.getFloat(obj));
+			break;
+		case FieldAccessor.DOUBLE:
+			serializeDouble(out, a.getDouble(obj));
+			break;
+		default:
+			serialize(out, getFieldValue(fieldInfo, obj), objectStack);
+			break;
+		}
+	}
+
+	/**
+	 * Reads a field value written by
+	 * {@link #serializeField(DataOutput, FieldInfo, Object, ReferenceSet)} into
+	 * the object.
+	 */
+	protected void deserializeField(final DataInput in, final FieldInfo fieldInfo, final Object obj, final ReferenceSet<Object> objectStack)
+			throws IOException, ClassNotFoundException, IllegalAccessException {
+		final FieldAccessor a = fieldInfo.getAccessor();
+		switch (a.getKind()) {
+		case FieldAccessor.BOOLEAN:
+			a.setBoolean(obj, deserializeBoolean(in));
+			break;
+		case FieldAccessor.BYTE:
+			a.setByte(obj, deserializeByte(in));
+			break;
+		case FieldAccessor.CHAR:
+			a.setChar(obj, deserializeChar(in));
+			break;
+		case FieldAccessor.SHORT:
+			a.setShort(obj, deserializeShort(in));
+			break;
+		case FieldAccessor.INT:
+			a.setInt(obj, deserializeInt(in));
+			break;
+		case FieldAccessor.LONG:
+			a.setLong(obj, deserializeLong(in));
+			break;
+		case FieldAccessor.FLOAT:
+			a.setFloat(obj, deserializeFloat(in));
+			break;
+		case FieldAccessor.DOUBLE:
+			a.setDouble(obj, deserializeDouble(in));
+			break;
+		default:
+			setFieldValue(fieldInfo, obj, deserialize(in, objectStack));
+			break;
 		}
 	}
 
@@ -0,0 +1,132 @@
+package com.bzsoft.ser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * InputStream reading the blocks written by a
+ * {@link BlockCompressedOutputStream}, decompressing one whole block at a time.
+ * The block size is taken from the stream.
+ */
+public class BlockCompressedInputStream extends InputStream {
+
+	private final InputStream		is;
+	private final int					maxBlockSize;
+	private byte[]						block;
+	private byte[]						compressed;
+	private int							pos;
+	private int							limit;
+
+	public BlockCompressedInputStream(final InputStream is) {
+		this(is, BlockCompressedOutputStream.MAX_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param maxBlockSize
+	 *           biggest block accepted, a bigger length in a frame header is
+	 *           taken as corruption
+	 */
+	public BlockCompressedInputStream(final InputStream is, final int maxBlockSize) {
+		this.is = is;
+		this.maxBlockSize = maxBlockSize;
+		block = new byte[0];
+		compressed = new byte[0];
+		pos = 0;
+		limit = 0;
+	}
+
+	/**
+	 * Reads and decompresses the next block.
+	 *
+	 * @return false at the end of the stream
+	 */
+	private boolean nextBlock() throws IOException {
+		final int flag = is.read();
+		if (flag < 0) {
+			return false;
+		}
+		final int len = readInt();
+		if (len <= 0 || len > maxBlockSize) {
+			throw new StreamCorruptedException("Invalid block length " + len);
+		}
+		if (block.length < len) {
+			block = new byte[len];
+		}
+		if (flag == BlockCompressedOutputStream.RAW) {
+			readFully(block, len);
+		} else if (flag == BlockCompressedOutputStream.LZ) {
+			final int clen = readInt();
+			if (clen <= 0 || clen > LZBlockCodec.maxCompressedLength(len)) {
+				throw new StreamCorruptedException("Invalid compressed length " + clen);
+			}
+			if (compressed.length < clen) {
+				compressed = new byte[clen];
+			}
+			readFully(compressed, clen);
+			LZBlockCodec.decompress(compressed, 0, clen, block, 0, len);
+		} else {
+			throw new StreamCorruptedException("Invalid block flag " + flag);
+		}
+		pos = 0;
+		limit = len;
+		return true;
+	}
+
+	private int readInt() throws IOException {
+		int v = 0;
+		for (int i = 0; i < 4; i++) {
+			final int b = is.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			v = v << 8 | b;
+		}
+		return v;
+	}
+
+	private void readFully(final byte[] b, final int len) throws IOException {
+		int off = 0;
+		while (off < len) {
+			final int read = is.read(b, off, len - off);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			off += read;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos == limit && !nextBlock()) {
+			return -1;
+		}
+		return block[pos++] & 0xFF;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (pos == limit && !nextBlock()) {
+			return -1;
+		}
+		final int n = Math.min(len, limit - pos);
+		System.arraycopy(block, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return limit - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pos = limit;
+		is.close();
+	}
+}
@@ -0,0 +1,123 @@
+package com.bzsoft.ser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream compressing what is written to it in blocks of up to
+ * <code>blockSize</code> bytes with a pure Java LZ codec, to be placed under
+ * an {@link ObjectOutputStream}:
+ * 
+ * <pre>
+ * new ObjectOutputStream(new BlockCompressedOutputStream(socketStream))
+ * </pre>
+ * 
+ * Every block is framed with a flag byte, its length and, if compressed, its
+ * compressed length, both as big-endian ints. Blocks that do not shrink are
+ * stored as they are. {@link #flush()} ends the current block, so flushing
+ * after every small message costs compression ratio. Read it back with a
+ * {@link BlockCompressedInputStream}.
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+
+	public static final int				DEFAULT_BLOCK_SIZE	= 64 * 1024;
+	public static final int				MIN_BLOCK_SIZE			= 64;
+	public static final int				MAX_BLOCK_SIZE			= 16 * 1024 * 1024;
+
+	protected static final int			RAW						= 0;
+	protected static final int			LZ							= 1;
+
+	private final OutputStream			os;
+	private final LZBlockCodec			codec;
+	private final byte[]					block;
+	/** frame header followed by the compressed block */
+	private final byte[]					frame;
+	private int								pos;
+
+	public BlockCompressedOutputStream(final OutputStream os) {
+		this(os, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param blockSize
+	 *           bytes compressed together, between {@link #MIN_BLOCK_SIZE} and
+	 *           {@link #MAX_BLOCK_SIZE}. Bigger blocks compress better and use
+	 *           more memory on both sides.
+	 */
+	public BlockCompressedOutputStream(final OutputStream os, final int blockSize) {
+		if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Invalid block size " + blockSize);
+		}
+		this.os = os;
+		codec = new LZBlockCodec();
+		block = new byte[blockSize];
+		frame = new byte[9 + LZBlockCodec.maxCompressedLength(blockSize)];
+		pos = 0;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		if (pos == block.length) {
+			writeBlock();
+		}
+		block[pos++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (pos == block.length) {
+				writeBlock();
+			}
+			final int n = Math.min(len, block.length - pos);
+			System.arraycopy(b, off, block, pos, n);
+			pos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if (pos == 0) {
+			return;
+		}
+		final int len = codec.compress(block, 0, pos, frame, 9);
+		if (len < pos) {
+			frame[0] = LZ;
+			putInt(1, pos);
+			putInt(5, len);
+			os.write(frame, 0, 9 + len);
+		} else {
+			frame[0] = RAW;
+			putInt(1, pos);
+			os.write(frame, 0, 5);
+			os.write(block, 0, pos);
+		}
+		pos = 0;
+	}
+
+	private void putInt(final int off, final int v) {
+		frame[off] = (byte) (v >>> 24);
+		frame[off + 1] = (byte) (v >>> 16);
+		frame[off + 2] = (byte) (v >>> 8);
+		frame[off + 3] = (byte) v;
+	}
+
+	/**
+	 * Writes the buffered bytes as a block and flushes the stream.
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeBlock();
+		os.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			writeBlock();
+		} finally {
+			os.close();
+		}
+	}
+}
@@ -0,0 +1,447 @@
+package com.bzsoft.ser;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * byte[] backed DataInput. Reads either a fixed array range or a stream,
+ * refilling the buffer from the stream in big blocks, so the single byte reads
+ * done by the deserializer are plain array accesses.
+ */
+final class BufferedDataInput implements BulkDataInput {
+
+	static final int							BUFFER_SIZE	= 8192;
+
+	private static final VarHandle		SHORT			= MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle		CHAR			= MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle		INT			= MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle		FLOAT			= MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle		LONG			= MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle		DOUBLE		= MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+	private static final ArrayKernels	KERNELS		= ArrayKernels.INSTANCE;
+
+	private final InputStream				is;
+	private byte[]								buf;
+	private int									pos;
+	private int									limit;
+
+	BufferedDataInput(final InputStream is) {
+		this(is, BUFFER_SIZE);
+	}
+
+	BufferedDataInput(final InputStream is, final int size) {
+		this.is = is;
+		buf = new byte[size];
+		pos = 0;
+		limit = 0;
+	}
+
+	/**
+	 * Reads the given array range, without copying it.
+	 */
+	BufferedDataInput(final byte[] b, final int off, final int len) {
+		is = null;
+		buf = b;
+		pos = off;
+		limit = off + len;
+	}
+
+	/**
+	 * Makes sure <code>n</code> bytes are buffered.
+	 */
+	private void require(final int n) throws IOException {
+		if (limit - pos < n) {
+			fill(n);
+		}
+	}
+
+	private void fill(final int n) throws IOException {
+		if (is == null) {
+			throw new EOFException();
+		}
+		final int remaining = limit - pos;
+		if (n > buf.length) {
+			final byte[] b = new byte[Math.max(n, buf.length * 2)];
+			System.arraycopy(buf, pos, b, 0, remaining);
+			buf = b;
+		} else if (remaining > 0) {
+			System.arraycopy(buf, pos, buf, 0, remaining);
+		}
+		pos = 0;
+		limit = remaining;
+		while (limit < n) {
+			final int read = is.read(buf, limit, buf.length - limit);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			limit += read;
+		}
+	}
+
+	/**
+	 * InputStream like read, -1 at end of data.
+	 */
+	int read() throws IOException {
+		if (pos == limit) {
+			if (is == null) {
+				return -1;
+			}
+			pos = 0;
+			limit = 0;
+			final int read = is.read(buf, 0, buf.length);
+			if (read <= 0) {
+				return -1;
+			}
+			limit = read;
+		}
+		return buf[pos++] & 0xFF;
+	}
+
+	@Override
+	public void readFully(final byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(final byte[] b, int off, int len) throws IOException {
+		final int buffered = Math.min(len, limit - pos);
+		System.arraycopy(buf, pos, b, off, buffered);
+		pos += buffered;
+		off += buffered;
+		len -= buffered;
+		if (len == 0) {
+			return;
+		}
+		if (is == null) {
+			throw new EOFException();
+		}
+		if (len >= buf.length) {
+			// big blocks go straight from the stream
+			while (len > 0) {
+				final int read = is.read(b, off, len);
+				if (read < 0) {
+					throw new EOFException();
+				}
+				off += read;
+				len -= read;
+			}
+			return;
+		}
+		fill(len);
+		System.arraycopy(buf, pos, b, off, len);
+		pos += len;
+	}
+
+	@Override
+	public String readString(final int len, final Charset charset) throws IOException {
+		if (limit - pos >= len || is != null && len <= buf.length) {
+			require(len);
+			final String s = new String(buf, pos, len, charset);
+			pos += len;
+			return s;
+		}
+		final byte[] b = new byte[len];
+		readFully(b, 0, len);
+		return new String(b, charset);
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		int skipped = Math.min(n, limit - pos);
+		pos += skipped;
+		if (is != null) {
+			while (skipped < n) {
+				final long s = is.skip(n - skipped);
+				if (s <= 0) {
+					break;
+				}
+				skipped += (int) s;
+			}
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readUnsignedByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		if (pos == limit) {
+			fill(1);
+		}
+		return buf[pos++];
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		if (pos == limit) {
+			fill(1);
+		}
+		return buf[pos++] & 0xFF;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		require(2);
+		final short v = (short) SHORT.get(buf, pos);
+		pos += 2;
+		return v;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		require(2);
+		final char v = (char) CHAR.get(buf, pos);
+		pos += 2;
+		return v;
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		require(4);
+		final int v = (int) INT.get(buf, pos);
+		pos += 4;
+		return v;
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		require(8);
+		final long v = (long) LONG.get(buf, pos);
+		pos += 8;
+		return v;
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		require(4);
+		final float v = (float) FLOAT.get(buf, pos);
+		pos += 4;
+		return v;
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		require(8);
+		final double v = (double) DOUBLE.get(buf, pos);
+		pos += 8;
+		return v;
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		int c = read();
+		if (c == -1) {
+			return null;
+		}
+		while (c != -1 && c != '\n') {
+			if (c == '\r') {
+				// a '\n' after it may not be buffered yet, read it and step back
+				final int next = read();
+				if (next != '\n' && next != -1) {
+					pos--;
+				}
+				break;
+			}
+			sb.append((char) c);
+			c = read();
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+
+	/**
+	 * Same encoding as {@link Utils#unpackInt(DataInput)}.
+	 */
+	@Override
+	public int unpackInt() throws IOException {
+		if (limit - pos >= 5) {
+			// fast path, the whole varint is buffered
+			final byte[] b = buf;
+			int p = pos;
+			int result = 0;
+			for (int offset = 0; offset < 32; offset += 7) {
+				final int v = b[p++];
+				result |= (v & 0x7F) << offset;
+				if (v >= 0) {
+					pos = p;
+					return result;
+				}
+			}
+			throw new Error("Malformed int.");
+		}
+		for (int offset = 0, result = 0; offset < 32; offset += 7) {
+			final int v = readUnsignedByte();
+			result |= (v & 0x7F) << offset;
+			if ((v & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new Error("Malformed int.");
+	}
+
+	/**
+	 * Same encoding as {@link Utils#unpackLong(DataInput)}.
+	 */
+	@Override
+	public long unpackLong() throws IOException {
+		if (limit - pos >= 10) {
+			final byte[] b = buf;
+			int p = pos;
+			long result = 0;
+			for (int offset = 0; offset < 64; offset += 7) {
+				final long v = b[p++];
+				result |= (v & 0x7F) << offset;
+				if (v >= 0) {
+					pos = p;
+					return result;
+				}
+			}
+			throw new Error("Malformed long.");
+		}
+		long result = 0;
+		for (int offset = 0; offset < 64; offset += 7) {
+			final long v = readUnsignedByte();
+			result |= (v & 0x7F) << offset;
+			if ((v & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new Error("Malformed long.");
+	}
+
+	@Override
+	public void readFully(final short[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			require(2);
+			final int end = Math.min(a.length, i + (limit - pos) / 2);
+			final byte[] b = buf;
+			int p = pos;
+			for (; i < end; i++, p += 2) {
+				a[i] = (short) SHORT.get(b, p);
+			}
+			pos = p;
+		}
+	}
+
+	@Override
+	public void readFully(final char[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			require(2);
+			final int end = Math.min(a.length, i + (limit - pos) / 2);
+			final byte[] b = buf;
+			int p = pos;
+			for (; i < end; i++, p += 2) {
+				a[i] = (char) CHAR.get(b, p);
+			}
+			pos = p;
+		}
+	}
+
+	@Override
+	public void readFully(final int[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			require(4);
+			final int end = Math.min(a.length, i + (limit - pos) / 4);
+			KERNELS.get(buf, pos, a, i, end);
+			pos += (end - i) * 4;
+			i = end;
+		}
+	}
+
+	@Override
+	public void readFully(final float[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			require(4);
+			final int end = Math.min(a.length, i + (limit - pos) / 4);
+			KERNELS.get(buf, pos, a, i, end);
+			pos += (end - i) * 4;
+			i = end;
+		}
+	}
+
+	@Override
+	public void readFully(final long[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			require(8);
+			final int end = Math.min(a.length, i + (limit - pos) / 8);
+			KERNELS.get(buf, pos, a, i, end);
+			pos += (end - i) * 8;
+			i = end;
+		}
+	}
+
+	@Override
+	public void readFully(final double[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			require(8);
+			final int end = Math.min(a.length, i + (limit - pos) / 8);
+			KERNELS.get(buf, pos, a, i, end);
+			pos += (end - i) * 8;
+			i = end;
+		}
+	}
+
+	@Override
+	public void readWiden(final int[] a, final int width) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			require(width);
+			final int end = Math.min(a.length, i + (limit - pos) / width);
+			KERNELS.widen(buf, pos, a, i, end, width);
+			pos += (end - i) * width;
+			i = end;
+		}
+	}
+
+	@Override
+	public void readWiden(final long[] a, final int width) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			require(width);
+			final int end = Math.min(a.length, i + (limit - pos) / width);
+			KERNELS.widen(buf, pos, a, i, end, width);
+			pos += (end - i) * width;
+			i = end;
+		}
+	}
+
+	/**
+	 * Number of bytes that can be read without touching the stream.
+	 */
+	int buffered() {
+		return limit - pos;
+	}
+
+	void close() throws IOException {
+		pos = limit;
+		if (is != null) {
+			is.close();
+		}
+	}
+}
@@ -0,0 +1,394 @@
+package com.bzsoft.ser;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Growable byte[] backed DataOutput. Bytes are collected in memory and handed
+ * to the target stream in chunks of up to <code>chunkSize</code> bytes, so the
+ * single byte writes done by the serializer never reach the stream one by one.
+ * Without a target stream the buffer just grows.
+ */
+final class BufferedDataOutput implements BulkDataOutput {
+
+	static final int							INITIAL_SIZE	= 256;
+	static final int							CHUNK_SIZE		= 64 * 1024;
+	/** biggest array the VMs allocate */
+	static final int							MAX_SIZE			= Integer.MAX_VALUE - 8;
+
+	private static final VarHandle		SHORT				= MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle		INT				= MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle		LONG				= MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final ArrayKernels	KERNELS			= ArrayKernels.INSTANCE;
+
+	private final OutputStream				os;
+	private final int							chunkSize;
+	private byte[]								buf;
+	private int									pos;
+
+	BufferedDataOutput(final OutputStream os) {
+		this(os, CHUNK_SIZE);
+	}
+
+	BufferedDataOutput(final OutputStream os, final int chunkSize) {
+		this.os = os;
+		this.chunkSize = chunkSize;
+		buf = new byte[Math.min(INITIAL_SIZE, chunkSize)];
+		pos = 0;
+	}
+
+	/**
+	 * Makes sure <code>n</code> more bytes fit in the buffer, growing it up to
+	 * the chunk size and draining it to the stream after that.
+	 */
+	private void ensure(final int n) throws IOException {
+		if (n <= buf.length - pos) {
+			return;
+		}
+		if (os != null && (long) pos + n > chunkSize) {
+			drain();
+			if (n <= buf.length) {
+				return;
+			}
+		}
+		final long needed = (long) pos + n;
+		if (needed > MAX_SIZE) {
+			throw new IOException("Buffer can not hold " + needed + " bytes");
+		}
+		long newSize = buf.length * 2L;
+		while (newSize < needed) {
+			newSize *= 2;
+		}
+		if (os != null) {
+			newSize = Math.max(Math.min(newSize, chunkSize), needed);
+		}
+		buf = Arrays.copyOf(buf, (int) Math.min(newSize, MAX_SIZE));
+	}
+
+	private void drain() throws IOException {
+		if (pos > 0) {
+			os.write(buf, 0, pos);
+			pos = 0;
+		}
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		if (pos == buf.length) {
+			ensure(1);
+		}
+		buf[pos++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		if (os != null && len >= chunkSize) {
+			// big blocks go straight to the stream
+			drain();
+			os.write(b, off, len);
+			return;
+		}
+		ensure(len);
+		System.arraycopy(b, off, buf, pos, len);
+		pos += len;
+	}
+
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		write(v ? 1 : 0);
+	}
+
+	@Override
+	public void writeByte(final int v) throws IOException {
+		if (pos == buf.length) {
+			ensure(1);
+		}
+		buf[pos++] = (byte) v;
+	}
+
+	@Override
+	public void writeShort(final int v) throws IOException {
+		ensure(2);
+		SHORT.set(buf, pos, (short) v);
+		pos += 2;
+	}
+
+	@Override
+	public void writeChar(final int v) throws IOException {
+		ensure(2);
+		SHORT.set(buf, pos, (short) v);
+		pos += 2;
+	}
+
+	@Override
+	public void writeInt(final int v) throws IOException {
+		ensure(4);
+		INT.set(buf, pos, v);
+		pos += 4;
+	}
+
+	@Override
+	public void writeLong(final long v) throws IOException {
+		ensure(8);
+		LONG.set(buf, pos, v);
+		pos += 8;
+	}
+
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		writeInt(Float.floatToIntBits(v));
+	}
+
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		writeLong(Double.doubleToLongBits(v));
+	}
+
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		final int len = s.length();
+		ensure(len);
+		for (int i = 0; i < len; i++) {
+			buf[pos++] = (byte) s.charAt(i);
+		}
+	}
+
+	@Override
+	public void writeChars(final String s) throws IOException {
+		final int len = s.length();
+		ensure(len * 2);
+		for (int i = 0; i < len; i++) {
+			SHORT.set(buf, pos, (short) s.charAt(i));
+			pos += 2;
+		}
+	}
+
+	@Override
+	public void writeUTF(final String s) throws IOException {
+		final int len = s.length();
+		int utflen = len;
+		for (int i = 0; i < len; i++) {
+			final char c = s.charAt(i);
+			if (c >= 0x80 || c == 0) {
+				utflen += c >= 0x800 ? 2 : 1;
+			}
+		}
+		if (utflen > 65535) {
+			throw new UTFDataFormatException("encoded string too long: " + utflen + " bytes");
+		}
+		ensure(utflen + 2);
+		SHORT.set(buf, pos, (short) utflen);
+		pos += 2;
+		for (int i = 0; i < len; i++) {
+			final char c = s.charAt(i);
+			if (c < 0x80 && c != 0) {
+				buf[pos++] = (byte) c;
+			} else if (c >= 0x800) {
+				buf[pos++] = (byte) (0xE0 | c >> 12 & 0x0F);
+				buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+				buf[pos++] = (byte) (0x80 | c & 0x3F);
+			} else {
+				buf[pos++] = (byte) (0xC0 | c >> 6 & 0x1F);
+				buf[pos++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+	}
+
+	/**
+	 * Same encoding as {@link Utils#packInt(DataOutput, int)}.
+	 */
+	@Override
+	public void packInt(int value) throws IOException {
+		ensure(5);
+		final byte[] b = buf;
+		int p = pos;
+		while ((value & ~0x7F) != 0) {
+			b[p++] = (byte) (value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		b[p++] = (byte) value;
+		pos = p;
+	}
+
+	/**
+	 * Same encoding as {@link Utils#packLong(DataOutput, long)}.
+	 */
+	@Override
+	public void packLong(long value) throws IOException {
+		ensure(10);
+		final byte[] b = buf;
+		int p = pos;
+		while ((value & ~0x7FL) != 0) {
+			b[p++] = (byte) ((int) value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		b[p++] = (byte) value;
+		pos = p;
+	}
+
+	@Override
+	public void write(final short[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			final int end = i + Math.min(a.length - i, chunkSize / 2);
+			ensure((end - i) * 2);
+			final byte[] b = buf;
+			int p = pos;
+			for (; i < end; i++, p += 2) {
+				SHORT.set(b, p, a[i]);
+			}
+			pos = p;
+		}
+	}
+
+	@Override
+	public void write(final char[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			final int end = i + Math.min(a.length - i, chunkSize / 2);
+			ensure((end - i) * 2);
+			final byte[] b = buf;
+			int p = pos;
+			for (; i < end; i++, p += 2) {
+				SHORT.set(b, p, (short) a[i]);
+			}
+			pos = p;
+		}
+	}
+
+	@Override
+	public void write(final int[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			final int end = i + Math.min(a.length - i, chunkSize / 4);
+			ensure((end - i) * 4);
+			KERNELS.put(a, i, end, buf, pos);
+			pos += (end - i) * 4;
+			i = end;
+		}
+	}
+
+	@Override
+	public void write(final long[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			final int end = i + Math.min(a.length - i, chunkSize / 8);
+			ensure((end - i) * 8);
+			KERNELS.put(a, i, end, buf, pos);
+			pos += (end - i) * 8;
+			i = end;
+		}
+	}
+
+	@Override
+	public void write(final float[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			final int end = i + Math.min(a.length - i, chunkSize / 4);
+			ensure((end - i) * 4);
+			KERNELS.put(a, i, end, buf, pos);
+			pos += (end - i) * 4;
+			i = end;
+		}
+	}
+
+	@Override
+	public void write(final double[] a) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			final int end = i + Math.min(a.length - i, chunkSize / 8);
+			ensure((end - i) * 8);
+			KERNELS.put(a, i, end, buf, pos);
+			pos += (end - i) * 8;
+			i = end;
+		}
+	}
+
+	@Override
+	public void writeNarrow(final int[] a, final int width) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			final int end = i + Math.min(a.length - i, chunkSize / width);
+			ensure((end - i) * width);
+			KERNELS.narrow(a, i, end, buf, pos, width);
+			pos += (end - i) * width;
+			i = end;
+		}
+	}
+
+	@Override
+	public void writeNarrow(final long[] a, final int width) throws IOException {
+		int i = 0;
+		while (i < a.length) {
+			final int end = i + Math.min(a.length - i, chunkSize / width);
+			ensure((end - i) * width);
+			KERNELS.narrow(a, i, end, buf, pos, width);
+			pos += (end - i) * width;
+			i = end;
+		}
+	}
+
+	/**
+	 * Number of buffered bytes not yet handed to the stream.
+	 */
+	int size() {
+		return pos;
+	}
+
+	/**
+	 * Copy of the buffered bytes.
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(buf, pos);
+	}
+
+	/**
+	 * Writes the buffered bytes to another output, without copying them.
+	 */
+	void writeTo(final DataOutput out) throws IOException {
+		out.write(buf, 0, pos);
+	}
+
+	/**
+	 * Puts the buffered bytes in a buffer, at its position.
+	 */
+	void writeTo(final ByteBuffer dst) {
+		dst.put(buf, 0, pos);
+	}
+
+	/**
+	 * Discards the buffered bytes, keeping the allocated buffer.
+	 */
+	void clear() {
+		pos = 0;
+	}
+
+	void flush() throws IOException {
+		if (os != null) {
+			drain();
+			os.flush();
+		}
+	}
+
+	void close() throws IOException {
+		if (os != null) {
+			try {
+				drain();
+			} finally {
+				os.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.bzsoft.ser;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * DataInput with fast paths for packed ints and whole primitive arrays,
+ * implemented by the internal sources.
+ */
+interface BulkDataInput extends DataInput {
+
+	public int unpackInt() throws IOException;
+
+	public long unpackLong() throws IOException;
+
+	public void readFully(short[] a) throws IOException;
+
+	public void readFully(char[] a) throws IOException;
+
+	public void readFully(int[] a) throws IOException;
+
+	public void readFully(long[] a) throws IOException;
+
+	public void readFully(float[] a) throws IOException;
+
+	public void readFully(double[] a) throws IOException;
+
+	/**
+	 * Reads signed <code>width</code> byte (1 or 2) big-endian values.
+	 */
+	public void readWiden(int[] a, int width) throws IOException;
+
+	/**
+	 * Reads signed <code>width</code> byte (1, 2 or 4) big-endian values.
+	 */
+	public void readWiden(long[] a, int width) throws IOException;
+
+	/**
+	 * Decodes <code>len</code> bytes into a String, from the source buffer when
+	 * possible.
+	 */
+	public String readString(int len, Charset charset) throws IOException;
+
+}
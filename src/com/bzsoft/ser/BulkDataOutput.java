@@ -0,0 +1,41 @@
+package com.bzsoft.ser;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * DataOutput with fast paths for packed ints and whole primitive arrays,
+ * implemented by the internal sinks. Arrays are written big-endian, same
+ * bytes as writing the elements one by one.
+ */
+interface BulkDataOutput extends DataOutput {
+
+	public void packInt(int value) throws IOException;
+
+	public void packLong(long value) throws IOException;
+
+	public void write(short[] a) throws IOException;
+
+	public void write(char[] a) throws IOException;
+
+	public void write(int[] a) throws IOException;
+
+	public void write(long[] a) throws IOException;
+
+	public void write(float[] a) throws IOException;
+
+	public void write(double[] a) throws IOException;
+
+	/**
+	 * Writes every element as a <code>width</code> byte (1 or 2) big-endian
+	 * value, the caller knows they fit.
+	 */
+	public void writeNarrow(int[] a, int width) throws IOException;
+
+	/**
+	 * Writes every element as a <code>width</code> byte (1, 2 or 4) big-endian
+	 * value, the caller knows they fit.
+	 */
+	public void writeNarrow(long[] a, int width) throws IOException;
+
+}
@@ -0,0 +1,260 @@
+package com.bzsoft.ser;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * DataInput reading straight from a heap or direct ByteBuffer, big-endian
+ * whatever the byte order of the caller's buffer. Reading past the limit
+ * throws EOFException.
+ */
+final class ByteBufferDataInput implements BulkDataInput {
+
+	private final ByteBuffer	buf;
+
+	/**
+	 * Reads from the position of <code>source</code>, leaving the position of
+	 * <code>source</code> untouched.
+	 */
+	ByteBufferDataInput(final ByteBuffer source) {
+		buf = source.duplicate().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	int position() {
+		return buf.position();
+	}
+
+	private void require(final long n) throws EOFException {
+		if (buf.remaining() < n) {
+			throw new EOFException();
+		}
+	}
+
+	@Override
+	public void readFully(final byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len) throws IOException {
+		require(len);
+		buf.get(b, off, len);
+	}
+
+	@Override
+	public String readString(final int len, final Charset charset) throws IOException {
+		require(len);
+		if (buf.hasArray()) {
+			final int p = buf.position();
+			final String s = new String(buf.array(), buf.arrayOffset() + p, len, charset);
+			buf.position(p + len);
+			return s;
+		}
+		final byte[] b = new byte[len];
+		buf.get(b);
+		return new String(b, charset);
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skipped = Math.max(0, Math.min(n, buf.remaining()));
+		buf.position(buf.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readUnsignedByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		require(1);
+		return buf.get();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		require(1);
+		return buf.get() & 0xFF;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		require(2);
+		return buf.getShort();
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		require(2);
+		return buf.getChar();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		require(4);
+		return buf.getInt();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		require(8);
+		return buf.getLong();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		require(4);
+		return buf.getFloat();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		require(8);
+		return buf.getDouble();
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		if (!buf.hasRemaining()) {
+			return null;
+		}
+		final StringBuilder sb = new StringBuilder();
+		while (buf.hasRemaining()) {
+			final int c = buf.get() & 0xFF;
+			if (c == '\n') {
+				break;
+			}
+			if (c == '\r') {
+				if (buf.hasRemaining() && buf.get(buf.position()) == '\n') {
+					buf.get();
+				}
+				break;
+			}
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+
+	@Override
+	public int unpackInt() throws IOException {
+		for (int offset = 0, result = 0; offset < 32; offset += 7) {
+			final int b = readUnsignedByte();
+			result |= (b & 0x7F) << offset;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new Error("Malformed int.");
+	}
+
+	@Override
+	public long unpackLong() throws IOException {
+		long result = 0;
+		for (int offset = 0; offset < 64; offset += 7) {
+			final long b = readUnsignedByte();
+			result |= (b & 0x7F) << offset;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new Error("Malformed long.");
+	}
+
+	@Override
+	public void readFully(final short[] a) throws IOException {
+		require(a.length * 2L);
+		buf.asShortBuffer().get(a);
+		buf.position(buf.position() + a.length * 2);
+	}
+
+	@Override
+	public void readFully(final char[] a) throws IOException {
+		require(a.length * 2L);
+		buf.asCharBuffer().get(a);
+		buf.position(buf.position() + a.length * 2);
+	}
+
+	@Override
+	public void readFully(final int[] a) throws IOException {
+		require(a.length * 4L);
+		buf.asIntBuffer().get(a);
+		buf.position(buf.position() + a.length * 4);
+	}
+
+	@Override
+	public void readFully(final long[] a) throws IOException {
+		require(a.length * 8L);
+		buf.asLongBuffer().get(a);
+		buf.position(buf.position() + a.length * 8);
+	}
+
+	@Override
+	public void readFully(final float[] a) throws IOException {
+		require(a.length * 4L);
+		buf.asFloatBuffer().get(a);
+		buf.position(buf.position() + a.length * 4);
+	}
+
+	@Override
+	public void readFully(final double[] a) throws IOException {
+		require(a.length * 8L);
+		buf.asDoubleBuffer().get(a);
+		buf.position(buf.position() + a.length * 8);
+	}
+
+	@Override
+	public void readWiden(final int[] a, final int width) throws IOException {
+		require((long) a.length * width);
+		final int p = buf.position();
+		if (buf.hasArray()) {
+			ArrayKernels.INSTANCE.widen(buf.array(), buf.arrayOffset() + p, a, 0, a.length, width);
+		} else if (width == 1) {
+			for (int i = 0; i < a.length; i++) {
+				a[i] = buf.get(p + i);
+			}
+		} else {
+			for (int i = 0; i < a.length; i++) {
+				a[i] = buf.getShort(p + i * 2);
+			}
+		}
+		buf.position(p + a.length * width);
+	}
+
+	@Override
+	public void readWiden(final long[] a, final int width) throws IOException {
+		require((long) a.length * width);
+		final int p = buf.position();
+		if (buf.hasArray()) {
+			ArrayKernels.INSTANCE.widen(buf.array(), buf.arrayOffset() + p, a, 0, a.length, width);
+		} else if (width == 1) {
+			for (int i = 0; i < a.length; i++) {
+				a[i] = buf.get(p + i);
+			}
+		} else if (width == 2) {
+			for (int i = 0; i < a.length; i++) {
+				a[i] = buf.getShort(p + i * 2);
+			}
+		} else {
+			for (int i = 0; i < a.length; i++) {
+				a[i] = buf.getInt(p + i * 4);
+			}
+		}
+		buf.position(p + a.length * width);
+	}
+}
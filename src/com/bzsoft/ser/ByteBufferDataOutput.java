@@ -0,0 +1,214 @@
+package com.bzsoft.ser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * DataOutput writing straight into a heap or direct ByteBuffer, big-endian
+ * whatever the byte order of the caller's buffer. Writing past the limit
+ * throws BufferOverflowException.
+ */
+final class ByteBufferDataOutput implements BulkDataOutput {
+
+	private final ByteBuffer	buf;
+
+	/**
+	 * Writes at the position of <code>target</code>, leaving the position of
+	 * <code>target</code> untouched.
+	 */
+	ByteBufferDataOutput(final ByteBuffer target) {
+		buf = target.duplicate().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	int position() {
+		return buf.position();
+	}
+
+	private void reserve(final long n) {
+		if (buf.remaining() < n) {
+			throw new BufferOverflowException();
+		}
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		buf.put((byte) b);
+	}
+
+	@Override
+	public void write(final byte[] b) throws IOException {
+		buf.put(b);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		buf.put(b, off, len);
+	}
+
+	@Override
+	public void writeBoolean(final boolean v) throws IOException {
+		buf.put((byte) (v ? 1 : 0));
+	}
+
+	@Override
+	public void writeByte(final int v) throws IOException {
+		buf.put((byte) v);
+	}
+
+	@Override
+	public void writeShort(final int v) throws IOException {
+		buf.putShort((short) v);
+	}
+
+	@Override
+	public void writeChar(final int v) throws IOException {
+		buf.putChar((char) v);
+	}
+
+	@Override
+	public void writeInt(final int v) throws IOException {
+		buf.putInt(v);
+	}
+
+	@Override
+	public void writeLong(final long v) throws IOException {
+		buf.putLong(v);
+	}
+
+	@Override
+	public void writeFloat(final float v) throws IOException {
+		buf.putFloat(v);
+	}
+
+	@Override
+	public void writeDouble(final double v) throws IOException {
+		buf.putDouble(v);
+	}
+
+	@Override
+	public void writeBytes(final String s) throws IOException {
+		final int len = s.length();
+		for (int i = 0; i < len; i++) {
+			buf.put((byte) s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeChars(final String s) throws IOException {
+		final int len = s.length();
+		for (int i = 0; i < len; i++) {
+			buf.putChar(s.charAt(i));
+		}
+	}
+
+	@Override
+	public void writeUTF(final String s) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream(s.length() + 2);
+		new DataOutputStream(bos).writeUTF(s);
+		buf.put(bos.toByteArray());
+	}
+
+	@Override
+	public void packInt(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			buf.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buf.put((byte) value);
+	}
+
+	@Override
+	public void packLong(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			buf.put((byte) ((int) value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buf.put((byte) value);
+	}
+
+	@Override
+	public void write(final short[] a) throws IOException {
+		reserve(a.length * 2L);
+		buf.asShortBuffer().put(a);
+		buf.position(buf.position() + a.length * 2);
+	}
+
+	@Override
+	public void write(final char[] a) throws IOException {
+		reserve(a.length * 2L);
+		buf.asCharBuffer().put(a);
+		buf.position(buf.position() + a.length * 2);
+	}
+
+	@Override
+	public void write(final int[] a) throws IOException {
+		reserve(a.length * 4L);
+		buf.asIntBuffer().put(a);
+		buf.position(buf.position() + a.length * 4);
+	}
+
+	@Override
+	public void write(final long[] a) throws IOException {
+		reserve(a.length * 8L);
+		buf.asLongBuffer().put(a);
+		buf.position(buf.position() + a.length * 8);
+	}
+
+	@Override
+	public void write(final float[] a) throws IOException {
+		reserve(a.length * 4L);
+		buf.asFloatBuffer().put(a);
+		buf.position(buf.position() + a.length * 4);
+	}
+
+	@Override
+	public void write(final double[] a) throws IOException {
+		reserve(a.length * 8L);
+		buf.asDoubleBuffer().put(a);
+		buf.position(buf.position() + a.length * 8);
+	}
+
+	@Override
+	public void writeNarrow(final int[] a, final int width) throws IOException {
+		final int p = buf.position();
+		reserve((long) a.length * width);
+		if (buf.hasArray()) {
+			ArrayKernels.INSTANCE.narrow(a, 0, a.length, buf.array(), buf.arrayOffset() + p, width);
+		} else if (width == 1) {
+			for (int i = 0; i < a.length; i++) {
+				buf.put(p + i, (byte) a[i]);
+			}
+		} else {
+			for (int i = 0; i < a.length; i++) {
+				buf.putShort(p + i * 2, (short) a[i]);
+			}
+		}
+		buf.position(p + a.length * width);
+	}
+
+	@Override
+	public void writeNarrow(final long[] a, final int width) throws IOException {
+		final int p = buf.position();
+		reserve((long) a.length * width);
+		if (buf.hasArray()) {
+			ArrayKernels.INSTANCE.narrow(a, 0, a.length, buf.array(), buf.arrayOffset() + p, width);
+		} else if (width == 1) {
+			for (int i = 0; i < a.length; i++) {
+				buf.put(p + i, (byte) a[i]);
+			}
+		} else if (width == 2) {
+			for (int i = 0; i < a.length; i++) {
+				buf.putShort(p + i * 2, (short) a[i]);
+			}
+		} else {
+			for (int i = 0; i < a.length; i++) {
+				buf.putInt(p + i * 4, (int) a[i]);
+			}
+		}
+		buf.position(p + a.length * width);
+	}
+}
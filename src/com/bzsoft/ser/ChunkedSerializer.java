@@ -0,0 +1,341 @@
+package com.bzsoft.ser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import com.bzsoft.ser.BaseSerializer.Header;
+
+/**
+ * Parallel serialization of big ArrayList, HashMap and Object[] roots.
+ * <p>
+ * The elements are split in chunks of about <code>chunkSize</code> elements
+ * (entries for maps) which are serialized by the workers of an executor, each
+ * one with a serializer of its own and an empty reference set. The stream
+ * holds:
+ * <ul>
+ * <li>the header of the root, ARRAYLIST, HASHMAP or ARRAY_OBJECT followed by
+ * the component class name</li>
+ * <li>the packed number of elements and the packed number of chunks</li>
+ * <li>every chunk as its directory entry, the packed number of elements and a
+ * 4 byte length, followed by the serialized elements (key and value for
+ * maps)</li>
+ * </ul>
+ * Chunks are independent, so the reader decodes them in parallel too and puts
+ * the elements together in the original order. An object shared by elements
+ * of different chunks is read back as one copy per chunk, and elements must
+ * not refer to the root.
+ */
+public final class ChunkedSerializer {
+
+	public static final int		DEFAULT_CHUNK_SIZE	= 16 * 1024;
+
+	/** chunks being encoded or decoded ahead of the one being written or read */
+	private static final int	MAX_PENDING				= 2 * Runtime.getRuntime().availableProcessors();
+
+	private ChunkedSerializer() {
+		// util class
+	}
+
+	/**
+	 * Writes the root with BeanSerializers on a pool of one thread per CPU.
+	 *
+	 * @see #write(OutputStream, Object, Supplier, ExecutorService, int)
+	 */
+	public static void write(final OutputStream os, final Object root) throws IOException {
+		final ExecutorService executor = newExecutor();
+		try {
+			write(os, root, BeanSerializer::new, executor, DEFAULT_CHUNK_SIZE);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Writes the root as independent chunks. The stream is flushed, not closed.
+	 *
+	 * @param os
+	 *           the stream
+	 * @param root
+	 *           an ArrayList, a HashMap or an Object[]
+	 * @param serializers
+	 *           new serializer for every chunk, the reader must use the same
+	 *           kind
+	 * @param executor
+	 *           runs the chunk encoders
+	 * @param chunkSize
+	 *           elements per chunk
+	 * @throws IllegalArgumentException
+	 *            if the root can not be split
+	 * @throws IOException
+	 *            Signals that an I/O exception has occurred.
+	 */
+	public static void write(final OutputStream os, final Object root, final Supplier<? extends Serializer<Object>> serializers,
+			final ExecutorService executor, final int chunkSize) throws IOException {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+		}
+		final int header;
+		final int size;
+		final Spliterator<?> all;
+		if (root != null && root.getClass() == ArrayList.class) {
+			header = Header.ARRAYLIST;
+			size = ((ArrayList<?>) root).size();
+			all = ((ArrayList<?>) root).spliterator();
+		} else if (root != null && root.getClass() == HashMap.class) {
+			header = Header.HASHMAP;
+			size = ((HashMap<?, ?>) root).size();
+			all = ((HashMap<?, ?>) root).entrySet().spliterator();
+		} else if (root instanceof Object[]) {
+			header = Header.ARRAY_OBJECT;
+			size = ((Object[]) root).length;
+			all = Arrays.spliterator((Object[]) root);
+		} else {
+			throw new IllegalArgumentException("Not an ArrayList, HashMap or Object[]: " + (root == null ? null : root.getClass()));
+		}
+		final List<Spliterator<?>> chunks = new ArrayList<Spliterator<?>>();
+		split(all, chunkSize, chunks);
+
+		final BufferedDataOutput out = new BufferedDataOutput(os);
+		out.writeByte(header);
+		if (header == Header.ARRAY_OBJECT) {
+			out.writeUTF(root.getClass().getComponentType().getName());
+		}
+		out.packInt(size);
+		out.packInt(chunks.size());
+		final ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+		try {
+			int next = 0;
+			while (next < chunks.size() || !pending.isEmpty()) {
+				while (next < chunks.size() && pending.size() < MAX_PENDING) {
+					final Spliterator<?> elements = chunks.get(next++);
+					pending.add(executor.submit(new Callable<Chunk>() {
+
+						@Override
+						public Chunk call() throws IOException {
+							return encode(elements, header == Header.HASHMAP, serializers.get());
+						}
+					}));
+				}
+				final Chunk chunk;
+				try {
+					chunk = await(pending.remove());
+				} catch (final ClassNotFoundException e) {
+					// not thrown by encoders
+					throw new IOException(e);
+				}
+				out.packInt(chunk.count);
+				out.writeInt(chunk.bytes.length);
+				out.write(chunk.bytes, 0, chunk.bytes.length);
+			}
+		} finally {
+			for (final Future<Chunk> f : pending) {
+				f.cancel(true);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Splits in order until every part has at most <code>chunkSize</code>
+	 * elements or can not be split any more.
+	 */
+	private static void split(final Spliterator<?> s, final int chunkSize, final List<Spliterator<?>> chunks) {
+		if (s.estimateSize() > chunkSize) {
+			final Spliterator<?> prefix = s.trySplit();
+			if (prefix != null) {
+				split(prefix, chunkSize, chunks);
+				split(s, chunkSize, chunks);
+				return;
+			}
+		}
+		chunks.add(s);
+	}
+
+	private static Chunk encode(final Spliterator<?> elements, final boolean entries, final Serializer<Object> ser) throws IOException {
+		final BufferedDataOutput out = new BufferedDataOutput(null);
+		final ReferenceSet<Object> rset = ser.newReferenceSet();
+		final int[] count = new int[1];
+		final IOException[] failure = new IOException[1];
+		elements.forEachRemaining(e -> {
+			if (failure[0] != null) {
+				return;
+			}
+			try {
+				if (entries) {
+					final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) e;
+					ser.serializeObject(out, entry.getKey(), rset);
+					ser.serializeObject(out, entry.getValue(), rset);
+				} else {
+					ser.serializeObject(out, e, rset);
+				}
+				count[0]++;
+			} catch (final IOException ex) {
+				failure[0] = ex;
+			}
+		});
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+		return new Chunk(count[0], out.toByteArray());
+	}
+
+	/**
+	 * Reads a root written by {@link #write(OutputStream, Object)}.
+	 */
+	public static Object read(final InputStream is) throws IOException, ClassNotFoundException {
+		final ExecutorService executor = newExecutor();
+		try {
+			return read(is, BeanSerializer::new, executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Reads the chunks one after the other and decodes them on the executor.
+	 * The stream is read ahead in blocks, it should hold nothing else.
+	 *
+	 * @param is
+	 *           the stream
+	 * @param serializers
+	 *           new serializer for every chunk
+	 * @param executor
+	 *           runs the chunk decoders
+	 * @return an ArrayList, a HashMap or an array
+	 * @throws IOException
+	 *            Signals that an I/O exception has occurred.
+	 * @throws ClassNotFoundException
+	 *            the class not found exception
+	 */
+	public static Object read(final InputStream is, final Supplier<? extends Serializer<Object>> serializers, final ExecutorService executor)
+			throws IOException, ClassNotFoundException {
+		final BufferedDataInput in = new BufferedDataInput(is);
+		final int header = in.readUnsignedByte();
+		Class<?> componentType = null;
+		if (header == Header.ARRAY_OBJECT) {
+			componentType = Class.forName(in.readUTF());
+		} else if (header != Header.ARRAYLIST && header != Header.HASHMAP) {
+			throw new StreamCorruptedException("Not a chunked root: " + header);
+		}
+		final int size = in.unpackInt();
+		final int chunkCount = in.unpackInt();
+		if (size < 0 || chunkCount < 0) {
+			throw new StreamCorruptedException("Invalid chunked root of " + size + " elements in " + chunkCount + " chunks");
+		}
+		final boolean entries = header == Header.HASHMAP;
+		final HashMap<Object, Object> map = entries ? new HashMap<Object, Object>((int) Math.min(size * 4L / 3 + 1, Integer.MAX_VALUE)) : null;
+		final ArrayList<Object> list = header == Header.ARRAYLIST ? new ArrayList<Object>(size) : null;
+		final Object array = componentType != null ? Array.newInstance(componentType, size) : null;
+		final ArrayDeque<Future<Object[]>> pending = new ArrayDeque<Future<Object[]>>();
+		int read = 0;
+		int done = 0;
+		try {
+			int next = 0;
+			while (next < chunkCount || !pending.isEmpty()) {
+				while (next < chunkCount && pending.size() < MAX_PENDING) {
+					final int count = in.unpackInt();
+					final int len = in.readInt();
+					if (len < 0 || count < 0 || count > size - read) {
+						throw new StreamCorruptedException("Invalid chunk " + next + ": " + count + " elements in " + len + " bytes");
+					}
+					final byte[] bytes = new byte[len];
+					in.readFully(bytes);
+					read += count;
+					next++;
+					pending.add(executor.submit(new Callable<Object[]>() {
+
+						@Override
+						public Object[] call() throws IOException, ClassNotFoundException {
+							return decode(bytes, entries ? 2 * count : count, serializers.get());
+						}
+					}));
+				}
+				final Object[] chunk = await(pending.remove());
+				if (map != null) {
+					for (int i = 0; i < chunk.length; i += 2) {
+						map.put(chunk[i], chunk[i + 1]);
+					}
+				} else if (list != null) {
+					list.addAll(Arrays.asList(chunk));
+				} else {
+					System.arraycopy(chunk, 0, array, done, chunk.length);
+					done += chunk.length;
+				}
+			}
+		} finally {
+			for (final Future<Object[]> f : pending) {
+				f.cancel(true);
+			}
+		}
+		if (read != size) {
+			throw new StreamCorruptedException("Chunks hold " + read + " elements instead of " + size);
+		}
+		return map != null ? map : list != null ? list : array;
+	}
+
+	private static Object[] decode(final byte[] bytes, final int count, final Serializer<Object> ser) throws IOException, ClassNotFoundException {
+		final BufferedDataInput in = new BufferedDataInput(bytes, 0, bytes.length);
+		final ReferenceSet<Object> rset = ser.newReferenceSet();
+		final Object[] ret = new Object[count];
+		for (int i = 0; i < count; i++) {
+			ret[i] = ser.deserializeObject(in, rset);
+		}
+		return ret;
+	}
+
+	private static ExecutorService newExecutor() {
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Result of a task, with the exception it failed with rethrown as is.
+	 */
+	protected static <T> T await(final Future<T> future) throws IOException, ClassNotFoundException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof ClassNotFoundException) {
+				throw (ClassNotFoundException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static final class Chunk {
+
+		private final int		count;
+		private final byte[]	bytes;
+
+		private Chunk(final int count, final byte[] bytes) {
+			this.count = count;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.bzsoft.ser;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classes with fixed ids known to both the writer and the reader. A
+ * {@link BeanSerializer} built with a registry always writes these classes as
+ * <code>CLASS_ID</code> with their id, never by name, and classes it meets on
+ * the way get ids after the highest registered one.
+ * <p>
+ * Both sides must register the same classes with the same ids. Register
+ * everything before handing the registry to a serializer, it is not thread
+ * safe while being filled and is only read afterwards.
+ */
+public final class ClassRegistry {
+
+	private final List<Class<?>>			id2class;
+	private final Map<Class<?>, Integer>	class2id;
+
+	public ClassRegistry() {
+		id2class = new ArrayList<Class<?>>();
+		class2id = new IdentityHashMap<Class<?>, Integer>();
+	}
+
+	/**
+	 * Registers a class with the next free id.
+	 *
+	 * @param clazz
+	 *           the class
+	 * @return the id
+	 */
+	public int register(final Class<?> clazz) {
+		final Integer id = class2id.get(clazz);
+		if (id != null) {
+			return id;
+		}
+		return register(clazz, id2class.size());
+	}
+
+	/**
+	 * Registers a class with the given id.
+	 *
+	 * @param clazz
+	 *           the class
+	 * @param id
+	 *           the id, not used by another class
+	 * @return the id
+	 * @throws IllegalArgumentException
+	 *            if the id or the class are already registered
+	 */
+	public int register(final Class<?> clazz, final int id) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Negative class id " + id);
+		}
+		final Integer old = class2id.get(clazz);
+		if (old != null) {
+			if (old == id) {
+				return id;
+			}
+			throw new IllegalArgumentException(clazz.getName() + " already registered with id " + old);
+		}
+		if (id < id2class.size() && id2class.get(id) != null) {
+			throw new IllegalArgumentException("Class id " + id + " already used by " + id2class.get(id).getName());
+		}
+		while (id2class.size() <= id) {
+			id2class.add(null);
+		}
+		id2class.set(id, clazz);
+		class2id.put(clazz, id);
+		return id;
+	}
+
+	/**
+	 * Registers classes with consecutive ids in the given order.
+	 */
+	public void registerAll(final Class<?>... classes) {
+		for (final Class<?> clazz : classes) {
+			register(clazz);
+		}
+	}
+
+	/**
+	 * Class with the given id, null if none.
+	 */
+	public Class<?> getClassById(final int id) {
+		return id >= 0 && id < id2class.size() ? id2class.get(id) : null;
+	}
+
+	/**
+	 * Id of a class, null if not registered.
+	 */
+	public Integer getClassId(final Class<?> clazz) {
+		return class2id.get(clazz);
+	}
+
+	/**
+	 * One more than the highest registered id, the first id given to classes
+	 * found while serializing.
+	 */
+	public int size() {
+		return id2class.size();
+	}
+}
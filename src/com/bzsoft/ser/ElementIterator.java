@@ -0,0 +1,160 @@
+package com.bzsoft.ser;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.bzsoft.ser.BaseSerializer.Header;
+
+/**
+ * Elements of a serialized list, array or map, decoded one by one as they are
+ * requested. Map elements are their entries.
+ * <p>
+ * ARRAYLIST, ARRAY_OBJECT and HASHMAP bodies, sized or ended by END, are
+ * read from the stream while iterating. Any other collection, array or map is read whole first. The
+ * container itself takes its place in the reference set, so the elements
+ * read back the same as with a full read, except for references to the
+ * container, which can not be streamed.
+ */
+final class ElementIterator implements Iterator<Object> {
+
+	/** size of the containers ended by an END header */
+	static final int							UNSIZED	= -1;
+
+	private final BaseSerializer			serializer;
+	private final DataInput					in;
+	private final ReferenceSet<Object>	rset;
+	private final boolean					entries;
+	/** elements of a container read whole, null when streaming */
+	private final Iterator<?>				materialized;
+	private final int							size;
+	private int									remaining;
+	/** header of the next element of an unsized container, -1 if not read */
+	private int									head;
+
+	private ElementIterator(final BaseSerializer serializer, final DataInput in, final ReferenceSet<Object> rset, final boolean entries,
+			final Iterator<?> materialized, final int size) {
+		this.serializer = serializer;
+		this.in = in;
+		this.rset = rset;
+		this.entries = entries;
+		this.materialized = materialized;
+		this.size = size;
+		remaining = size;
+		head = -1;
+	}
+
+	/**
+	 * Reads the header of the next object and, for the streamed containers,
+	 * their length, leaving the stream at the first element.
+	 *
+	 * @throws StreamCorruptedException
+	 *            if the next object is not a collection, an array or a map
+	 */
+	static ElementIterator open(final BaseSerializer serializer, final DataInput in, final ReferenceSet<Object> rset)
+			throws IOException, ClassNotFoundException {
+		final int head = serializer.readHeader(in, rset);
+		switch (head) {
+		case Header.ARRAYLIST:
+		case Header.HASHMAP:
+			return stream(serializer, in, rset, head == Header.HASHMAP, Utils.unpackInt(in));
+		case Header.ARRAY_OBJECT:
+			final int size = Utils.unpackInt(in);
+			serializer.deserializeClass(in);
+			return stream(serializer, in, rset, false, size);
+		case Header.ARRAYLIST_UNSIZED:
+		case Header.HASHMAP_UNSIZED:
+			return stream(serializer, in, rset, head == Header.HASHMAP_UNSIZED, UNSIZED);
+		default:
+			return of(serializer.deserialize(head, in, rset));
+		}
+	}
+
+	private static ElementIterator stream(final BaseSerializer serializer, final DataInput in, final ReferenceSet<Object> rset,
+			final boolean entries, final int size) {
+		final ElementIterator ret = new ElementIterator(serializer, in, rset, entries, null, size);
+		// keeps the indexes of the elements in the reference set
+		rset.add(ret);
+		return ret;
+	}
+
+	/**
+	 * Elements of a container already read.
+	 */
+	static ElementIterator of(final Object obj) throws StreamCorruptedException {
+		if (obj instanceof Collection) {
+			return new ElementIterator(null, null, null, false, ((Collection<?>) obj).iterator(), ((Collection<?>) obj).size());
+		} else if (obj instanceof Map) {
+			return new ElementIterator(null, null, null, true, ((Map<?, ?>) obj).entrySet().iterator(), ((Map<?, ?>) obj).size());
+		} else if (obj instanceof Object[]) {
+			return new ElementIterator(null, null, null, false, Arrays.asList((Object[]) obj).iterator(), ((Object[]) obj).length);
+		}
+		throw new StreamCorruptedException("Not a collection, array or map: " + (obj == null ? null : obj.getClass().getName()));
+	}
+
+	/**
+	 * Number of elements, entries for maps, or {@link #UNSIZED}.
+	 */
+	int size() {
+		return size;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (materialized != null) {
+			return materialized.hasNext();
+		}
+		if (size != UNSIZED) {
+			return remaining > 0;
+		}
+		if (head == -1) {
+			try {
+				head = serializer.readHeader(in, rset);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return head != Header.END;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UncheckedIOException
+	 *            if the element can not be read, with the IOException as cause
+	 *            or with one caused by the ClassNotFoundException
+	 */
+	@Override
+	public Object next() {
+		if (materialized != null) {
+			return materialized.next();
+		}
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		try {
+			final int h = size == UNSIZED ? head : serializer.readHeader(in, rset);
+			final Object ret;
+			if (entries) {
+				final Object key = serializer.deserialize(h, in, rset);
+				ret = new SimpleImmutableEntry<Object, Object>(key, serializer.deserialize(in, rset));
+			} else {
+				ret = serializer.deserialize(h, in, rset);
+			}
+			remaining--;
+			head = -1;
+			return ret;
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (final ClassNotFoundException e) {
+			throw new UncheckedIOException(new IOException(e));
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package com.bzsoft.ser;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes one field. Every field gets a hidden class of its own
+ * holding the method handles of the field in static final fields, so the JIT
+ * takes them as constants and inlines the field access into the accessor
+ * methods. There is no access check per call, and the typed methods move
+ * primitives without boxing them.
+ */
+abstract class FieldAccessor {
+
+	static final int									OBJECT	= 0;
+	static final int									BOOLEAN	= 1;
+	static final int									BYTE		= 2;
+	static final int									CHAR		= 3;
+	static final int									SHORT		= 4;
+	static final int									INT		= 5;
+	static final int									LONG		= 6;
+	static final int									FLOAT		= 7;
+	static final int									DOUBLE	= 8;
+
+	private static final MethodHandles.Lookup	LOOKUP	= MethodHandles.lookup();
+	/** class file of the hidden classes by field kind */
+	private static final byte[][]					CLASSES	= new byte[DOUBLE + 1][];
+
+	static {
+		for (int kind = OBJECT; kind <= DOUBLE; kind++) {
+			CLASSES[kind] = AccessorClassWriter.write(kind);
+		}
+	}
+
+	private final Field								field;
+	private final Class<?>							type;
+	private final int									kind;
+
+	/**
+	 * Called by the hidden classes.
+	 */
+	FieldAccessor(final Field field) {
+		this.field = field;
+		type = field.getType();
+		kind = kindOf(type);
+	}
+
+	/**
+	 * Accessor of an accessible field.
+	 */
+	static FieldAccessor of(final Field field) throws IOException {
+		final Class<?> type = field.getType();
+		final int kind = kindOf(type);
+		final List<MethodHandle> handles = new ArrayList<MethodHandle>(4);
+		final Class<?> hidden;
+		try {
+			final MethodHandle get = LOOKUP.unreflectGetter(field);
+			final MethodHandle set = LOOKUP.unreflectSetter(field);
+			handles.add(get.asType(MethodType.methodType(Object.class, Object.class)));
+			handles.add(set.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+			if (kind != OBJECT) {
+				handles.add(get.asType(MethodType.methodType(type, Object.class)));
+				handles.add(set.asType(MethodType.methodType(void.class, Object.class, type)));
+			}
+			hidden = LOOKUP.defineHiddenClassWithClassData(CLASSES[kind], handles, true).lookupClass();
+		} catch (final IllegalAccessException e) {
+			throw new InvalidClassException(field.getDeclaringClass().getName(), "Could not access field " + field.getName());
+		}
+		try {
+			return (FieldAccessor) hidden.getDeclaredConstructor(Field.class).newInstance(field);
+		} catch (final ReflectiveOperationException e) {
+			// the generated constructor is public and does not throw
+			throw new IllegalStateException(e);
+		}
+	}
+
+	Field getField() {
+		return field;
+	}
+
+	Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * One of the type constants, OBJECT for reference fields.
+	 */
+	int getKind() {
+		return kind;
+	}
+
+	private static int kindOf(final Class<?> type) {
+		if (type == boolean.class) {
+			return BOOLEAN;
+		} else if (type == byte.class) {
+			return BYTE;
+		} else if (type == char.class) {
+			return CHAR;
+		} else if (type == short.class) {
+			return SHORT;
+		} else if (type == int.class) {
+			return INT;
+		} else if (type == long.class) {
+			return LONG;
+		} else if (type == float.class) {
+			return FLOAT;
+		} else if (type == double.class) {
+			return DOUBLE;
+		}
+		return OBJECT;
+	}
+
+	abstract Object get(Object obj);
+
+	abstract void set(Object obj, Object value);
+
+	boolean getBoolean(final Object obj) {
+		throw wrongKind("boolean");
+	}
+
+	void setBoolean(final Object obj, final boolean value) {
+		throw wrongKind("boolean");
+	}
+
+	byte getByte(final Object obj) {
+		throw wrongKind("byte");
+	}
+
+	void setByte(final Object obj, final byte value) {
+		throw wrongKind("byte");
+	}
+
+	char getChar(final Object obj) {
+		throw wrongKind("char");
+	}
+
+	void setChar(final Object obj, final char value) {
+		throw wrongKind("char");
+	}
+
+	short getShort(final Object obj) {
+		throw wrongKind("short");
+	}
+
+	void setShort(final Object obj, final short value) {
+		throw wrongKind("short");
+	}
+
+	int getInt(final Object obj) {
+		throw wrongKind("int");
+	}
+
+	void setInt(final Object obj, final int value) {
+		throw wrongKind("int");
+	}
+
+	long getLong(final Object obj) {
+		throw wrongKind("long");
+	}
+
+	void setLong(final Object obj, final long value) {
+		throw wrongKind("long");
+	}
+
+	float getFloat(final Object obj) {
+		throw wrongKind("float");
+	}
+
+	void setFloat(final Object obj, final float value) {
+		throw wrongKind("float");
+	}
+
+	double getDouble(final Object obj) {
+		throw wrongKind("double");
+	}
+
+	void setDouble(final Object obj, final double value) {
+		throw wrongKind("double");
+	}
+
+	private ClassCastException wrongKind(final String expected) {
+		return new ClassCastException("Not a " + expected + " field: " + field);
+	}
+
+	@Override
+	public String toString() {
+		return "FieldAccessor[" + field + "]";
+	}
+}
@@ -0,0 +1,116 @@
+package com.bzsoft.ser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.bzsoft.ser.BeanSerializer.ClassInfo;
+
+/**
+ * View of a serialized indexed bean, returned by
+ * {@link BeanSerializer#deserializeIndexed(ByteBuffer)}. Fields are decoded
+ * from the buffer every time they are asked for, the others are never read.
+ * Not thread safe, it uses the serializer that created it.
+ */
+public final class IndexedBean {
+
+	private final BeanSerializer	serializer;
+	private final Class<?>			type;
+	private final ClassInfo			classInfo;
+	private final ByteBuffer		message;
+	private final ByteBuffer		values;
+	/** start of every field value in values, and their end */
+	private final int[]				offsets;
+
+	protected IndexedBean(final BeanSerializer serializer, final Class<?> type, final ClassInfo classInfo, final ByteBuffer message,
+			final ByteBuffer values, final int[] offsets) {
+		this.serializer = serializer;
+		this.type = type;
+		this.classInfo = classInfo;
+		this.message = message;
+		this.values = values;
+		this.offsets = offsets;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public int getFieldCount() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Name of a field, in layout order: the fields of the class by name, then
+	 * the ones of its superclasses.
+	 */
+	public String getFieldName(final int index) {
+		return classInfo.getField(index).getName();
+	}
+
+	/**
+	 * Index of the first field with the given name, -1 if there is none.
+	 */
+	public int indexOf(final String name) {
+		for (int i = 0; i < getFieldCount(); i++) {
+			if (getFieldName(i).equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Decodes a field value, primitives boxed.
+	 */
+	public Object get(final int index) throws IOException, ClassNotFoundException {
+		final ByteBuffer value = values.duplicate();
+		value.limit(offsets[index + 1]);
+		value.position(offsets[index]);
+		return serializer.deserializeIndexedField(value);
+	}
+
+	/**
+	 * Decodes a field value by name.
+	 *
+	 * @throws IllegalArgumentException
+	 *            if the class has no such field
+	 */
+	public Object get(final String name) throws IOException, ClassNotFoundException {
+		final int index = indexOf(name);
+		if (index < 0) {
+			throw new IllegalArgumentException("No field " + name + " in " + type.getName());
+		}
+		return get(index);
+	}
+
+	/**
+	 * Encoded bytes of a field value.
+	 */
+	public ByteBuffer getBytes(final int index) {
+		final ByteBuffer value = values.duplicate();
+		value.limit(offsets[index + 1]);
+		value.position(offsets[index]);
+		return value.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * The whole message, to be forwarded as it is. It can be read by
+	 * {@link BaseSerializer#deserialize(ByteBuffer)} of a serializer with the
+	 * same settings.
+	 */
+	public ByteBuffer getMessage() {
+		return message.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Decodes the whole bean.
+	 */
+	public Object toObject() throws IOException, ClassNotFoundException {
+		return serializer.deserialize(message.duplicate());
+	}
+
+	@Override
+	public String toString() {
+		return "IndexedBean [" + type.getName() + ", " + getFieldCount() + " fields, " + message.remaining() + " bytes]";
+	}
+}
@@ -0,0 +1,200 @@
+package com.bzsoft.ser;
+
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * LZ77 block codec with the sequence layout of LZ4 blocks: a token with the
+ * literal length in the high and the match length minus 4 in the low nibble,
+ * both extended with 255 valued bytes, the literals, and a 2 byte little
+ * endian offset. The last sequence only has literals, the last 5 bytes of a
+ * block are always literals.
+ * <p>
+ * Matches are found with a single entry hash table of 4 byte sequences. It is
+ * kept between blocks, stale entries are harmless since every candidate is
+ * compared before use. Not thread safe.
+ */
+final class LZBlockCodec {
+
+	private static final VarHandle	INT				= MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private static final int			MIN_MATCH		= 4;
+	private static final int			LAST_LITERALS	= 5;
+	/** no match starts in the last 12 bytes */
+	private static final int			MF_LIMIT			= 12;
+	private static final int			MAX_OFFSET		= 0xFFFF;
+	private static final int			HASH_LOG			= 14;
+	/** misses before the search step grows, for incompressible data */
+	private static final int			SKIP_TRIGGER	= 6;
+
+	private final int[]					table;
+
+	LZBlockCodec() {
+		table = new int[1 << HASH_LOG];
+	}
+
+	/**
+	 * Biggest compressed size of <code>len</code> bytes.
+	 */
+	static int maxCompressedLength(final int len) {
+		return len + len / 255 + 16;
+	}
+
+	private static int hash(final int seq) {
+		return seq * -1640531535 >>> 32 - HASH_LOG;
+	}
+
+	/**
+	 * Compresses <code>src[srcOff, srcOff + len)</code> into <code>dst</code>,
+	 * which must have room for {@link #maxCompressedLength(int)} bytes.
+	 *
+	 * @return the compressed length
+	 */
+	int compress(final byte[] src, final int srcOff, final int len, final byte[] dst, final int dstOff) {
+		final int[] t = table;
+		final int srcEnd = srcOff + len;
+		final int matchLimit = srcEnd - LAST_LITERALS;
+		final int mfLimit = srcEnd - MF_LIMIT;
+		int dp = dstOff;
+		int anchor = srcOff;
+		int sp = srcOff + 1;
+		int misses = 0;
+		while (sp < mfLimit) {
+			final int seq = (int) INT.get(src, sp);
+			final int h = hash(seq);
+			final int ref = t[h];
+			t[h] = sp;
+			if (ref < srcOff || ref >= sp || sp - ref > MAX_OFFSET || (int) INT.get(src, ref) != seq) {
+				sp += 1 + (misses++ >>> SKIP_TRIGGER);
+				continue;
+			}
+			misses = 0;
+			int s = sp;
+			int r = ref;
+			while (s > anchor && r > srcOff && src[s - 1] == src[r - 1]) {
+				s--;
+				r--;
+			}
+			int end = sp + MIN_MATCH;
+			while (end < matchLimit && src[end] == src[end - s + r]) {
+				end++;
+			}
+			dp = writeSequence(dst, dp, src, anchor, s - anchor, s - r, end - s);
+			sp = end;
+			anchor = end;
+			if (sp < mfLimit) {
+				t[hash((int) INT.get(src, sp - 2))] = sp - 2;
+			}
+		}
+		dp = writeLiterals(dst, dp, src, anchor, srcEnd - anchor, 0);
+		return dp - dstOff;
+	}
+
+	private static int writeSequence(final byte[] dst, int dp, final byte[] src, final int litOff, final int litLen, final int offset,
+			final int matchLen) {
+		final int ml = matchLen - MIN_MATCH;
+		dp = writeLiterals(dst, dp, src, litOff, litLen, Math.min(ml, 15));
+		dst[dp++] = (byte) offset;
+		dst[dp++] = (byte) (offset >>> 8);
+		if (ml >= 15) {
+			dp = writeLength(dst, dp, ml - 15);
+		}
+		return dp;
+	}
+
+	/**
+	 * Writes the token, with <code>matchToken</code> in its low nibble, and the
+	 * literals.
+	 */
+	private static int writeLiterals(final byte[] dst, int dp, final byte[] src, final int litOff, final int litLen, final int matchToken) {
+		dst[dp++] = (byte) (Math.min(litLen, 15) << 4 | matchToken);
+		if (litLen >= 15) {
+			dp = writeLength(dst, dp, litLen - 15);
+		}
+		System.arraycopy(src, litOff, dst, dp, litLen);
+		return dp + litLen;
+	}
+
+	private static int writeLength(final byte[] dst, int dp, int len) {
+		while (len >= 255) {
+			dst[dp++] = (byte) 255;
+			len -= 255;
+		}
+		dst[dp++] = (byte) len;
+		return dp;
+	}
+
+	/**
+	 * Decompresses a whole block of exactly <code>dstLen</code> bytes.
+	 *
+	 * @throws StreamCorruptedException
+	 *            if the block is malformed or does not decode to dstLen bytes
+	 */
+	static void decompress(final byte[] src, final int srcOff, final int srcLen, final byte[] dst, final int dstOff, final int dstLen)
+			throws StreamCorruptedException {
+		final int srcEnd = srcOff + srcLen;
+		final int dstEnd = dstOff + dstLen;
+		int sp = srcOff;
+		int dp = dstOff;
+		while (true) {
+			if (sp >= srcEnd) {
+				throw new StreamCorruptedException("Truncated compressed block");
+			}
+			final int token = src[sp++] & 0xFF;
+			int litLen = token >>> 4;
+			if (litLen == 15) {
+				int b;
+				do {
+					if (sp >= srcEnd) {
+						throw new StreamCorruptedException("Truncated compressed block");
+					}
+					b = src[sp++] & 0xFF;
+					litLen += b;
+				} while (b == 255);
+			}
+			if (litLen > srcEnd - sp || litLen > dstEnd - dp) {
+				throw new StreamCorruptedException("Invalid literal length " + litLen);
+			}
+			System.arraycopy(src, sp, dst, dp, litLen);
+			sp += litLen;
+			dp += litLen;
+			if (sp == srcEnd) {
+				break;
+			}
+			if (srcEnd - sp < 2) {
+				throw new StreamCorruptedException("Truncated compressed block");
+			}
+			final int offset = src[sp++] & 0xFF | (src[sp++] & 0xFF) << 8;
+			int matchLen = token & 0x0F;
+			if (matchLen == 15) {
+				int b;
+				do {
+					if (sp >= srcEnd) {
+						throw new StreamCorruptedException("Truncated compressed block");
+					}
+					b = src[sp++] & 0xFF;
+					matchLen += b;
+				} while (b == 255);
+			}
+			matchLen += MIN_MATCH;
+			final int ref = dp - offset;
+			if (offset == 0 || ref < dstOff || matchLen > dstEnd - dp) {
+				throw new StreamCorruptedException("Invalid match at " + (dp - dstOff));
+			}
+			if (offset >= matchLen) {
+				System.arraycopy(dst, ref, dst, dp, matchLen);
+			} else {
+				// overlapping, repeats the last offset bytes
+				for (int i = 0; i < matchLen; i++) {
+					dst[dp + i] = dst[ref + i];
+				}
+			}
+			dp += matchLen;
+		}
+		if (dp != dstEnd) {
+			throw new StreamCorruptedException("Block decoded to " + (dp - dstOff) + " bytes instead of " + dstLen);
+		}
+	}
+}
@@ -0,0 +1,314 @@
+package com.bzsoft.ser;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * File of serialized records with random access by record number.
+ * <p>
+ * The data file holds one record per object: a 4 byte length followed by a
+ * self contained message written by {@link BaseSerializer#serialize(ByteBuffer, Object)}.
+ * The index file (data file name plus <code>.idx</code>) holds the 8 byte
+ * offset of every record. Both are memory mapped, so reading a record only
+ * touches the pages it lives in. The index is mapped as a single buffer,
+ * which limits a file to {@link #MAX_RECORDS} records.
+ */
+public final class MappedRecordFile {
+
+	public static final String	INDEX_SUFFIX	= ".idx";
+	public static final int		MAX_RECORDS		= Integer.MAX_VALUE / 8;
+
+	private static final int	REGION_SIZE		= 16 * 1024 * 1024;
+	private static final int	SEGMENT_SIZE	= 1 << 30;
+
+	private MappedRecordFile() {
+		// util class
+	}
+
+	public static File indexFile(final File file) {
+		return new File(file.getPath() + INDEX_SUFFIX);
+	}
+
+	public static Appender appender(final File file) throws IOException {
+		return new Appender(file, new BeanSerializer());
+	}
+
+	public static Appender appender(final File file, final BaseSerializer serializer) throws IOException {
+		return new Appender(file, serializer);
+	}
+
+	public static Reader reader(final File file) throws IOException {
+		return new Reader(file, new BeanSerializer());
+	}
+
+	public static Reader reader(final File file, final BaseSerializer serializer) throws IOException {
+		return new Reader(file, serializer);
+	}
+
+	/**
+	 * Checks the length prefix of the record at <code>offset</code> against
+	 * the file length.
+	 */
+	private static int checkLength(final long offset, final int len, final long fileLength) throws StreamCorruptedException {
+		if (len < 0 || offset + 4 + len > fileLength) {
+			throw new StreamCorruptedException("Bad record length " + len + " at " + offset);
+		}
+		return len;
+	}
+
+	/**
+	 * Appends records at the end of the file, copying them into a mapped
+	 * region of the file once serialized. Not thread safe.
+	 */
+	public static final class Appender implements Closeable {
+
+		private final BaseSerializer		serializer;
+		private final RandomAccessFile	raf;
+		private final FileChannel			channel;
+		private final FileChannel			indexChannel;
+		private final DataOutputStream	index;
+		private final BufferedDataOutput	record;
+		private MappedByteBuffer			region;
+		private long							end;
+		private int								count;
+
+		private Appender(final File file, final BaseSerializer serializer) throws IOException {
+			this.serializer = serializer;
+			raf = new RandomAccessFile(file, "rw");
+			channel = raf.getChannel();
+			indexChannel = new RandomAccessFile(indexFile(file), "rw").getChannel();
+			try {
+				final long records = indexChannel.size() / 8;
+				if (records > MAX_RECORDS) {
+					throw new StreamCorruptedException("Index of " + records + " records");
+				}
+				count = (int) records;
+				// an appender that was not closed leaves the tail of its last
+				// region and maybe half an index entry, the file ends after the
+				// last record
+				end = count == 0 ? 0 : recordEnd(count - 1);
+				indexChannel.truncate(count * 8L);
+				indexChannel.position(count * 8L);
+			} catch (final IOException e) {
+				indexChannel.close();
+				raf.close();
+				throw e;
+			}
+			index = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(indexChannel)));
+			record = new BufferedDataOutput(null);
+		}
+
+		/**
+		 * File offset just past a record already in the file.
+		 */
+		private long recordEnd(final int record) throws IOException {
+			final ByteBuffer entry = ByteBuffer.allocate(8);
+			indexChannel.read(entry, record * 8L);
+			final long offset = entry.getLong(0);
+			if (offset < 0 || offset > channel.size() - 4) {
+				throw new StreamCorruptedException("Bad record offset " + offset);
+			}
+			raf.seek(offset);
+			return offset + 4 + checkLength(offset, raf.readInt(), channel.size());
+		}
+
+		/**
+		 * Appends an object as a new record.
+		 *
+		 * @param obj
+		 *           the object
+		 * @return the record number
+		 * @throws IOException
+		 *            Signals that an I/O exception has occurred.
+		 */
+		public int append(final Object obj) throws IOException {
+			if (count == MAX_RECORDS) {
+				throw new IOException("File full, " + MAX_RECORDS + " records");
+			}
+			// same bytes as serialize(ByteBuffer, Object)
+			final BaseSerializer ser = serializer.getMessageSerializer();
+			record.clear();
+			ser.clearClassRegistry();
+			ser.serialize(record, obj, ser.newReferenceSet());
+			final int len = record.size();
+			if (region == null || region.remaining() < 4 + len) {
+				map(Math.max(REGION_SIZE, 4 + len));
+			}
+			region.putInt(len);
+			record.writeTo(region);
+			index.writeLong(end);
+			end += 4 + len;
+			return count++;
+		}
+
+		private void map(final int size) throws IOException {
+			release();
+			region = channel.map(MapMode.READ_WRITE, end, size);
+		}
+
+		/**
+		 * Writes the pages of the current region to disk before it is dropped,
+		 * they can not be forced once it is unmapped.
+		 */
+		private void release() {
+			if (region != null) {
+				region.force();
+				region = null;
+			}
+		}
+
+		/**
+		 * Number of records in the file.
+		 */
+		public int size() {
+			return count;
+		}
+
+		/**
+		 * Writes the mapped pages and the index to disk. Regions already left
+		 * behind were written when the appender moved past them.
+		 */
+		public void flush() throws IOException {
+			if (region != null) {
+				region.force();
+			}
+			index.flush();
+			indexChannel.force(false);
+		}
+
+		/**
+		 * Flushes and cuts the file at the end of the last record.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+				region = null;
+				channel.truncate(end);
+				channel.force(true);
+			} finally {
+				index.close();
+				raf.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads records by number, mapping the file in 1GB segments on first use.
+	 * Not thread safe, use one reader per thread.
+	 */
+	public static final class Reader implements Closeable {
+
+		private final BaseSerializer					serializer;
+		private final RandomAccessFile				raf;
+		private final FileChannel						channel;
+		private final ByteBuffer						index;
+		private final long								length;
+		private final Map<Long, MappedByteBuffer>	segments;
+
+		private Reader(final File file, final BaseSerializer serializer) throws IOException {
+			this.serializer = serializer;
+			final RandomAccessFile indexRaf = new RandomAccessFile(indexFile(file), "r");
+			try {
+				final long records = indexRaf.length() / 8;
+				if (records > MAX_RECORDS) {
+					throw new StreamCorruptedException("Index of " + records + " records");
+				}
+				index = indexRaf.getChannel().map(MapMode.READ_ONLY, 0, records * 8);
+			} finally {
+				indexRaf.close();
+			}
+			raf = new RandomAccessFile(file, "r");
+			channel = raf.getChannel();
+			length = channel.size();
+			segments = new HashMap<Long, MappedByteBuffer>();
+		}
+
+		/**
+		 * Number of records in the file.
+		 */
+		public int size() {
+			return index.capacity() / 8;
+		}
+
+		/**
+		 * File offset of a record.
+		 */
+		public long offset(final int record) {
+			if (record < 0 || record >= size()) {
+				throw new IndexOutOfBoundsException("Record " + record + " of " + size());
+			}
+			return index.getLong(record * 8);
+		}
+
+		/**
+		 * Checked length of the record at <code>offset</code>.
+		 */
+		private int length(final long offset) throws IOException {
+			if (offset < 0 || offset > length - 4) {
+				throw new StreamCorruptedException("Bad record offset " + offset);
+			}
+			return checkLength(offset, slice(offset, 4).getInt(), length);
+		}
+
+		/**
+		 * Deserializes a record without reading the ones before it.
+		 *
+		 * @param record
+		 *           the record number
+		 * @return the object
+		 * @throws IOException
+		 *            Signals that an I/O exception has occurred.
+		 * @throws ClassNotFoundException
+		 *            the class not found exception
+		 */
+		public Object read(final int record) throws IOException, ClassNotFoundException {
+			final long offset = offset(record);
+			return serializer.deserialize(slice(offset + 4, length(offset)));
+		}
+
+		/**
+		 * Raw bytes of a record, without the length prefix.
+		 */
+		public ByteBuffer bytes(final int record) throws IOException {
+			final long offset = offset(record);
+			return slice(offset + 4, length(offset));
+		}
+
+		private ByteBuffer slice(final long offset, final int len) throws IOException {
+			final long segment = offset / SEGMENT_SIZE;
+			final long segmentStart = segment * SEGMENT_SIZE;
+			if (offset + len > segmentStart + SEGMENT_SIZE) {
+				// crosses a segment end, map it on its own
+				return channel.map(MapMode.READ_ONLY, offset, len);
+			}
+			MappedByteBuffer buf = segments.get(segment);
+			if (buf == null) {
+				buf = channel.map(MapMode.READ_ONLY, segmentStart, Math.min(SEGMENT_SIZE, length - segmentStart));
+				segments.put(segment, buf);
+			}
+			final ByteBuffer ret = buf.duplicate();
+			ret.position((int) (offset - segmentStart));
+			ret.limit((int) (offset - segmentStart) + len);
+			return ret.slice();
+		}
+
+		@Override
+		public void close() throws IOException {
+			segments.clear();
+			raf.close();
+		}
+	}
+}
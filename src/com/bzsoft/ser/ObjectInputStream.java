@@ -1,25 +1,47 @@
 package com.bzsoft.ser;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ObjectInputStream extends InputStream implements ObjectInput {
 
 	private final Serializer<Object>		serializer;
-	private final DataInputStream			din;
+	private final DataInput					din;
+	private final BufferedDataInput		buffer;
 	private final ReferenceSet<Object>	rset;
 
 	public ObjectInputStream(final InputStream is) {
-		serializer = new BeanSerializer();
-		din = new DataInputStream(is);
-		rset = new ReferenceSet<Object>();
+		this(is, new BeanSerializer());
 	}
 
-	protected ObjectInputStream(final DataInputStream is, final Serializer<Object> ser, final ReferenceSet<Object> rfset) {
+	/**
+	 * Stream reading with the given serializer, which must read what the
+	 * writing serializer wrote.
+	 */
+	public ObjectInputStream(final InputStream is, final Serializer<Object> ser) {
+		serializer = ser;
+		buffer = new BufferedDataInput(is);
+		din = buffer;
+		rset = ser.newReferenceSet();
+	}
+
+	/**
+	 * Stream reading from the input of an enclosing stream, used for
+	 * Externalizable and readObject classes. Closing it does not touch the
+	 * shared input.
+	 */
+	protected ObjectInputStream(final DataInput is, final Serializer<Object> ser, final ReferenceSet<Object> rfset) {
 		rset = rfset;
 		serializer = ser;
+		buffer = null;
 		din = is;
 	}
 
@@ -151,12 +173,65 @@ public class ObjectInputStream extends InputStream implements ObjectInput {
 		return serializer.deserializeObject(din, rset);
 	}
 
+	/**
+	 * Moves past the next object without building it, see
+	 * {@link BaseSerializer#skip(DataInput, ReferenceSet)}. Objects read after
+	 * it must not refer to it.
+	 */
+	public void skipObject() throws ClassNotFoundException, IOException {
+		if (serializer instanceof BaseSerializer) {
+			((BaseSerializer) serializer).skip(din, rset);
+		} else {
+			readObject();
+		}
+	}
+
+	/**
+	 * Reads the next object, a collection, an array or a map, element by
+	 * element as the iterator is consumed, so containers bigger than the heap
+	 * can be processed. Map elements are Map.Entry instances. ArrayList,
+	 * Object[] and HashMap bodies, including the ones of unknown size, are
+	 * streamed, other containers are read whole. Elements are still kept for
+	 * back references unless the tracking policy leaves them out.
+	 * <p>
+	 * The iterator must be consumed before anything else is read from this
+	 * stream. It throws UncheckedIOException if an element can not be read.
+	 */
+	public Iterator<Object> readElements() throws IOException, ClassNotFoundException {
+		return openElements();
+	}
+
+	/**
+	 * Same as {@link #readElements()}, as a sequential Stream.
+	 */
+	public Stream<Object> readElementStream() throws IOException, ClassNotFoundException {
+		final ElementIterator it = openElements();
+		if (it.size() == ElementIterator.UNSIZED) {
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false);
+		}
+		return StreamSupport.stream(Spliterators.spliterator(it, it.size(), Spliterator.ORDERED), false);
+	}
+
+	private ElementIterator openElements() throws IOException, ClassNotFoundException {
+		if (serializer instanceof BaseSerializer) {
+			return ElementIterator.open((BaseSerializer) serializer, din, rset);
+		}
+		return ElementIterator.of(readObject());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public int read() throws IOException {
-		return din.read();
+		if (buffer != null) {
+			return buffer.read();
+		}
+		try {
+			return din.readUnsignedByte();
+		} catch (final EOFException e) {
+			return -1;
+		}
 	}
 
 	/**
@@ -164,6 +239,8 @@ public class ObjectInputStream extends InputStream implements ObjectInput {
 	 */
 	@Override
 	public void close() throws IOException {
-		din.close();
+		if (buffer != null) {
+			buffer.close();
+		}
 	}
 }
@@ -1,25 +1,44 @@
 package com.bzsoft.ser;
 
-import java.io.DataOutputStream;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectOutput;
 import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class ObjectOutputStream extends OutputStream implements ObjectOutput {
 
 	private final Serializer<Object>		serializer;
-	private final DataOutputStream		dout;
+	private final DataOutput				dout;
+	private final BufferedDataOutput		buffer;
 	private final ReferenceSet<Object>	rset;
 
 	public ObjectOutputStream(final OutputStream os) {
-		rset = new ReferenceSet<Object>();
-		serializer = new BeanSerializer();
-		dout = new DataOutputStream(os);
+		this(os, new BeanSerializer());
 	}
 
-	protected ObjectOutputStream(final DataOutputStream os, final Serializer<Object> ser, final ReferenceSet<Object> rfset) {
+	/**
+	 * Stream writing with the given serializer, for instance a
+	 * {@link BeanSerializer} in compact mode.
+	 */
+	public ObjectOutputStream(final OutputStream os, final Serializer<Object> ser) {
+		rset = ser.newReferenceSet();
+		serializer = ser;
+		buffer = new BufferedDataOutput(os);
+		dout = buffer;
+	}
+
+	/**
+	 * Stream writing into the output of an enclosing stream, used for
+	 * Externalizable and writeObject classes. Flushing and closing it does not
+	 * touch the shared output.
+	 */
+	protected ObjectOutputStream(final DataOutput os, final Serializer<Object> ser, final ReferenceSet<Object> rfset) {
 		rset = rfset;
 		serializer = ser;
+		buffer = null;
 		dout = os;
 	}
 
@@ -119,6 +138,69 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput {
 		serializer.serializeObject(dout, o, rset);
 	}
 
+	/**
+	 * Starts a list of unknown size, read back as an ArrayList. Its elements
+	 * are the objects written next, up to {@link #writeEnd()}. Lists and maps
+	 * can be nested.
+	 */
+	public void writeListStart() throws IOException {
+		base().serializeOpen(dout, false, rset);
+	}
+
+	/**
+	 * Starts a map of unknown size, read back as a HashMap. Its entries are
+	 * the objects written next, key and value, up to {@link #writeEnd()}.
+	 */
+	public void writeMapStart() throws IOException {
+		base().serializeOpen(dout, true, rset);
+	}
+
+	/**
+	 * Ends the innermost list or map started.
+	 */
+	public void writeEnd() throws IOException {
+		base().serializeEnd(dout);
+	}
+
+	/**
+	 * Writes the elements as a list, consuming the iterator, without knowing
+	 * their number in advance.
+	 */
+	public void writeElements(final Iterator<?> elements) throws IOException {
+		writeListStart();
+		while (elements.hasNext()) {
+			writeObject(elements.next());
+		}
+		writeEnd();
+	}
+
+	/**
+	 * Writes the elements of a sequential stream as a list.
+	 */
+	public void writeElements(final Stream<?> elements) throws IOException {
+		writeElements(elements.iterator());
+	}
+
+	/**
+	 * Writes the entries as a map, consuming the iterator.
+	 */
+	public void writeEntries(final Iterator<? extends Map.Entry<?, ?>> entries) throws IOException {
+		writeMapStart();
+		while (entries.hasNext()) {
+			final Map.Entry<?, ?> entry = entries.next();
+			writeObject(entry.getKey());
+			writeObject(entry.getValue());
+		}
+		writeEnd();
+	}
+
+	private BaseSerializer base() {
+		if (!(serializer instanceof BaseSerializer)) {
+			throw new UnsupportedOperationException("Lists and maps of unknown size need a BaseSerializer");
+		}
+		return (BaseSerializer) serializer;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -132,7 +214,9 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput {
 	 */
 	@Override
 	public void close() throws IOException {
-		dout.close();
+		if (buffer != null) {
+			buffer.close();
+		}
 	}
 
 	/**
@@ -140,7 +224,9 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput {
 	 */
 	@Override
 	public void flush() throws IOException {
-		dout.flush();
+		if (buffer != null) {
+			buffer.flush();
+		}
 	}
 
 	public void reset() throws IOException {
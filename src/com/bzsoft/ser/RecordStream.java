@@ -0,0 +1,282 @@
+package com.bzsoft.ser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Stream of independent records: every record is a 4 byte length followed by
+ * a self contained message, with an empty reference set and no classes
+ * carried over from the records before it. The data file of a
+ * {@link MappedRecordFile} has the same layout.
+ * <p>
+ * Since records do not depend on each other, the {@link Reader} decodes them
+ * on the workers of an executor, for instance a pool of platform threads or
+ * one virtual thread per task, and hands them out in stream order or as soon
+ * as they are ready.
+ */
+public final class RecordStream {
+
+	/** records decoded by a single task at most */
+	private static final int	BATCH_RECORDS	= 1024;
+	/** bytes of records decoded by a single task, unless a record is bigger */
+	private static final int	BATCH_BYTES		= 64 * 1024;
+	/** batches being decoded ahead of the one being read */
+	private static final int	MAX_PENDING		= 2 * Runtime.getRuntime().availableProcessors();
+
+	private RecordStream() {
+		// util class
+	}
+
+	public static Writer writer(final OutputStream os) {
+		return new Writer(os, new BeanSerializer());
+	}
+
+	public static Writer writer(final OutputStream os, final BaseSerializer serializer) {
+		return new Writer(os, serializer);
+	}
+
+	public static Reader reader(final InputStream is, final ExecutorService executor, final boolean ordered) {
+		return new Reader(is, BeanSerializer::new, executor, ordered);
+	}
+
+	/**
+	 * @param serializers
+	 *           new serializer for every task, of the same kind as the writing
+	 *           one
+	 * @param executor
+	 *           runs the decoders, it is not shut down by the reader
+	 * @param ordered
+	 *           if true records are returned in stream order, otherwise in the
+	 *           order their batches are decoded
+	 */
+	public static Reader reader(final InputStream is, final Supplier<? extends BaseSerializer> serializers, final ExecutorService executor,
+			final boolean ordered) {
+		return new Reader(is, serializers, executor, ordered);
+	}
+
+	/**
+	 * Writes records to a stream. Not thread safe.
+	 */
+	public static final class Writer implements Closeable {
+
+		private final BaseSerializer		serializer;
+		private final BufferedDataOutput	out;
+		private final BufferedDataOutput	record;
+		private long							count;
+
+		private Writer(final OutputStream os, final BaseSerializer serializer) {
+			this.serializer = serializer;
+			out = new BufferedDataOutput(os);
+			record = new BufferedDataOutput(null);
+			count = 0;
+		}
+
+		/**
+		 * Writes an object as a new record.
+		 *
+		 * @param obj
+		 *           the object
+		 * @throws IOException
+		 *            Signals that an I/O exception has occurred.
+		 */
+		public void write(final Object obj) throws IOException {
+			record.clear();
+			serializer.clearClassRegistry();
+			serializer.serialize(record, obj, serializer.newReferenceSet());
+			out.writeInt(record.size());
+			record.writeTo(out);
+			count++;
+		}
+
+		/**
+		 * Number of records written.
+		 */
+		public long size() {
+			return count;
+		}
+
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads records, decoding them in batches on the executor while the
+	 * caller consumes the ones already decoded. The stream itself is read by
+	 * the calling thread. Not thread safe.
+	 */
+	public static final class Reader implements Closeable {
+
+		private final Supplier<? extends BaseSerializer>	serializers;
+		private final BufferedDataInput							in;
+		private final ExecutorService								executor;
+		/** pending batches in stream order, also kept when unordered to cancel them */
+		private final ArrayDeque<Future<Object[]>>			pending;
+		/** pending batches in completion order, if unordered */
+		private final CompletionService<Object[]>				completion;
+		private boolean												eof;
+		/** length of a record read but not yet in a batch, -1 if none */
+		private int														nextLength;
+		private Object[]												batch;
+		private int														index;
+
+		private Reader(final InputStream is, final Supplier<? extends BaseSerializer> serializers, final ExecutorService executor,
+				final boolean ordered) {
+			this.serializers = serializers;
+			this.executor = executor;
+			in = new BufferedDataInput(is);
+			pending = new ArrayDeque<Future<Object[]>>();
+			completion = ordered ? null : new ExecutorCompletionService<Object[]>(executor);
+			eof = false;
+			nextLength = -1;
+			batch = new Object[0];
+			index = 0;
+		}
+
+		/**
+		 * Whether there are more records, waits for the next batch if needed.
+		 */
+		public boolean hasNext() throws IOException, ClassNotFoundException {
+			while (index == batch.length) {
+				while (!eof && pending.size() < MAX_PENDING) {
+					submitBatch();
+				}
+				if (pending.isEmpty()) {
+					return false;
+				}
+				batch = ChunkedSerializer.await(take());
+				index = 0;
+			}
+			return true;
+		}
+
+		/**
+		 * The next record.
+		 *
+		 * @throws NoSuchElementException
+		 *            if there are no more records
+		 */
+		public Object next() throws IOException, ClassNotFoundException {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final Object ret = batch[index];
+			batch[index++] = null;
+			return ret;
+		}
+
+		private Future<Object[]> take() throws IOException {
+			if (completion == null) {
+				return pending.remove();
+			}
+			try {
+				final Future<Object[]> f = completion.take();
+				pending.remove(f);
+				return f;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+
+		/**
+		 * Reads the frames of the next records into one array and submits their
+		 * decoding.
+		 */
+		private void submitBatch() throws IOException {
+			byte[] bytes = new byte[BATCH_BYTES];
+			final int[] offsets = new int[BATCH_RECORDS + 1];
+			int n = 0;
+			int size = 0;
+			while (n < BATCH_RECORDS) {
+				final int len = readLength();
+				if (len < 0) {
+					eof = true;
+					break;
+				}
+				if (size + len > bytes.length) {
+					if (n > 0) {
+						// left for the next batch
+						nextLength = len;
+						break;
+					}
+					bytes = new byte[len];
+				}
+				in.readFully(bytes, size, len);
+				size += len;
+				offsets[++n] = size;
+			}
+			if (n == 0) {
+				return;
+			}
+			final byte[] data = bytes;
+			final int count = n;
+			final Callable<Object[]> task = new Callable<Object[]>() {
+
+				@Override
+				public Object[] call() throws IOException, ClassNotFoundException {
+					return decode(data, offsets, count, serializers.get());
+				}
+			};
+			pending.add(completion == null ? executor.submit(task) : completion.submit(task));
+		}
+
+		/**
+		 * Length of the next record, -1 at the end of the stream.
+		 */
+		private int readLength() throws IOException {
+			if (nextLength >= 0) {
+				final int len = nextLength;
+				nextLength = -1;
+				return len;
+			}
+			final int b0 = in.read();
+			if (b0 < 0) {
+				return -1;
+			}
+			final int len = b0 << 24 | in.readUnsignedByte() << 16 | in.readUnsignedShort();
+			if (len < 0) {
+				throw new StreamCorruptedException("Bad record length " + len);
+			}
+			return len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (final Future<Object[]> f : pending) {
+				f.cancel(true);
+			}
+			pending.clear();
+			eof = true;
+			in.close();
+		}
+	}
+
+	private static Object[] decode(final byte[] data, final int[] offsets, final int count, final BaseSerializer ser) throws IOException,
+			ClassNotFoundException {
+		final Object[] ret = new Object[count];
+		for (int i = 0; i < count; i++) {
+			final BufferedDataInput in = new BufferedDataInput(data, offsets[i], offsets[i + 1] - offsets[i]);
+			ser.clearClassRegistry();
+			ret[i] = ser.deserialize(in, ser.newReferenceSet());
+		}
+		return ret;
+	}
+}
@@ -1,24 +1,99 @@
 package com.bzsoft.ser;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Arrays;
-import java.util.IdentityHashMap;
-import java.util.Map;
+import java.util.Date;
+import java.util.UUID;
 
+/**
+ * Objects in the order they were added, with identity lookup of their index.
+ * <p>
+ * The lookup is an open addressing table of identity hashed keys and int
+ * indexes with linear probing, so nothing is boxed. Entries are hashed on the
+ * first {@link #indexOf(Object)} after they were added, readers that only add
+ * and get by index never touch the table. {@link #clear()} keeps the arrays.
+ * <p>
+ * Objects left out by the {@link TrackingPolicy} are neither added nor found,
+ * the same way on the writing and on the reading side.
+ * <p>
+ * It also carries the {@link StringDictionary} of the stream, if any, which
+ * is cleared along with it.
+ */
 final class ReferenceSet<K> {
 
-	private final Map<K, Integer>	set;
-	private K[]							data;
-	private int							size;
+	private static final int	INITIAL_TABLE_SIZE	= 64;
+
+	/** takes the place of the objects skipped by a reader */
+	protected static final Object	SKIPPED	= new Object();
+
+	private final boolean				tree;
+	private final boolean				values;
+	private final StringDictionary	strings;
+	private K[]								data;
+	private int								size;
+	/** identity hashed keys, null for free slots */
+	private Object[]						keys;
+	/** index in data of the key in the same slot */
+	private int[]							indexes;
+	/** entries of data already in the table */
+	private int								hashed;
 
-	@SuppressWarnings("unchecked")
 	protected ReferenceSet() {
-		set = new IdentityHashMap<K, Integer>();
+		this(TrackingPolicy.FULL, 0);
+	}
+
+	/**
+	 * @param stringDictionarySize
+	 *           slots of the string dictionary, 0 for none
+	 */
+	@SuppressWarnings("unchecked")
+	protected ReferenceSet(final TrackingPolicy policy, final int stringDictionarySize) {
+		tree = policy == TrackingPolicy.TREE;
+		values = policy == TrackingPolicy.VALUE;
+		strings = stringDictionarySize > 0 ? new StringDictionary(stringDictionarySize) : null;
 		data = (K[]) new Object[32];
 		size = 0;
+		keys = new Object[INITIAL_TABLE_SIZE];
+		indexes = new int[INITIAL_TABLE_SIZE];
+		hashed = 0;
+	}
+
+	/**
+	 * Immutable values not tracked by the VALUE policy. Exact classes, so the
+	 * reader sees the same classes as the writer.
+	 */
+	private static boolean isValue(final Object o) {
+		final Class<?> c = o.getClass();
+		return c == String.class || c == Integer.class || c == Long.class || c == Boolean.class || c == Double.class || c == Float.class
+				|| c == Short.class || c == Byte.class || c == Character.class || c == BigInteger.class || c == BigDecimal.class
+				|| c == Date.class || c == UUID.class || c == Class.class;
 	}
 
 	protected void add(final K o) {
-		set.put(o, size);
+		if (tree || values && isValue(o)) {
+			return;
+		}
+		append(o);
+	}
+
+	/**
+	 * Keeps the index of an object that was skipped instead of read, so the
+	 * objects after it get the same indexes as when reading. It can not be
+	 * referred to.
+	 *
+	 * @param value
+	 *           whether the object would have been a value of the VALUE policy
+	 */
+	@SuppressWarnings("unchecked")
+	protected void addSkipped(final boolean value) {
+		if (tree || values && value) {
+			return;
+		}
+		append((K) SKIPPED);
+	}
+
+	private void append(final K o) {
 		if (data.length == size) {
 			data = Arrays.copyOf(data, data.length * 2);
 		}
@@ -27,11 +102,62 @@ final class ReferenceSet<K> {
 	}
 
 	protected int indexOf(final K obj) {
-		final Integer index = set.get(obj);
-		if (index == null) {
+		if (tree || values && isValue(obj)) {
 			return -1;
 		}
-		return index;
+		if (hashed < size) {
+			hashPending();
+		}
+		final Object[] k = keys;
+		final int mask = k.length - 1;
+		int slot = hash(obj) & mask;
+		while (true) {
+			final Object key = k[slot];
+			if (key == obj) {
+				return indexes[slot];
+			}
+			if (key == null) {
+				return -1;
+			}
+			slot = slot + 1 & mask;
+		}
+	}
+
+	private void hashPending() {
+		if ((size << 1) > keys.length) {
+			int newSize = keys.length << 1;
+			while ((size << 1) > newSize) {
+				newSize <<= 1;
+			}
+			// reinsert in add order, clear() relies on it
+			keys = new Object[newSize];
+			indexes = new int[newSize];
+			hashed = 0;
+		}
+		while (hashed < size) {
+			put(data[hashed], hashed);
+			hashed++;
+		}
+	}
+
+	private void put(final Object obj, final int index) {
+		final Object[] k = keys;
+		final int mask = k.length - 1;
+		int slot = hash(obj) & mask;
+		while (k[slot] != null) {
+			if (k[slot] == obj) {
+				// added twice, keep the first index
+				return;
+			}
+			slot = slot + 1 & mask;
+		}
+		k[slot] = obj;
+		indexes[slot] = index;
+	}
+
+	private static int hash(final Object obj) {
+		final int h = System.identityHashCode(obj) * 0x9E3779B9;
+		return h ^ h >>> 16;
 	}
 
 	protected K elementOf(final int index) {
@@ -43,17 +169,42 @@ final class ReferenceSet<K> {
 		return size;
 	}
 
+	/**
+	 * The string dictionary of the stream, null if disabled.
+	 */
+	protected StringDictionary getStrings() {
+		return strings;
+	}
+
 	protected void clear() {
-		set.clear();
-		for (int i = 0; i < size; i++) {
-			data[i] = null;
+		if (hashed < keys.length >>> 3) {
+			// few entries in a big table, remove them newest first so the
+			// probe chains of the older ones stay intact
+			final Object[] k = keys;
+			final int mask = k.length - 1;
+			for (int i = hashed - 1; i >= 0; i--) {
+				int slot = hash(data[i]) & mask;
+				while (k[slot] != data[i]) {
+					slot = slot + 1 & mask;
+				}
+				if (indexes[slot] == i) {
+					k[slot] = null;
+				}
+			}
+		} else {
+			Arrays.fill(keys, null);
 		}
+		hashed = 0;
+		Arrays.fill(data, 0, size, null);
 		size = 0;
+		if (strings != null) {
+			strings.clear();
+		}
 	}
 
 	@Override
 	public String toString() {
-		return "ReferenceSet [size=" + set.size() + ", " + Arrays.toString(data) + "]";
+		return "ReferenceSet [size=" + size + ", " + Arrays.toString(data) + "]";
 	}
 
 }
@@ -48,4 +48,6 @@ public interface Serializer<A> {
 
 	public void reset(DataOutput in, ReferenceSet<A> rset) throws IOException;
 
+	public ReferenceSet<A> newReferenceSet();
+
 }
@@ -0,0 +1,299 @@
+package com.bzsoft.ser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Encodings of int[] and long[] arrays for sorted or clustered values, used
+ * by the serializer when they are smaller than the fixed width ones.
+ * <p>
+ * Delta: every value as the packed zigzag difference with the previous one,
+ * the first one with 0. Frame of reference: blocks of {@link #BLOCK_SIZE}
+ * values, each one with the packed zigzag difference of its minimum with the
+ * one of the previous block, the bit width of the biggest offset from it and
+ * the offsets of all the values bit-packed, least significant bits first.
+ */
+final class SortedArrays {
+
+	static final int				BLOCK_SIZE	= 128;
+	/** shorter arrays keep the fixed width encodings */
+	static final int				MIN_LENGTH	= 16;
+
+	/** size of a packed value that can not be written, so the sum never wins */
+	private static final long	TOO_BIG		= Integer.MAX_VALUE;
+
+	private SortedArrays() {
+		// util class
+	}
+
+	private static long zigzag(final long v) {
+		return v << 1 ^ v >> 63;
+	}
+
+	private static long unzigzag(final long v) {
+		return v >>> 1 ^ -(v & 1);
+	}
+
+	/**
+	 * Bytes of {@link Utils#packLong(DataOutput, long)}, {@link #TOO_BIG} for
+	 * negative values.
+	 */
+	private static long packedSize(final long v) {
+		return v < 0 ? TOO_BIG : 1 + (63 - Long.numberOfLeadingZeros(v | 1)) / 7;
+	}
+
+	/**
+	 * Bytes of the delta encoding, of the frame of reference encoding and of
+	 * the packed values, without header and length.
+	 */
+	static long[] sizes(final long[] a) {
+		long delta = 0;
+		long frames = 0;
+		long packed = 0;
+		long prev = 0;
+		long prevMin = 0;
+		for (int from = 0; from < a.length; from += BLOCK_SIZE) {
+			final int to = Math.min(a.length, from + BLOCK_SIZE);
+			long min = a[from];
+			long max = a[from];
+			for (int i = from; i < to; i++) {
+				final long v = a[i];
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+				delta += packedSize(zigzag(v - prev));
+				packed += packedSize(v);
+				prev = v;
+			}
+			frames += packedSize(zigzag(min - prevMin)) + 1 + ((long) (to - from) * bits(max - min) + 7 >>> 3);
+			prevMin = min;
+		}
+		return new long[] { delta, frames, packed };
+	}
+
+	/**
+	 * Same as {@link #sizes(long[])}. Deltas and minimums are taken as longs,
+	 * so every int array can be written.
+	 */
+	static long[] sizes(final int[] a) {
+		long delta = 0;
+		long frames = 0;
+		long packed = 0;
+		long prev = 0;
+		long prevMin = 0;
+		for (int from = 0; from < a.length; from += BLOCK_SIZE) {
+			final int to = Math.min(a.length, from + BLOCK_SIZE);
+			int min = a[from];
+			int max = a[from];
+			for (int i = from; i < to; i++) {
+				final int v = a[i];
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+				delta += packedSize(zigzag(v - prev));
+				packed += packedSize(v);
+				prev = v;
+			}
+			frames += packedSize(zigzag(min - prevMin)) + 1 + ((long) (to - from) * bits(max - min & 0xFFFFFFFFL) + 7 >>> 3);
+			prevMin = min;
+		}
+		return new long[] { delta, frames, packed };
+	}
+
+	/**
+	 * Bits of an unsigned offset.
+	 */
+	private static int bits(final long offset) {
+		return 64 - Long.numberOfLeadingZeros(offset);
+	}
+
+	static void writeDelta(final DataOutput out, final long[] a) throws IOException {
+		long prev = 0;
+		for (final long v : a) {
+			Utils.packLong(out, zigzag(v - prev));
+			prev = v;
+		}
+	}
+
+	static void writeDelta(final DataOutput out, final int[] a) throws IOException {
+		long prev = 0;
+		for (final int v : a) {
+			Utils.packLong(out, zigzag(v - prev));
+			prev = v;
+		}
+	}
+
+	static void readDelta(final DataInput in, final long[] a) throws IOException {
+		long prev = 0;
+		for (int i = 0; i < a.length; i++) {
+			prev += unzigzag(Utils.unpackLong(in));
+			a[i] = prev;
+		}
+	}
+
+	static void readDelta(final DataInput in, final int[] a) throws IOException {
+		int prev = 0;
+		for (int i = 0; i < a.length; i++) {
+			prev += (int) unzigzag(Utils.unpackLong(in));
+			a[i] = prev;
+		}
+	}
+
+	static void writeFrames(final DataOutput out, final long[] a) throws IOException {
+		final long[] offsets = new long[Math.min(a.length, BLOCK_SIZE)];
+		final byte[] bytes = new byte[offsets.length * 8];
+		long prevMin = 0;
+		for (int from = 0; from < a.length; from += BLOCK_SIZE) {
+			final int n = Math.min(a.length - from, BLOCK_SIZE);
+			long min = a[from];
+			long max = a[from];
+			for (int i = from; i < from + n; i++) {
+				min = Math.min(min, a[i]);
+				max = Math.max(max, a[i]);
+			}
+			for (int i = 0; i < n; i++) {
+				offsets[i] = a[from + i] - min;
+			}
+			final int bits = bits(max - min);
+			Utils.packLong(out, zigzag(min - prevMin));
+			out.writeByte(bits);
+			out.write(bytes, 0, pack(offsets, n, bits, bytes));
+			prevMin = min;
+		}
+	}
+
+	static void writeFrames(final DataOutput out, final int[] a) throws IOException {
+		final long[] offsets = new long[Math.min(a.length, BLOCK_SIZE)];
+		final byte[] bytes = new byte[offsets.length * 4];
+		long prevMin = 0;
+		for (int from = 0; from < a.length; from += BLOCK_SIZE) {
+			final int n = Math.min(a.length - from, BLOCK_SIZE);
+			int min = a[from];
+			int max = a[from];
+			for (int i = from; i < from + n; i++) {
+				min = Math.min(min, a[i]);
+				max = Math.max(max, a[i]);
+			}
+			for (int i = 0; i < n; i++) {
+				offsets[i] = a[from + i] - min & 0xFFFFFFFFL;
+			}
+			final int bits = bits(max - min & 0xFFFFFFFFL);
+			Utils.packLong(out, zigzag(min - prevMin));
+			out.writeByte(bits);
+			out.write(bytes, 0, pack(offsets, n, bits, bytes));
+			prevMin = min;
+		}
+	}
+
+	static void readFrames(final DataInput in, final long[] a) throws IOException {
+		final long[] offsets = new long[Math.min(a.length, BLOCK_SIZE)];
+		final byte[] bytes = new byte[offsets.length * 8];
+		long min = 0;
+		for (int from = 0; from < a.length; from += BLOCK_SIZE) {
+			final int n = Math.min(a.length - from, BLOCK_SIZE);
+			min += unzigzag(Utils.unpackLong(in));
+			final int bits = readBits(in, 64);
+			final int len = n * bits + 7 >>> 3;
+			in.readFully(bytes, 0, len);
+			unpack(bytes, len, offsets, n, bits);
+			for (int i = 0; i < n; i++) {
+				a[from + i] = min + offsets[i];
+			}
+		}
+	}
+
+	static void readFrames(final DataInput in, final int[] a) throws IOException {
+		final long[] offsets = new long[Math.min(a.length, BLOCK_SIZE)];
+		final byte[] bytes = new byte[offsets.length * 4];
+		int min = 0;
+		for (int from = 0; from < a.length; from += BLOCK_SIZE) {
+			final int n = Math.min(a.length - from, BLOCK_SIZE);
+			min += (int) unzigzag(Utils.unpackLong(in));
+			final int bits = readBits(in, 32);
+			final int len = n * bits + 7 >>> 3;
+			in.readFully(bytes, 0, len);
+			unpack(bytes, len, offsets, n, bits);
+			for (int i = 0; i < n; i++) {
+				a[from + i] = min + (int) offsets[i];
+			}
+		}
+	}
+
+	/**
+	 * Moves past the frames of <code>length</code> values without unpacking
+	 * them.
+	 *
+	 * @param maxBits
+	 *           32 for int arrays, 64 for long arrays
+	 */
+	static void skipFrames(final DataInput in, final int length, final int maxBits) throws IOException {
+		for (int from = 0; from < length; from += BLOCK_SIZE) {
+			final int n = Math.min(length - from, BLOCK_SIZE);
+			Utils.unpackLong(in);
+			BaseSerializer.skipFully(in, n * readBits(in, maxBits) + 7 >>> 3);
+		}
+	}
+
+	private static int readBits(final DataInput in, final int max) throws IOException {
+		final int bits = in.readUnsignedByte();
+		if (bits > max) {
+			throw new StreamCorruptedException("Invalid bit width " + bits);
+		}
+		return bits;
+	}
+
+	/**
+	 * Packs the low <code>bits</code> bits of <code>n</code> values into dst.
+	 *
+	 * @return bytes used
+	 */
+	private static int pack(final long[] values, final int n, final int bits, final byte[] dst) {
+		long acc = 0;
+		int accBits = 0;
+		int p = 0;
+		for (int i = 0; i < n; i++) {
+			final long v = values[i];
+			acc |= v << accBits;
+			accBits += bits;
+			if (accBits >= 64) {
+				p = put(dst, p, acc, 8);
+				accBits -= 64;
+				// bits of v that did not fit
+				acc = accBits == 0 ? 0 : v >>> bits - accBits;
+			}
+		}
+		return put(dst, p, acc, accBits + 7 >>> 3);
+	}
+
+	private static int put(final byte[] dst, int p, long word, final int len) {
+		for (int i = 0; i < len; i++) {
+			dst[p++] = (byte) word;
+			word >>>= 8;
+		}
+		return p;
+	}
+
+	private static void unpack(final byte[] src, final int len, final long[] values, final int n, final int bits) {
+		final long mask = bits == 64 ? -1L : (1L << bits) - 1;
+		long acc = 0;
+		int accBits = 0;
+		int p = 0;
+		for (int i = 0; i < n; i++) {
+			if (accBits >= bits) {
+				values[i] = acc & mask;
+				acc = bits == 64 ? 0 : acc >>> bits;
+				accBits -= bits;
+			} else {
+				final int k = Math.min(8, len - p);
+				long word = 0;
+				for (int j = 0; j < k; j++) {
+					word |= (src[p++] & 0xFFL) << 8 * j;
+				}
+				values[i] = (acc | word << accBits) & mask;
+				final int used = bits - accBits;
+				acc = used == 64 ? 0 : word >>> used;
+				accBits += 8 * k - bits;
+			}
+		}
+	}
+}
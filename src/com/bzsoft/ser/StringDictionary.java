@@ -0,0 +1,110 @@
+package com.bzsoft.ser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded dictionary of strings seen on a stream, compared by value. A string
+ * found in it is written as its slot number.
+ * <p>
+ * Slots are reused with clock eviction: a slot hit since the hand last passed
+ * gets a second chance. The writer and the reader run the same sequence of
+ * {@link #add(String)} and hits, so both sides always hold the same strings in
+ * the same slots. Only the writer needs the value index, it is built on the
+ * first {@link #indexOf(String)}.
+ */
+final class StringDictionary {
+
+	/** longer strings are not worth keeping */
+	static final int					MAX_LENGTH	= 256;
+
+	private final String[]			entries;
+	private final boolean[]			used;
+	private Map<String, Integer>	index;
+	private int							size;
+	private int							hand;
+
+	StringDictionary(final int capacity) {
+		entries = new String[capacity];
+		used = new boolean[capacity];
+		size = 0;
+		hand = 0;
+	}
+
+	/**
+	 * Strings kept in the dictionary, the short ones are cheaper to write
+	 * again than to reference.
+	 */
+	static boolean accepts(final String s) {
+		final int len = s.length();
+		return len >= 2 && len <= MAX_LENGTH;
+	}
+
+	/**
+	 * Slot holding an equal string, marking it as used, or -1.
+	 */
+	int indexOf(final String s) {
+		if (index == null) {
+			index = new HashMap<String, Integer>(entries.length * 2);
+			for (int i = 0; i < size; i++) {
+				index.put(entries[i], i);
+			}
+		}
+		final Integer slot = index.get(s);
+		if (slot == null) {
+			return -1;
+		}
+		used[slot] = true;
+		return slot;
+	}
+
+	/**
+	 * String in a slot, marking it as used.
+	 */
+	String get(final int slot) {
+		if (slot < 0 || slot >= size) {
+			return null;
+		}
+		used[slot] = true;
+		return entries[slot];
+	}
+
+	/**
+	 * Stores a string, evicting another one when full.
+	 *
+	 * @return the slot
+	 */
+	int add(final String s) {
+		final int slot;
+		if (size < entries.length) {
+			slot = size++;
+		} else {
+			while (used[hand]) {
+				used[hand] = false;
+				hand = hand + 1 == entries.length ? 0 : hand + 1;
+			}
+			slot = hand;
+			hand = hand + 1 == entries.length ? 0 : hand + 1;
+			if (index != null) {
+				index.remove(entries[slot]);
+			}
+		}
+		entries[slot] = s;
+		used[slot] = false;
+		if (index != null) {
+			index.put(s, slot);
+		}
+		return slot;
+	}
+
+	void clear() {
+		Arrays.fill(entries, 0, size, null);
+		Arrays.fill(used, false);
+		if (index != null) {
+			index.clear();
+		}
+		size = 0;
+		hand = 0;
+	}
+}
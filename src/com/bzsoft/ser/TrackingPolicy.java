@@ -0,0 +1,26 @@
+package com.bzsoft.ser;
+
+/**
+ * Which objects are remembered so that later occurrences are written as back
+ * references. The writer and the reader must use the same policy.
+ */
+public enum TrackingPolicy {
+
+	/**
+	 * Every object is tracked. Shared objects and cycles are restored.
+	 */
+	FULL,
+
+	/**
+	 * Nothing is tracked. Shared objects are written once per occurrence and a
+	 * cycle never ends, only for object trees.
+	 */
+	TREE,
+
+	/**
+	 * Containers, arrays and beans are tracked. Immutable values (boxed
+	 * primitives, String, BigInteger, BigDecimal, Date, UUID and Class) are
+	 * written once per occurrence.
+	 */
+	VALUE
+}
@@ -30,8 +30,20 @@ public final class Utils {
 	 * @throws IOException
 	 *            Signals that an I/O exception has occurred.
 	 */
-	public static void packLong(final DataOutput out, long value) throws IOException {
+	public static void packLong(final DataOutput out, final long value) throws IOException {
 		assert value >= 0 : "negative value: " + value;
+		packUnsignedLong(out, value);
+	}
+
+	/**
+	 * Same as {@link #packLong(DataOutput, long)} for any value, taken as
+	 * unsigned, such as a zigzag encoded one. Negative values take 10 bytes.
+	 */
+	public static void packUnsignedLong(final DataOutput out, long value) throws IOException {
+		if (out instanceof BulkDataOutput) {
+			((BulkDataOutput) out).packLong(value);
+			return;
+		}
 		while ((value & ~0x7FL) != 0) {
 			out.write((int) value & 0x7F | 0x80);
 			value >>>= 7;
@@ -49,6 +61,9 @@ public final class Utils {
 	 *            Signals that an I/O exception has occurred.
 	 */
 	public static long unpackLong(final DataInput in) throws IOException {
+		if (in instanceof BulkDataInput) {
+			return ((BulkDataInput) in).unpackLong();
+		}
 		long result = 0;
 		for (int offset = 0; offset < 64; offset += 7) {
 			final long b = in.readUnsignedByte();
@@ -88,8 +103,20 @@ public final class Utils {
 	 *            Signals that an I/O exception has occurred.
 	 */
 
-	public static void packInt(final DataOutput in, int value) throws IOException {
+	public static void packInt(final DataOutput in, final int value) throws IOException {
 		assert value >= 0 : "negative value: " + value;
+		packUnsignedInt(in, value);
+	}
+
+	/**
+	 * Same as {@link #packInt(DataOutput, int)} for any value, taken as
+	 * unsigned, such as a zigzag encoded one. Negative values take 5 bytes.
+	 */
+	public static void packUnsignedInt(final DataOutput in, int value) throws IOException {
+		if (in instanceof BulkDataOutput) {
+			((BulkDataOutput) in).packInt(value);
+			return;
+		}
 		while ((value & ~0x7F) != 0) {
 			in.write(value & 0x7F | 0x80);
 			value >>>= 7;
@@ -107,6 +134,9 @@ public final class Utils {
 	 *            Signals that an I/O exception has occurred.
 	 */
 	public static int unpackInt(final DataInput is) throws IOException {
+		if (is instanceof BulkDataInput) {
+			return ((BulkDataInput) is).unpackInt();
+		}
 		for (int offset = 0, result = 0; offset < 32; offset += 7) {
 			final int b = is.readUnsignedByte();
 			result |= (b & 0x7F) << offset;
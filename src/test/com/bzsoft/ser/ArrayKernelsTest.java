@@ -0,0 +1,145 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ArrayKernelsTest {
+
+	/** around the vector lane counts, and around the stream buffers */
+	private static final int[]	LENGTHS	= { 0, 1, 2, 3, 4, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 1000,
+			BufferedDataInput.BUFFER_SIZE / 8 + 1, BufferedDataInput.BUFFER_SIZE / 4 + 1, BufferedDataInput.BUFFER_SIZE + 1 };
+
+	private static int[] ints(final int len, final int bound) {
+		final Random r = new Random(len);
+		final int[] a = new int[len];
+		for (int i = 0; i < len; i++) {
+			a[i] = bound == 0 ? r.nextInt() : r.nextInt(2 * bound) - bound;
+		}
+		return a;
+	}
+
+	private static long[] longs(final int len, final long bound) {
+		final Random r = new Random(len);
+		final long[] a = new long[len];
+		for (int i = 0; i < len; i++) {
+			a[i] = bound == 0 ? r.nextLong() : r.nextLong() % bound;
+		}
+		return a;
+	}
+
+	private static byte[] reference(final long[] a, final int width) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bos);
+		for (final long v : a) {
+			if (width == 1) {
+				out.writeByte((int) v);
+			} else if (width == 2) {
+				out.writeShort((int) v);
+			} else if (width == 4) {
+				out.writeInt((int) v);
+			} else {
+				out.writeLong(v);
+			}
+		}
+		return bos.toByteArray();
+	}
+
+	@Test
+	void scalarKernelsMatchDataOutputStream() throws IOException {
+		final ArrayKernels k = new ArrayKernels();
+		for (final int len : LENGTHS) {
+			for (final int width : new int[] { 1, 2 }) {
+				final int[] a = ints(len, width == 1 ? 128 : 32768);
+				final long[] wide = new long[len];
+				for (int i = 0; i < len; i++) {
+					wide[i] = a[i];
+				}
+				final byte[] b = new byte[len * width + 3];
+				k.narrow(a, 0, len, b, 3, width);
+				assertArrayEquals(reference(wide, width), Arrays.copyOfRange(b, 3, b.length));
+				final int[] back = new int[len];
+				k.widen(b, 3, back, 0, len, width);
+				assertArrayEquals(a, back);
+			}
+			for (final int width : new int[] { 1, 2, 4 }) {
+				final long[] a = longs(len, 1L << width * 8 - 1);
+				final byte[] b = new byte[len * width];
+				k.narrow(a, 0, len, b, 0, width);
+				assertArrayEquals(reference(a, width), b);
+				final long[] back = new long[len];
+				k.widen(b, 0, back, 0, len, width);
+				assertArrayEquals(a, back);
+			}
+			final long[] a = longs(len, 0);
+			final byte[] b = new byte[len * 8];
+			k.put(a, 0, len, b, 0);
+			assertArrayEquals(reference(a, 8), b);
+			final long[] back = new long[len];
+			k.get(b, 0, back, 0, len);
+			assertArrayEquals(a, back);
+		}
+	}
+
+	@Test
+	void selectedKernelsMatchScalar() {
+		final ArrayKernels scalar = new ArrayKernels();
+		for (final int len : LENGTHS) {
+			final int[] a = ints(len, 0);
+			assertEquals(scalar.range(a), ArrayKernels.INSTANCE.range(a));
+			final long[] l = longs(len, 0);
+			assertArrayEquals(scalar.range(l), ArrayKernels.INSTANCE.range(l));
+			final byte[] b1 = new byte[len * 4 + 1];
+			final byte[] b2 = new byte[len * 4 + 1];
+			scalar.put(a, 0, len, b1, 1);
+			ArrayKernels.INSTANCE.put(a, 0, len, b2, 1);
+			assertArrayEquals(b1, b2);
+		}
+	}
+
+	@Test
+	void range() {
+		final ArrayKernels k = new ArrayKernels();
+		assertEquals((long) Integer.MAX_VALUE << 32 | Integer.MIN_VALUE & 0xFFFFFFFFL, k.range(new int[0]));
+		assertEquals((long) -5 << 32 | 7, k.range(new int[] { 3, -5, 7, 0 }));
+		assertArrayEquals(new long[] { Long.MIN_VALUE, Long.MAX_VALUE }, k.range(new long[] { 0, Long.MAX_VALUE, Long.MIN_VALUE }));
+	}
+
+	/**
+	 * Arrays of every length and header width through a stream, a heap and a
+	 * direct buffer.
+	 */
+	@Test
+	void roundTrip() throws Exception {
+		final BeanSerializer serializer = new BeanSerializer();
+		for (final int len : LENGTHS) {
+			final Object[] arrays = { ints(len, 100), ints(len, 30000), ints(len, 0), longs(len, 100), longs(len, 30000),
+					longs(len, 1L << 31), longs(len, 0), new float[len], new double[len] };
+			final Random r = new Random(len);
+			for (int i = 0; i < len; i++) {
+				((float[]) arrays[7])[i] = r.nextFloat();
+				((double[]) arrays[8])[i] = r.nextGaussian();
+			}
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			final ObjectOutputStream out = new ObjectOutputStream(bos);
+			out.writeObject(arrays);
+			out.close();
+			final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+			assertArrayEquals(arrays, (Object[]) in.readObject());
+			for (final ByteBuffer buf : new ByteBuffer[] { ByteBuffer.allocate(bos.size() + 16), ByteBuffer.allocateDirect(bos.size() + 16) }) {
+				serializer.serialize(buf, arrays);
+				buf.flip();
+				assertArrayEquals(arrays, (Object[]) serializer.deserialize(buf));
+			}
+		}
+	}
+}
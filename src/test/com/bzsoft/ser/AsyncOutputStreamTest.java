@@ -0,0 +1,181 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AsyncOutputStreamTest {
+
+	@TempDir
+	File	dir;
+
+	private static byte[] data(final int len) {
+		final byte[] b = new byte[len];
+		for (int i = 0; i < len; i++) {
+			b[i] = (byte) (i * 31 + i / 7);
+		}
+		return b;
+	}
+
+	/**
+	 * Single bytes, small writes and writes bigger than a buffer.
+	 */
+	private static void writeMixed(final OutputStream out, final byte[] data) throws IOException {
+		int i = 0;
+		for (int step = 1; i < data.length; step = step * 3 % 101 + 1) {
+			final int n = Math.min(step, data.length - i);
+			if (n == 1) {
+				out.write(data[i]);
+			} else {
+				out.write(data, i, n);
+			}
+			i += n;
+		}
+	}
+
+	@Test
+	void sameBytesAsTheTarget() throws IOException {
+		for (final int bufferSize : new int[] { 1, 7, 64, 4096 }) {
+			final byte[] data = data(20000);
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			final AsyncOutputStream out = new AsyncOutputStream(bos, bufferSize, 2);
+			writeMixed(out, data);
+			out.close();
+			assertArrayEquals(data, bos.toByteArray());
+		}
+	}
+
+	@Test
+	void fileChannel() throws IOException {
+		final File file = new File(dir, "async.bin");
+		final byte[] data = data(100000);
+		final AsyncOutputStream out = new AsyncOutputStream(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE),
+				1000, 3);
+		writeMixed(out, data);
+		out.close();
+		assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	void flushWaitsForTheTarget() throws IOException {
+		final int[] flushes = new int[1];
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream() {
+
+			@Override
+			public void flush() {
+				flushes[0]++;
+			}
+		};
+		final AsyncOutputStream out = new AsyncOutputStream(bos, 1024, 4);
+		out.write(data(10), 0, 10);
+		assertEquals(0, bos.size());
+		out.flush();
+		assertEquals(10, bos.size());
+		assertEquals(1, flushes[0]);
+		out.flush();
+		assertEquals(10, bos.size());
+		out.close();
+		assertThrows(IOException.class, out::flush);
+		// a second close does nothing
+		out.close();
+	}
+
+	@Test
+	void serializedObjects() throws Exception {
+		final Object[] values = { "a string", new int[] { 1, 2, 3 }, Long.valueOf(42), null, data(3000) };
+		final ByteArrayOutputStream direct = new ByteArrayOutputStream();
+		final ObjectOutputStream plain = new ObjectOutputStream(direct);
+		final ByteArrayOutputStream async = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(new AsyncOutputStream(async, 100, 2));
+		for (final Object o : values) {
+			plain.writeObject(o);
+			out.writeObject(o);
+		}
+		plain.close();
+		out.close();
+		assertArrayEquals(direct.toByteArray(), async.toByteArray());
+	}
+
+	@Test
+	void writerFailureIsThrown() throws IOException {
+		final IOException failure = new IOException("disk full");
+		final OutputStream broken = new OutputStream() {
+
+			@Override
+			public void write(final int b) throws IOException {
+				throw failure;
+			}
+
+			@Override
+			public void write(final byte[] b, final int off, final int len) throws IOException {
+				throw failure;
+			}
+		};
+		final AsyncOutputStream out = new AsyncOutputStream(broken, 16, 2);
+		final IOException e = assertThrows(IOException.class, () -> {
+			// more than the ring holds, the caller must not wait forever
+			for (int i = 0; i < 1000; i++) {
+				out.write(data(16));
+			}
+			out.flush();
+		});
+		assertSame(failure, e.getCause());
+		assertThrows(IOException.class, out::close);
+	}
+
+	@Test
+	void callerWaitsForAFreeBuffer() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream() {
+
+			@Override
+			public synchronized void write(final byte[] b, final int off, final int len) {
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.write(b, off, len);
+			}
+		};
+		final AsyncOutputStream out = new AsyncOutputStream(bos, 8, 2);
+		final byte[] data = data(64);
+		final Thread caller = new Thread(() -> {
+			try {
+				out.write(data);
+				out.close();
+			} catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		caller.start();
+		caller.join(200);
+		assertTrue(caller.isAlive());
+		release.countDown();
+		caller.join(TimeUnit.SECONDS.toMillis(10));
+		assertFalse(caller.isAlive());
+		assertArrayEquals(data, bos.toByteArray());
+	}
+
+	@Test
+	void invalidBuffers() {
+		assertThrows(IllegalArgumentException.class, () -> new AsyncOutputStream(new ByteArrayOutputStream(), 0, 2));
+		assertThrows(IllegalArgumentException.class, () -> new AsyncOutputStream(new ByteArrayOutputStream(), 16, 1));
+	}
+}
@@ -0,0 +1,106 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.bzsoft.ser.BaseSerializer.Header;
+
+class BooleanArrayTest {
+
+	/** empty, and around a packed byte and a long word */
+	private static final int[]	LENGTHS	= { 0, 1, 7, 8, 9, 63, 64, 65, 1000 };
+
+	private static byte[] write(final Object o) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeObject(o);
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static Object roundTrip(final Object o) throws Exception {
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(o)));
+		final Object back = in.readObject();
+		assertEquals(-1, in.read());
+		assertEquals(o.getClass(), back.getClass());
+		assertTrue(Objects.deepEquals(o, back));
+		return back;
+	}
+
+	@Test
+	void everyDensityAndLength() throws Exception {
+		final Random r = new Random(3);
+		for (final int n : LENGTHS) {
+			for (final double p : new double[] { 0, 0.001, 0.01, 0.5, 0.99, 1 }) {
+				final boolean[] a = new boolean[n];
+				final BitSet bits = new BitSet();
+				for (int i = 0; i < n; i++) {
+					a[i] = r.nextDouble() < p;
+					bits.set(i, r.nextDouble() < p);
+				}
+				roundTrip(a);
+				roundTrip(bits);
+			}
+		}
+	}
+
+	@Test
+	void runsAreSmall() throws Exception {
+		final boolean[] flags = new boolean[1000000];
+		Arrays.fill(flags, 1000, 900000, true);
+		final byte[] bytes = write(flags);
+		assertEquals(Header.ARRAY_BOOLEAN_RLE, bytes[0] & 0xFF);
+		assertTrue(bytes.length < 16);
+		roundTrip(flags);
+		final BitSet bits = new BitSet();
+		bits.set(10, 1000000);
+		bits.clear(77);
+		final byte[] bitBytes = write(bits);
+		assertEquals(Header.BITSET_RLE, bitBytes[0] & 0xFF);
+		assertTrue(bitBytes.length < 16);
+		roundTrip(bits);
+	}
+
+	@Test
+	void randomFlagsStayBitPacked() throws Exception {
+		final Random r = new Random(4);
+		final boolean[] flags = new boolean[10000];
+		final BitSet bits = new BitSet();
+		for (int i = 0; i < flags.length; i++) {
+			flags[i] = r.nextBoolean();
+			bits.set(i, r.nextBoolean());
+		}
+		assertEquals(Header.ARRAY_BOOLEAN, write(flags)[0] & 0xFF);
+		assertEquals(Header.BITSET, write(bits)[0] & 0xFF);
+		assertTrue(write(flags).length < flags.length / 8 + 16);
+		roundTrip(flags);
+		roundTrip(bits);
+	}
+
+	@Test
+	void highestBitIndex() throws Exception {
+		final BitSet bits = new BitSet();
+		bits.set(Integer.MAX_VALUE - 1);
+		roundTrip(bits);
+		roundTrip(new BitSet());
+	}
+
+	@Test
+	void sharedBitSet() throws Exception {
+		final BitSet shared = new BitSet();
+		shared.set(3);
+		final Object[] pair = (Object[]) roundTrip(new Object[] { shared, shared });
+		assertSame(pair[0], pair[1]);
+	}
+}
@@ -0,0 +1,184 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+class BufferedDataInputTest {
+
+	/**
+	 * Hands out at most a few bytes per read, so values straddle refills.
+	 */
+	static class TricklingStream extends ByteArrayInputStream {
+
+		private int	calls;
+
+		TricklingStream(final byte[] b) {
+			super(b);
+		}
+
+		@Override
+		public synchronized int read(final byte[] b, final int off, final int len) {
+			return super.read(b, off, Math.min(len, 1 + calls++ % 7));
+		}
+	}
+
+	private static final long[]	PACKED	= { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 1L << 35, Long.MAX_VALUE };
+
+	private static byte[] bytes() throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bos);
+		for (int i = 0; i < 200; i++) {
+			out.writeBoolean(i % 2 == 0);
+			out.writeByte(-i);
+			out.writeByte(200 + i);
+			out.writeShort(-i * 100);
+			out.writeShort(60000 + i);
+			out.writeChar(0xFFFF - i);
+			out.writeInt(i * -100003);
+			out.writeLong(Long.MIN_VALUE + i);
+			out.writeFloat(i / 3f);
+			out.writeDouble(-i / 7.0);
+			out.writeUTF("utf é € " + i);
+			for (final long v : PACKED) {
+				Utils.packLong(out, v);
+				if (v <= Integer.MAX_VALUE) {
+					Utils.packInt(out, (int) v);
+				}
+			}
+			out.write(new byte[i], 0, i);
+		}
+		out.writeBytes("line one\r\nline two\nlast");
+		return bos.toByteArray();
+	}
+
+	private static void readAll(final BufferedDataInput in) throws IOException {
+		for (int i = 0; i < 200; i++) {
+			assertEquals(i % 2 == 0, in.readBoolean());
+			assertEquals((byte) -i, in.readByte());
+			assertEquals((200 + i) & 0xFF, in.readUnsignedByte());
+			assertEquals((short) (-i * 100), in.readShort());
+			assertEquals(60000 + i, in.readUnsignedShort());
+			assertEquals((char) (0xFFFF - i), in.readChar());
+			assertEquals(i * -100003, in.readInt());
+			assertEquals(Long.MIN_VALUE + i, in.readLong());
+			assertEquals(i / 3f, in.readFloat());
+			assertEquals(-i / 7.0, in.readDouble());
+			assertEquals("utf é € " + i, in.readUTF());
+			for (final long v : PACKED) {
+				assertEquals(v, Utils.unpackLong(in));
+				if (v <= Integer.MAX_VALUE) {
+					assertEquals((int) v, Utils.unpackInt(in));
+				}
+			}
+			final byte[] b = new byte[i];
+			in.readFully(b);
+			assertArrayEquals(new byte[i], b);
+		}
+		assertEquals("line one", in.readLine());
+		assertEquals("line two", in.readLine());
+		assertEquals("last", in.readLine());
+		assertNull(in.readLine());
+		assertEquals(-1, in.read());
+		assertThrows(EOFException.class, in::readInt);
+	}
+
+	@Test
+	void sameValuesAsDataOutputStream() throws IOException {
+		final byte[] bytes = bytes();
+		for (final int size : new int[] { 1, 2, 9, 64, BufferedDataInput.BUFFER_SIZE }) {
+			readAll(new BufferedDataInput(new TricklingStream(bytes), size));
+			readAll(new BufferedDataInput(new ByteArrayInputStream(bytes), size));
+		}
+		final byte[] framed = new byte[bytes.length + 10];
+		System.arraycopy(bytes, 0, framed, 3, bytes.length);
+		readAll(new BufferedDataInput(framed, 3, bytes.length));
+	}
+
+	@Test
+	void bulkArrays() throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bos);
+		final int n = 1001;
+		for (int i = 0; i < n; i++) {
+			out.writeShort(i - 500);
+		}
+		for (int i = 0; i < n; i++) {
+			out.writeChar(i * 61);
+		}
+		for (int i = 0; i < n; i++) {
+			out.writeInt(i * -7919);
+		}
+		for (int i = 0; i < n; i++) {
+			out.writeFloat(i / 9f);
+		}
+		for (int i = 0; i < n; i++) {
+			out.writeLong(i * 1000000007L);
+		}
+		for (int i = 0; i < n; i++) {
+			out.writeDouble(i / -11.0);
+		}
+		for (final InputStream is : new InputStream[] { new TricklingStream(bos.toByteArray()), new ByteArrayInputStream(bos.toByteArray()) }) {
+			final BufferedDataInput in = new BufferedDataInput(is, 13);
+			final short[] s = new short[n];
+			final char[] c = new char[n];
+			final int[] a = new int[n];
+			final float[] f = new float[n];
+			final long[] l = new long[n];
+			final double[] d = new double[n];
+			in.readFully(s);
+			in.readFully(c);
+			in.readFully(a);
+			in.readFully(f);
+			in.readFully(l);
+			in.readFully(d);
+			for (int i = 0; i < n; i++) {
+				assertEquals(i - 500, s[i]);
+				assertEquals((char) (i * 61), c[i]);
+				assertEquals(i * -7919, a[i]);
+				assertEquals(i / 9f, f[i]);
+				assertEquals(i * 1000000007L, l[i]);
+				assertEquals(i / -11.0, d[i]);
+			}
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	void truncated() throws IOException {
+		final BufferedDataInput in = new BufferedDataInput(new TricklingStream(new byte[] { 1, 2, 3 }), 2);
+		assertThrows(EOFException.class, () -> in.readFully(new int[1]));
+		assertThrows(EOFException.class, () -> new BufferedDataInput(new byte[] { 1, 2, 3 }, 1, 2).readInt());
+		assertEquals(2, new BufferedDataInput(new byte[] { 1, 2, 3 }, 1, 2).skipBytes(5));
+	}
+
+	@Test
+	void objectStreamOverSmallReads() throws Exception {
+		final Object[] values = { "x", new int[5000], new double[3000], 123456789L, "tail" };
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		for (final Object o : values) {
+			out.writeObject(o);
+		}
+		out.close();
+		final ObjectInputStream in = new ObjectInputStream(new TricklingStream(bos.toByteArray()));
+		for (final Object o : values) {
+			if (o.getClass().isArray()) {
+				assertEquals(o.getClass(), in.readObject().getClass());
+			} else {
+				assertEquals(o, in.readObject());
+			}
+		}
+		assertEquals(-1, in.read());
+	}
+}
@@ -0,0 +1,133 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class BufferedDataOutputTest {
+
+	/**
+	 * Counts the calls reaching the target stream.
+	 */
+	static class CountingStream extends ByteArrayOutputStream {
+
+		int	writes;
+
+		@Override
+		public synchronized void write(final int b) {
+			writes++;
+			super.write(b);
+		}
+
+		@Override
+		public synchronized void write(final byte[] b, final int off, final int len) {
+			writes++;
+			super.write(b, off, len);
+		}
+	}
+
+	private static void writeAll(final DataOutput out) throws IOException {
+		final byte[] block = new byte[1000];
+		for (int i = 0; i < block.length; i++) {
+			block[i] = (byte) i;
+		}
+		for (int i = 0; i < 300; i++) {
+			out.write(i);
+			out.writeBoolean(i % 2 == 0);
+			out.writeByte(-i);
+			out.writeShort(i * 1000);
+			out.writeChar(0xFFFF - i);
+			out.writeInt(i * -100003);
+			out.writeLong(Long.MIN_VALUE + i);
+			out.writeFloat(i / 3f);
+			out.writeDouble(-i / 7.0);
+			out.writeBytes("bytes" + i);
+			out.writeChars("chars€" + i);
+			out.writeUTF(i % 2 == 0 ? "" : "utf \u0000 é € 😀 " + i);
+			out.write(block, i, i % 50);
+		}
+		out.write(block);
+	}
+
+	@Test
+	void sameBytesAsDataOutputStream() throws IOException {
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(expected);
+		writeAll(dos);
+		dos.close();
+		for (final int chunkSize : new int[] { 16, 1000, 4096, BufferedDataOutput.CHUNK_SIZE }) {
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			final BufferedDataOutput out = new BufferedDataOutput(bos, chunkSize);
+			writeAll(out);
+			out.close();
+			assertArrayEquals(expected.toByteArray(), bos.toByteArray(), "chunk size " + chunkSize);
+		}
+		// without a stream the buffer holds everything
+		final BufferedDataOutput out = new BufferedDataOutput(null);
+		writeAll(out);
+		assertEquals(expected.size(), out.size());
+		assertArrayEquals(expected.toByteArray(), out.toByteArray());
+		out.clear();
+		assertEquals(0, out.size());
+	}
+
+	@Test
+	void packedValues() throws IOException {
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(expected);
+		final BufferedDataOutput out = new BufferedDataOutput(null);
+		for (final long v : new long[] { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 1L << 35, Long.MAX_VALUE }) {
+			Utils.packLong(dos, v);
+			Utils.packLong(out, v);
+			if (v <= Integer.MAX_VALUE) {
+				Utils.packInt(dos, (int) v);
+				Utils.packInt(out, (int) v);
+			}
+		}
+		assertArrayEquals(expected.toByteArray(), out.toByteArray());
+	}
+
+	@Test
+	void writesReachTheStreamInChunks() throws IOException {
+		final CountingStream target = new CountingStream();
+		final BufferedDataOutput out = new BufferedDataOutput(target, 4096);
+		for (int i = 0; i < 100000; i++) {
+			out.writeByte(i);
+		}
+		assertTrue(target.writes <= 100000 / 4096, "writes: " + target.writes);
+		out.flush();
+		assertEquals(100000, target.size());
+		// big blocks bypass the buffer
+		final int before = target.writes;
+		out.write(new byte[10000]);
+		assertEquals(before + 1, target.writes);
+	}
+
+	@Test
+	void objectStreamFlushes() throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeObject("buffered");
+		assertEquals(0, bos.size());
+		out.flush();
+		assertTrue(bos.size() > 0);
+		out.close();
+	}
+
+	@Test
+	void utfTooLong() {
+		final char[] c = new char[30000];
+		Arrays.fill(c, '€');
+		assertThrows(UTFDataFormatException.class, () -> new BufferedDataOutput(null).writeUTF(new String(c)));
+	}
+}
@@ -0,0 +1,199 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.Test;
+
+class ByteBufferTest {
+
+	static class Item implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		String							name;
+		double[]							values;
+
+		Item() {
+			// for the serializer
+		}
+
+		Item(final String name, final double[] values) {
+			this.name = name;
+			this.values = values;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Item && Objects.equals(((Item) o).name, name) && Arrays.equals(((Item) o).values, values);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(name);
+		}
+	}
+
+	static class Tag implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		String							name;
+
+		Tag() {
+			// for the serializer
+		}
+
+		Tag(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Tag && Objects.equals(((Tag) o).name, name);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(name);
+		}
+	}
+
+	private static List<Object> values() {
+		final int n = 1000;
+		final short[] s = new short[n];
+		final char[] c = new char[n];
+		final int[] a = new int[n];
+		final float[] f = new float[n];
+		final long[] l = new long[n];
+		final double[] d = new double[n];
+		for (int i = 0; i < n; i++) {
+			s[i] = (short) (i * 77);
+			c[i] = (char) (i * 31);
+			a[i] = i * -100003;
+			f[i] = i / 3f;
+			l[i] = i * 1000000007L;
+			d[i] = -i / 7.0;
+		}
+		final HashMap<Object, Object> map = new HashMap<Object, Object>();
+		map.put("k", new Item("in map", new double[] { 1 }));
+		return Arrays.asList(null, 7, 123456789L, "text €", s, c, a, f, l, d, new byte[] { 1, 2 }, new Item("item", new double[] { 1.5, -2 }),
+				new ArrayList<Object>(Arrays.asList(1, "two", null)), map);
+	}
+
+	@Test
+	void heapAndDirectBuffers() throws Exception {
+		for (final ByteBuffer buf : new ByteBuffer[] { ByteBuffer.allocate(1 << 16), ByteBuffer.allocateDirect(1 << 16) }) {
+			final BeanSerializer writer = new BeanSerializer();
+			final BeanSerializer reader = new BeanSerializer();
+			buf.position(3);
+			final List<Integer> lengths = new ArrayList<Integer>();
+			for (final Object o : values()) {
+				final int start = buf.position();
+				lengths.add(writer.serialize(buf, o));
+				assertEquals(start + lengths.get(lengths.size() - 1), buf.position());
+			}
+			buf.flip().position(3);
+			for (final Object o : values()) {
+				final int start = buf.position();
+				assertTrue(Objects.deepEquals(o, reader.deserialize(buf)));
+				assertEquals(lengths.remove(0), buf.position() - start);
+			}
+			assertEquals(buf.limit(), buf.position());
+		}
+	}
+
+	@Test
+	void sameBytesAsAStream() throws Exception {
+		for (final Object o : values()) {
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			final ObjectOutputStream out = new ObjectOutputStream(bos);
+			out.writeObject(o);
+			out.close();
+			final ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+			new BeanSerializer().serialize(buf, o);
+			assertArrayEquals(bos.toByteArray(), Arrays.copyOf(buf.array(), buf.position()));
+		}
+	}
+
+	@Test
+	void messagesAreSelfContained() throws Exception {
+		final BeanSerializer writer = new BeanSerializer();
+		final ByteBuffer first = ByteBuffer.allocate(256);
+		final ByteBuffer second = ByteBuffer.allocate(256);
+		final Item item = new Item("x", null);
+		writer.serialize(first, item);
+		writer.serialize(second, item);
+		second.flip();
+		// the second message repeats the class, a fresh reader can read it alone
+		assertEquals(item, new BeanSerializer().deserialize(second));
+	}
+
+	/**
+	 * Writes an Item and a Tag to the stream, twice, with a message holding a
+	 * Tag in between when a serializer is given.
+	 */
+	private static byte[] stream(final BeanSerializer writer, final ByteBuffer message) throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, writer);
+		out.writeObject(new Item("a", null));
+		out.writeObject(new Tag("b"));
+		if (message != null) {
+			writer.serialize(message, new Tag("c"));
+		}
+		out.writeObject(new Item("d", null));
+		out.writeObject(new Tag("e"));
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static void read(final byte[] bytes, final BeanSerializer reader, final ByteBuffer message) throws Exception {
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes), reader);
+		assertEquals(new Item("a", null), in.readObject());
+		assertEquals(new Tag("b"), in.readObject());
+		if (message != null) {
+			assertEquals(new Tag("c"), reader.deserialize(message.duplicate()));
+			reader.skip(message.duplicate());
+		}
+		assertEquals(new Item("d", null), in.readObject());
+		assertEquals(new Tag("e"), in.readObject());
+		in.close();
+	}
+
+	@Test
+	void messagesLeaveTheStreamClassesAlone() throws Exception {
+		final ByteBuffer message = ByteBuffer.allocate(256);
+		final byte[] written = stream(new BeanSerializer(), message);
+		message.flip();
+		read(written, new BeanSerializer(), null);
+		read(stream(new BeanSerializer(), null), new BeanSerializer(), message);
+	}
+
+	@Test
+	void overflowLeavesThePosition() throws Exception {
+		final ByteBuffer buf = ByteBuffer.allocate(100);
+		buf.position(10);
+		final byte[] big = new byte[200];
+		for (int i = 0; i < big.length; i++) {
+			big[i] = (byte) i;
+		}
+		assertThrows(BufferOverflowException.class, () -> new BeanSerializer().serialize(buf, big));
+		assertEquals(10, buf.position());
+		new BeanSerializer().serialize(buf, "fits");
+		buf.flip().position(10);
+		assertEquals("fits", new BeanSerializer().deserialize(buf));
+	}
+}
@@ -0,0 +1,142 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.bzsoft.ser.BaseSerializer.Header;
+
+class ChunkedSerializerTest {
+
+	static class Bean implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		int								id;
+		String							name;
+
+		Bean(final int id) {
+			this.id = id;
+			name = "bean-" + id;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Bean && ((Bean) o).id == id && ((Bean) o).name.equals(name);
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+	}
+
+	private static ExecutorService	executor;
+
+	@BeforeAll
+	static void start() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterAll
+	static void stop() {
+		executor.shutdown();
+	}
+
+	private static Object roundTrip(final Object root, final int chunkSize, final boolean compact) throws Exception {
+		final BeanSerializer.Options options = new BeanSerializer.Options().compact(compact);
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ChunkedSerializer.write(bos, root, () -> new BeanSerializer(options), executor, chunkSize);
+		return ChunkedSerializer.read(new ByteArrayInputStream(bos.toByteArray()), () -> new BeanSerializer(options), executor);
+	}
+
+	@Test
+	void roots() throws Exception {
+		for (final int n : new int[] { 0, 1, 127, 128, 129, 5000 }) {
+			final ArrayList<Object> list = new ArrayList<Object>();
+			final HashMap<Object, Object> map = new HashMap<Object, Object>();
+			for (int i = 0; i < n; i++) {
+				list.add(i % 3 == 0 ? null : i % 3 == 1 ? (Object) Long.valueOf(i * 1000000007L) : Arrays.asList("e" + i, new Bean(i)));
+				map.put("k" + i, new Bean(i));
+			}
+			final Bean[] beans = map.values().toArray(new Bean[0]);
+			for (final int chunkSize : new int[] { 1, 128, 1000 }) {
+				for (final boolean compact : new boolean[] { false, true }) {
+					assertEquals(list, roundTrip(list, chunkSize, compact));
+					assertEquals(map, roundTrip(map, chunkSize, compact));
+					final Object array = roundTrip(beans, chunkSize, compact);
+					assertEquals(Bean[].class, array.getClass());
+					assertArrayEquals(beans, (Object[]) array);
+				}
+			}
+		}
+	}
+
+	@Test
+	void defaultExecutor() throws Exception {
+		final HashMap<Object, Object> map = new HashMap<Object, Object>();
+		for (int i = 0; i < 50000; i++) {
+			map.put(i, "v" + i);
+		}
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ChunkedSerializer.write(bos, map);
+		assertEquals(map, ChunkedSerializer.read(new ByteArrayInputStream(bos.toByteArray())));
+	}
+
+	@Test
+	void rejectsOtherRoots() {
+		assertThrows(IllegalArgumentException.class, () -> ChunkedSerializer.write(new ByteArrayOutputStream(), new LinkedList<Object>()));
+		assertThrows(IllegalArgumentException.class,
+				() -> ChunkedSerializer.write(new ByteArrayOutputStream(), new ArrayList<Object>(), BeanSerializer::new, executor, 0));
+	}
+
+	@Test
+	void failingElement() {
+		final ArrayList<Object> list = new ArrayList<Object>(Arrays.asList((Object) "a", "b", new Socket()));
+		assertThrows(IOException.class, () -> ChunkedSerializer.write(new ByteArrayOutputStream(), list, BeanSerializer::new, executor, 1));
+	}
+
+	@Test
+	void corrupted() throws Exception {
+		final ArrayList<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < 1000; i++) {
+			list.add("e" + i);
+		}
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ChunkedSerializer.write(bos, list, BeanSerializer::new, executor, 100);
+		final byte[] bytes = bos.toByteArray();
+		final byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+		assertThrows(EOFException.class, () -> ChunkedSerializer.read(new ByteArrayInputStream(truncated), BeanSerializer::new, executor));
+		bytes[0] = 7;
+		assertThrows(StreamCorruptedException.class, () -> ChunkedSerializer.read(new ByteArrayInputStream(bytes), BeanSerializer::new, executor));
+	}
+
+	@Test
+	void hugeDeclaredSize() throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bos);
+		out.writeByte(Header.HASHMAP);
+		Utils.packInt(out, 2000000000);
+		Utils.packInt(out, 0);
+		assertThrows(StreamCorruptedException.class, () -> ChunkedSerializer.read(new ByteArrayInputStream(bos.toByteArray()), BeanSerializer::new, executor));
+	}
+}
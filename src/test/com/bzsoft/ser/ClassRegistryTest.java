@@ -0,0 +1,120 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import org.junit.jupiter.api.Test;
+
+class ClassRegistryTest {
+
+	static class Registered implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		String							v;
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Registered && Objects.equals(((Registered) o).v, v);
+		}
+
+		@Override
+		public int hashCode() {
+			return 1;
+		}
+	}
+
+	static class Unregistered extends Registered {
+
+		private static final long	serialVersionUID	= 1L;
+	}
+
+	private static Registered bean(final Registered r, final String v) {
+		r.v = v;
+		return r;
+	}
+
+	private static ClassRegistry registry() {
+		final ClassRegistry r = new ClassRegistry();
+		r.register(Registered.class, 40);
+		return r;
+	}
+
+	private static byte[] write(final BeanSerializer s, final Object... objects) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, s);
+		for (final Object o : objects) {
+			out.writeObject(o);
+		}
+		out.close();
+		return bos.toByteArray();
+	}
+
+	@Test
+	void ids() {
+		final ClassRegistry r = new ClassRegistry();
+		assertEquals(0, r.register(String.class));
+		assertEquals(0, r.register(String.class));
+		assertEquals(5, r.register(Integer.class, 5));
+		assertEquals(6, r.register(Long.class));
+		r.registerAll(Short.class, Byte.class);
+		assertEquals(Byte.class, r.getClassById(8));
+		assertEquals(7, r.getClassId(Short.class));
+		assertNull(r.getClassById(3));
+		assertNull(r.getClassById(-1));
+		assertNull(r.getClassId(Double.class));
+		assertEquals(9, r.size());
+		assertThrows(IllegalArgumentException.class, () -> r.register(Double.class, 5));
+		assertThrows(IllegalArgumentException.class, () -> r.register(String.class, 1));
+		assertThrows(IllegalArgumentException.class, () -> r.register(Double.class, -1));
+	}
+
+	@Test
+	void registeredClassesAreNotWrittenByName() throws Exception {
+		for (final boolean compact : new boolean[] { false, true }) {
+			final BeanSerializer.Options options = new BeanSerializer.Options().registry(registry()).compact(compact);
+			final byte[] bytes = write(new BeanSerializer(options), bean(new Registered(), "r"), bean(new Unregistered(), "u"));
+			final String text = new String(bytes, StandardCharsets.ISO_8859_1);
+			assertFalse(text.contains("$Registered"), text);
+			assertTrue(text.contains(Unregistered.class.getName()), text);
+			final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes), new BeanSerializer(options));
+			assertEquals(bean(new Registered(), "r"), in.readObject());
+			assertEquals(bean(new Unregistered(), "u"), in.readObject());
+		}
+	}
+
+	@Test
+	void byteBufferMessages() throws Exception {
+		final BeanSerializer writer = new BeanSerializer(new BeanSerializer.Options().registry(registry()));
+		final BeanSerializer reader = new BeanSerializer(new BeanSerializer.Options().registry(registry()));
+		final ByteBuffer buf = ByteBuffer.allocate(1024);
+		for (int i = 0; i < 3; i++) {
+			writer.serialize(buf, bean(new Registered(), "r" + i));
+			writer.serialize(buf, bean(new Unregistered(), "u" + i));
+		}
+		buf.flip();
+		for (int i = 0; i < 3; i++) {
+			assertEquals(bean(new Registered(), "r" + i), reader.deserialize(buf));
+			assertEquals(bean(new Unregistered(), "u" + i), reader.deserialize(buf));
+		}
+	}
+
+	@Test
+	void unknownId() throws Exception {
+		final byte[] bytes = write(new BeanSerializer(new BeanSerializer.Options().registry(registry())), bean(new Registered(), "r"));
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes), new BeanSerializer());
+		assertThrows(StreamCorruptedException.class, in::readObject);
+	}
+}
@@ -0,0 +1,173 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.Test;
+
+class CompactBeanTest {
+
+	static class Order implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		long								id;
+		String							customer;
+		int								quantity;
+		double							price;
+		boolean							paid;
+		Order								parent;
+		int[]								lines;
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Order)) {
+				return false;
+			}
+			final Order x = (Order) o;
+			return x.id == id && Objects.equals(x.customer, customer) && x.quantity == quantity && x.price == price && x.paid == paid
+					&& Objects.equals(x.parent, parent) && Arrays.equals(x.lines, lines);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) id;
+		}
+	}
+
+	/** nine reference fields, the null bitmap takes two bytes */
+	static class Wide implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		String							f0, f1, f2, f3, f4, f5, f6, f7, f8;
+		byte								b;
+	}
+
+	static class Ext implements Externalizable {
+
+		String	v;
+
+		@Override
+		public void writeExternal(final ObjectOutput out) throws IOException {
+			out.writeObject(v);
+		}
+
+		@Override
+		public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+			v = (String) in.readObject();
+		}
+	}
+
+	private static Order order(final int i) {
+		final Order o = new Order();
+		o.id = 1000000L + i;
+		o.customer = i % 4 == 0 ? null : "customer-" + i % 10;
+		o.quantity = i % 2 == 0 ? i : -i;
+		o.price = i / 100.0;
+		o.paid = i % 3 == 0;
+		o.lines = i % 5 == 0 ? null : new int[] { i, -i };
+		return o;
+	}
+
+	private static byte[] write(final boolean compact, final Object... objects) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, new BeanSerializer(new BeanSerializer.Options().compact(compact)));
+		for (final Object o : objects) {
+			out.writeObject(o);
+		}
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static ObjectInputStream reader(final byte[] bytes, final boolean compact) {
+		return new ObjectInputStream(new ByteArrayInputStream(bytes), new BeanSerializer(new BeanSerializer.Options().compact(compact)));
+	}
+
+	@Test
+	void roundTripAndSize() throws Exception {
+		final List<Order> orders = new ArrayList<Order>();
+		for (int i = 0; i < 200; i++) {
+			final Order o = order(i);
+			o.parent = i % 7 == 1 ? orders.get(i - 1) : null;
+			orders.add(o);
+		}
+		final byte[] compact = write(true, orders);
+		// readers understand both forms whatever their own mode
+		for (final boolean mode : new boolean[] { true, false }) {
+			final List<?> back = (List<?>) reader(compact, mode).readObject();
+			assertEquals(orders, back);
+			assertSame(back.get(7), ((Order) back.get(8)).parent);
+			assertEquals(orders, reader(write(false, orders), mode).readObject());
+		}
+		assertTrue(compact.length < write(false, orders).length);
+	}
+
+	@Test
+	void extremeNumbers() throws Exception {
+		final long[] ids = { Long.MIN_VALUE, Long.MAX_VALUE, 1L << 62, -(1L << 62) - 1, 0 };
+		final int[] quantities = { Integer.MIN_VALUE, Integer.MAX_VALUE, 1 << 30, -(1 << 30) - 1, 0 };
+		for (int i = 0; i < ids.length; i++) {
+			final Order o = order(1);
+			o.id = ids[i];
+			o.quantity = quantities[i];
+			assertEquals(o, reader(write(true, o), true).readObject());
+		}
+	}
+
+	@Test
+	void nullBitmapOverOneByte() throws Exception {
+		for (int nulls = 0; nulls < 512; nulls += 37) {
+			final Wide w = new Wide();
+			for (int k = 0; k < 9; k++) {
+				if ((nulls >>> k & 1) == 0) {
+					Wide.class.getDeclaredField("f" + k).set(w, "v" + k);
+				}
+			}
+			w.b = (byte) nulls;
+			final Wide back = (Wide) reader(write(true, w, "tail"), true).readObject();
+			for (int k = 0; k < 9; k++) {
+				final Field f = Wide.class.getDeclaredField("f" + k);
+				assertEquals(f.get(w), f.get(back));
+			}
+			assertEquals(w.b, back.b);
+		}
+	}
+
+	@Test
+	void externalizableKeepsItsForm() throws Exception {
+		final Ext e = new Ext();
+		e.v = "ext";
+		final ObjectInputStream in = reader(write(true, e, order(3)), true);
+		assertEquals("ext", ((Ext) in.readObject()).v);
+		assertEquals(order(3), in.readObject());
+	}
+
+	@Test
+	void layoutMismatch() throws Exception {
+		final byte[] bytes = write(true, order(1));
+		// rename a field in the written layout
+		final String s = new String(bytes, StandardCharsets.ISO_8859_1);
+		final int at = s.indexOf("quantity");
+		assertTrue(at > 0);
+		bytes[at] = 'Q';
+		assertThrows(InvalidClassException.class, () -> reader(bytes, true).readObject());
+	}
+}
@@ -0,0 +1,117 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+class ElementIteratorTest {
+
+	private static byte[] write(final Serializer<Object> serializer, final Object... objects) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, serializer);
+		for (final Object o : objects) {
+			out.writeObject(o);
+		}
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static ObjectInputStream reader(final byte[] bytes) throws IOException {
+		return new ObjectInputStream(new ByteArrayInputStream(bytes));
+	}
+
+	private static List<Object> drain(final Iterator<Object> it) {
+		final List<Object> ret = new ArrayList<Object>();
+		while (it.hasNext()) {
+			ret.add(it.next());
+		}
+		return ret;
+	}
+
+	@Test
+	void streamedContainers() throws Exception {
+		final List<Object> shared = Arrays.asList((Object) "x", "y");
+		final ArrayList<Object> list = new ArrayList<Object>(Arrays.asList("a", shared, 3L, null, shared));
+		final Object[] array = list.toArray();
+		final HashMap<Object, Object> map = new HashMap<Object, Object>();
+		map.put("k1", shared);
+		map.put("k2", shared);
+		final ObjectInputStream in = reader(write(new BeanSerializer(), list, array, map, shared, "after"));
+		final List<Object> l = drain(in.readElements());
+		assertEquals(list, l);
+		assertSame(l.get(1), l.get(4));
+		final List<Object> a = drain(in.readElements());
+		assertEquals(list, a);
+		final Map<Object, Object> m = new HashMap<Object, Object>();
+		for (final Object e : drain(in.readElements())) {
+			m.put(((Map.Entry<?, ?>) e).getKey(), ((Map.Entry<?, ?>) e).getValue());
+		}
+		assertEquals(map, m);
+		assertSame(m.get("k1"), m.get("k2"));
+		// back references into the streamed elements resolve afterwards
+		assertSame(l.get(1), in.readObject());
+		assertEquals("after", in.readObject());
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	void containersReadWhole() throws Exception {
+		final LinkedList<Object> linked = new LinkedList<Object>(Arrays.asList("a", "b"));
+		final TreeMap<Object, Object> tree = new TreeMap<Object, Object>();
+		tree.put("k", 1);
+		final ObjectInputStream in = reader(write(new BeanSerializer(), linked, tree, new ArrayList<Object>(), "after"));
+		assertEquals(linked, drain(in.readElements()));
+		final Map.Entry<?, ?> e = (Map.Entry<?, ?>) in.readElements().next();
+		assertEquals("k", e.getKey());
+		assertEquals(1, e.getValue());
+		final Iterator<Object> empty = in.readElements();
+		assertFalse(empty.hasNext());
+		assertThrows(NoSuchElementException.class, empty::next);
+		assertEquals("after", in.readObject());
+	}
+
+	@Test
+	void elementStream() throws Exception {
+		final ArrayList<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < 100000; i++) {
+			list.add(Long.valueOf(i));
+		}
+		for (final TrackingPolicy policy : TrackingPolicy.values()) {
+			final BeanSerializer.Options options = new BeanSerializer.Options().trackingPolicy(policy);
+			final byte[] bytes = write(new BeanSerializer(options), list);
+			final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes), new BeanSerializer(options));
+			assertEquals(99999L * 100000 / 2, in.readElementStream().mapToLong(o -> (Long) o).sum());
+		}
+	}
+
+	@Test
+	void notAContainer() throws Exception {
+		assertThrows(StreamCorruptedException.class, () -> reader(write(new BeanSerializer(), "a string")).readElements());
+	}
+
+	@Test
+	void truncated() throws Exception {
+		final byte[] bytes = write(new BeanSerializer(), new ArrayList<Object>(Arrays.asList("first", "second element")));
+		final Iterator<Object> it = reader(Arrays.copyOf(bytes, bytes.length - 3)).readElements();
+		assertEquals("first", it.next());
+		assertThrows(UncheckedIOException.class, it::next);
+	}
+}
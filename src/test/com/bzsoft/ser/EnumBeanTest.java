@@ -0,0 +1,76 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class EnumBeanTest {
+
+	enum Color {
+		RED, GREEN, BLUE
+	}
+
+	/** an enum with state, still written as its ordinal */
+	enum Size {
+		SMALL(1), LARGE(9);
+
+		private final int	weight;
+
+		Size(final int weight) {
+			this.weight = weight;
+		}
+	}
+
+	static class Pixel implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		Color								color;
+		int								x;
+	}
+
+	@Test
+	void enumsAndEnumFields() throws Exception {
+		for (final boolean compact : new boolean[] { false, true }) {
+			final Pixel p = new Pixel();
+			p.color = Color.BLUE;
+			p.x = 3;
+			final BeanSerializer.Options options = new BeanSerializer.Options().compact(compact);
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			final ObjectOutputStream out = new ObjectOutputStream(bos, new BeanSerializer(options));
+			out.writeObject(Color.GREEN);
+			out.writeObject(p);
+			out.writeObject(Arrays.asList(Color.RED, Size.LARGE, Color.RED));
+			out.writeObject("after");
+			out.close();
+			final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()), new BeanSerializer(options));
+			assertSame(Color.GREEN, in.readObject());
+			final Pixel back = (Pixel) in.readObject();
+			assertSame(Color.BLUE, back.color);
+			assertEquals(3, back.x);
+			final List<?> l = (List<?>) in.readObject();
+			assertEquals(Arrays.asList(Color.RED, Size.LARGE, Color.RED), l);
+			assertEquals(9, ((Size) l.get(1)).weight);
+			assertEquals("after", in.readObject());
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	void byteBufferMessage() throws Exception {
+		final ByteBuffer buf = ByteBuffer.allocate(256);
+		new BeanSerializer().serialize(buf, new Object[] { Color.BLUE, "after" });
+		buf.flip();
+		final Object[] back = (Object[]) new BeanSerializer().deserialize(buf);
+		assertSame(Color.BLUE, back[0]);
+		assertEquals("after", back[1]);
+	}
+}
@@ -0,0 +1,114 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+
+import org.junit.jupiter.api.Test;
+
+class FieldAccessorTest {
+
+	static class Base {
+
+		private long	inherited;
+	}
+
+	static class Fields extends Base {
+
+		private boolean		z;
+		private byte			b;
+		private char			c;
+		private short			s;
+		private int				i;
+		private long			l;
+		private float			f;
+		private double			d;
+		private String			text;
+		private final Object	fixed	= "initial";
+	}
+
+	private static FieldAccessor accessor(final Class<?> clazz, final String name) throws Exception {
+		final Field f = clazz.getDeclaredField(name);
+		f.setAccessible(true);
+		return FieldAccessor.of(f);
+	}
+
+	@Test
+	void typedPrimitives() throws Exception {
+		final Fields o = new Fields();
+		accessor(Fields.class, "z").setBoolean(o, true);
+		accessor(Fields.class, "b").setByte(o, Byte.MIN_VALUE);
+		accessor(Fields.class, "c").setChar(o, Character.MAX_VALUE);
+		accessor(Fields.class, "s").setShort(o, Short.MIN_VALUE);
+		accessor(Fields.class, "i").setInt(o, Integer.MIN_VALUE);
+		accessor(Fields.class, "l").setLong(o, Long.MAX_VALUE);
+		accessor(Fields.class, "f").setFloat(o, Float.NaN);
+		accessor(Fields.class, "d").setDouble(o, -0.5);
+		accessor(Base.class, "inherited").setLong(o, -1);
+		assertEquals(true, o.z);
+		assertEquals(Byte.MIN_VALUE, o.b);
+		assertEquals(Character.MAX_VALUE, o.c);
+		assertEquals(Short.MIN_VALUE, o.s);
+		assertEquals(Integer.MIN_VALUE, o.i);
+		assertEquals(Long.MAX_VALUE, o.l);
+		assertEquals(Float.NaN, o.f);
+		assertEquals(-0.5, o.d);
+		assertEquals(-1, ((Base) o).inherited);
+		assertEquals(true, accessor(Fields.class, "z").getBoolean(o));
+		assertEquals(Byte.MIN_VALUE, accessor(Fields.class, "b").getByte(o));
+		assertEquals(Character.MAX_VALUE, accessor(Fields.class, "c").getChar(o));
+		assertEquals(Short.MIN_VALUE, accessor(Fields.class, "s").getShort(o));
+		assertEquals(Integer.MIN_VALUE, accessor(Fields.class, "i").getInt(o));
+		assertEquals(Long.MAX_VALUE, accessor(Fields.class, "l").getLong(o));
+		assertEquals(Float.NaN, accessor(Fields.class, "f").getFloat(o));
+		assertEquals(-0.5, accessor(Fields.class, "d").getDouble(o));
+		assertEquals(-1, accessor(Base.class, "inherited").getLong(o));
+	}
+
+	@Test
+	void boxedValues() throws Exception {
+		final Fields o = new Fields();
+		final FieldAccessor i = accessor(Fields.class, "i");
+		i.set(o, 42);
+		assertEquals(42, o.i);
+		assertEquals(42, i.get(o));
+		assertEquals(int.class, i.getType());
+		final FieldAccessor text = accessor(Fields.class, "text");
+		assertNull(text.get(o));
+		text.set(o, "value");
+		assertSame(o.text, text.get(o));
+		assertEquals("text", text.getField().getName());
+		// final fields are set like the serializer does for any bean field
+		final FieldAccessor fixed = accessor(Fields.class, "fixed");
+		fixed.set(o, "changed");
+		assertEquals("changed", fixed.get(o));
+	}
+
+	@Test
+	void wrongTypes() throws Exception {
+		final Fields o = new Fields();
+		assertThrows(ClassCastException.class, () -> accessor(Fields.class, "text").set(o, 1));
+		assertThrows(ClassCastException.class, () -> accessor(Fields.class, "i").set(o, "x"));
+		assertThrows(ClassCastException.class, () -> accessor(Fields.class, "i").get("not a bean"));
+		assertThrows(ClassCastException.class, () -> accessor(Fields.class, "i").getLong(o));
+		assertThrows(ClassCastException.class, () -> accessor(Fields.class, "text").setInt(o, 1));
+	}
+
+	@Test
+	void hiddenClassPerField() throws Exception {
+		final FieldAccessor i = accessor(Fields.class, "i");
+		final FieldAccessor l = accessor(Fields.class, "l");
+		assertTrue(i.getClass().isHidden());
+		assertNotSame(i.getClass(), accessor(Fields.class, "i").getClass());
+		final Fields o = new Fields();
+		i.setInt(o, 1);
+		l.setLong(o, 2);
+		assertEquals(1, i.getInt(o));
+		assertEquals(2, l.getLong(o));
+	}
+}
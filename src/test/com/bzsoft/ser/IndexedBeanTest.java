@@ -0,0 +1,171 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class IndexedBeanTest {
+
+	public static class Inner implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		public String					a;
+		public int						b;
+
+		public Inner(final String a, final int b) {
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Inner && Objects.equals(((Inner) o).a, a) && ((Inner) o).b == b;
+		}
+
+		@Override
+		public int hashCode() {
+			return b;
+		}
+	}
+
+	public static class Base implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		public long						ts;
+	}
+
+	public static class Message extends Base {
+
+		private static final long	serialVersionUID	= 1L;
+
+		public String					route;
+		public int						priority;
+		public boolean					urgent;
+		public double					score;
+		public byte[]					payload;
+		public Map<String, Object>	headers;
+		public Inner					nested;
+		public List<Inner>			items;
+		public Message					next;
+
+		@Override
+		public boolean equals(final Object o) {
+			final Message m = (Message) o;
+			return m.ts == ts && Objects.equals(m.route, route) && m.priority == priority && m.urgent == urgent && m.score == score
+					&& Arrays.equals(m.payload, payload) && Objects.equals(m.headers, headers) && Objects.equals(m.nested, nested)
+					&& Objects.equals(m.items, items) && Objects.equals(m.next, next);
+		}
+
+		@Override
+		public int hashCode() {
+			return priority;
+		}
+	}
+
+	private static Message message(final int i, final int payload) {
+		final Message m = new Message();
+		m.ts = 1000L * i;
+		m.route = "route-" + i % 7;
+		m.priority = i == 1 ? Integer.MIN_VALUE : -i;
+		m.urgent = i % 2 == 0;
+		m.score = i / 3.0;
+		m.payload = new byte[payload];
+		new Random(i).nextBytes(m.payload);
+		m.headers = new HashMap<String, Object>();
+		m.headers.put("h", "v" + i);
+		m.nested = new Inner("x" + i, i);
+		m.items = new ArrayList<Inner>();
+		for (int k = 0; k < 10; k++) {
+			m.items.add(k % 2 == 0 ? m.nested : new Inner("i" + k, k));
+		}
+		return m;
+	}
+
+	private static byte[] write(final Serializer<Object> serializer, final Object... objects) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, serializer);
+		for (final Object o : objects) {
+			out.writeObject(o);
+		}
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static BeanSerializer serializer(final boolean compact) {
+		final Set<Class<?>> indexed = new HashSet<Class<?>>(Collections.singleton(Message.class));
+		return new BeanSerializer(new BeanSerializer.Options().compact(compact).indexedClasses(indexed));
+	}
+
+	@Test
+	void lazyFields() throws Exception {
+		for (final boolean compact : new boolean[] { false, true }) {
+			final Message m = message(5, 100000);
+			m.next = message(1, 10);
+			final ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+			serializer(compact).serialize(buf, m);
+			buf.flip();
+			final IndexedBean bean = serializer(compact).deserializeIndexed(buf.duplicate());
+			assertEquals(Message.class, bean.getType());
+			assertEquals("route-5", bean.get("route"));
+			assertEquals(-5, bean.get("priority"));
+			assertEquals(5000L, bean.get("ts"));
+			assertEquals(false, bean.get("urgent"));
+			assertEquals(5 / 3.0, bean.get("score"));
+			assertEquals(m.next, bean.get("next"));
+			final List<?> items = (List<?>) bean.get("items");
+			assertEquals(m.items, items);
+			assertSame(items.get(0), items.get(2));
+			assertEquals(m, bean.toObject());
+			// the message can be forwarded and read by a plain reader of the same settings
+			assertEquals(m, new BeanSerializer(new BeanSerializer.Options().compact(compact)).deserialize(bean.getMessage()));
+			assertEquals(m, new BeanSerializer(new BeanSerializer.Options().compact(compact)).deserialize(buf.duplicate()));
+			final IndexedBean next = serializer(compact).deserializeIndexed(bean.getBytes(bean.indexOf("next")).duplicate());
+			assertEquals(Integer.MIN_VALUE, next.get("priority"));
+			assertEquals(-1, bean.indexOf("nope"));
+			assertThrows(IllegalArgumentException.class, () -> bean.get("nope"));
+		}
+	}
+
+	@Test
+	void inStreams() throws Exception {
+		for (final boolean compact : new boolean[] { false, true }) {
+			final List<Object> list = new ArrayList<Object>();
+			for (int i = 0; i < 200; i++) {
+				list.add(message(i, 20));
+			}
+			list.add(list.get(3));
+			list.add(((Message) list.get(4)).nested);
+			final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(serializer(compact), list, "tail")), serializer(compact));
+			final List<?> back = (List<?>) in.readObject();
+			assertEquals(list, back);
+			assertSame(back.get(3), back.get(200));
+			assertEquals("tail", in.readObject());
+		}
+	}
+
+	@Test
+	void notIndexed() {
+		assertThrows(StreamCorruptedException.class, () -> new BeanSerializer().deserializeIndexed(ByteBuffer.wrap(new byte[] { 14 })));
+	}
+}
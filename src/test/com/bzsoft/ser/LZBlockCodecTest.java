@@ -0,0 +1,147 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LZBlockCodecTest {
+
+	private static List<byte[]> inputs(final int len, final Random r) {
+		final byte[] random = new byte[len];
+		r.nextBytes(random);
+		final byte[] repeated = new byte[len];
+		for (int i = 0; i < len; i++) {
+			repeated[i] = (byte) (i % 7 == 0 ? r.nextInt(4) : 'a' + i % 3);
+		}
+		return Arrays.asList(random, repeated, new byte[len]);
+	}
+
+	@Test
+	void codecRoundTrip() throws Exception {
+		final Random r = new Random(5);
+		final LZBlockCodec codec = new LZBlockCodec();
+		for (final int len : new int[] { 0, 1, 5, 12, 13, 17, 100, 1000, 65535, 65536, 65537, 300000 }) {
+			for (final byte[] data : inputs(len, r)) {
+				final byte[] dst = new byte[3 + LZBlockCodec.maxCompressedLength(len)];
+				final int n = codec.compress(data, 0, len, dst, 3);
+				assertTrue(n <= LZBlockCodec.maxCompressedLength(len));
+				final byte[] back = new byte[len + 2];
+				LZBlockCodec.decompress(dst, 3, n, back, 1, len);
+				assertArrayEquals(data, Arrays.copyOfRange(back, 1, len + 1));
+			}
+		}
+	}
+
+	@Test
+	void compressesRepeatedData() {
+		final byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) ("abcdefgh".charAt(i % 8) + i / 1000 % 3);
+		}
+		final byte[] dst = new byte[LZBlockCodec.maxCompressedLength(data.length)];
+		assertTrue(new LZBlockCodec().compress(data, 0, data.length, dst, 0) < data.length / 20);
+	}
+
+	@Test
+	void malformedBlock() {
+		final byte[] data = new byte[1000];
+		Arrays.fill(data, (byte) 'x');
+		final byte[] dst = new byte[LZBlockCodec.maxCompressedLength(data.length)];
+		final int n = new LZBlockCodec().compress(data, 0, data.length, dst, 0);
+		assertThrows(StreamCorruptedException.class, () -> LZBlockCodec.decompress(dst, 0, n, new byte[999], 0, 999));
+		assertThrows(StreamCorruptedException.class, () -> LZBlockCodec.decompress(dst, 0, n - 1, new byte[1000], 0, 1000));
+	}
+
+	private static byte[] streamRoundTrip(final byte[] data, final int blockSize, final int writeChunk, final boolean flushEach) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final BlockCompressedOutputStream out = new BlockCompressedOutputStream(bos, blockSize);
+		for (int i = 0; i < data.length; i += writeChunk) {
+			final int n = Math.min(writeChunk, data.length - i);
+			if (n == 1) {
+				out.write(data[i]);
+			} else {
+				out.write(data, i, n);
+			}
+			if (flushEach) {
+				out.flush();
+			}
+		}
+		out.close();
+		final byte[] compressed = bos.toByteArray();
+		final BlockCompressedInputStream in = new BlockCompressedInputStream(new ByteArrayInputStream(compressed));
+		assertArrayEquals(data, in.readAllBytes());
+		return compressed;
+	}
+
+	@Test
+	void streamRoundTrip() throws Exception {
+		final Random r = new Random(6);
+		for (final int len : new int[] { 0, 1, 63, 64, 65, 1000, 70000 }) {
+			for (final byte[] data : inputs(len, r)) {
+				for (final int blockSize : new int[] { BlockCompressedOutputStream.MIN_BLOCK_SIZE, 1000, 65536 }) {
+					for (final int chunk : new int[] { 1, 7, 4096 }) {
+						streamRoundTrip(data, blockSize, chunk, false);
+					}
+				}
+				streamRoundTrip(data, 4096, 333, true);
+			}
+		}
+		final byte[] random = new byte[1 << 20];
+		r.nextBytes(random);
+		// stored blocks only add their frame
+		assertTrue(streamRoundTrip(random, 65536, 65536, false).length < random.length + 16 * 5 + 16);
+	}
+
+	@Test
+	void serializedObjects() throws Exception {
+		final List<Object> records = new ArrayList<Object>();
+		for (int i = 0; i < 5000; i++) {
+			final Map<String, Object> m = new HashMap<String, Object>();
+			m.put("id", (long) i);
+			m.put("name", "customer-" + i % 500 + "@example.com");
+			m.put("note", "order " + i + " shipped");
+			records.add(m);
+		}
+		final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		final ObjectOutputStream po = new ObjectOutputStream(plain);
+		po.writeObject(records);
+		po.close();
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(new BlockCompressedOutputStream(compressed));
+		out.writeObject(records);
+		out.close();
+		assertTrue(compressed.size() < plain.size() / 2);
+		final ObjectInputStream in = new ObjectInputStream(new BlockCompressedInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+		assertEquals(records, in.readObject());
+	}
+
+	@Test
+	void truncatedStream() throws Exception {
+		final byte[] data = new byte[10000];
+		Arrays.fill(data, (byte) 3);
+		final byte[] c = streamRoundTrip(data, 65536, 65536, false);
+		final byte[] truncated = Arrays.copyOf(c, c.length - 3);
+		assertThrows(EOFException.class, () -> new BlockCompressedInputStream(new ByteArrayInputStream(truncated)).readAllBytes());
+	}
+
+	@Test
+	void invalidBlockSize() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new BlockCompressedOutputStream(new ByteArrayOutputStream(), BlockCompressedOutputStream.MIN_BLOCK_SIZE - 1));
+	}
+}
@@ -0,0 +1,239 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Externalizable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedRecordFileTest {
+
+	static class Entry implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		long								id;
+		String							name;
+
+		Entry() {
+			// for the serializer
+		}
+
+		Entry(final long id, final String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Entry && ((Entry) o).id == id && Objects.equals(((Entry) o).name, name);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) id;
+		}
+	}
+
+	/**
+	 * Writes its payload itself, so the serializer only sees a stream of bytes.
+	 */
+	static class Blob implements Externalizable {
+
+		byte[]	data;
+
+		public Blob() {
+			// for the serializer
+		}
+
+		Blob(final byte[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public void writeExternal(final ObjectOutput out) throws IOException {
+			out.writeInt(data.length);
+			out.write(data);
+		}
+
+		@Override
+		public void readExternal(final ObjectInput in) throws IOException {
+			data = new byte[in.readInt()];
+			in.readFully(data);
+		}
+	}
+
+	@TempDir
+	File	dir;
+
+	private static Object record(final int i) {
+		switch (i % 3) {
+		case 0:
+			return new Entry(i, "entry-" + i);
+		case 1:
+			return "record " + i;
+		default:
+			final long[] a = new long[i % 100];
+			for (int k = 0; k < a.length; k++) {
+				a[k] = (long) i << 32 | k;
+			}
+			return a;
+		}
+	}
+
+	private static void assertRecord(final int i, final Object actual) {
+		if (i % 3 == 2) {
+			assertArrayEquals((long[]) record(i), (long[]) actual);
+		} else {
+			assertEquals(record(i), actual);
+		}
+	}
+
+	@Test
+	void appendReopenAndReadBack() throws Exception {
+		final File f = new File(dir, "records.dat");
+		MappedRecordFile.Appender a = MappedRecordFile.appender(f);
+		for (int i = 0; i < 3000; i++) {
+			assertEquals(i, a.append(record(i)));
+			if (i == 1500) {
+				a.close();
+				a = MappedRecordFile.appender(f);
+				assertEquals(1501, a.size());
+			}
+		}
+		a.close();
+		assertEquals(3000 * 8, MappedRecordFile.indexFile(f).length());
+		final MappedRecordFile.Reader rd = MappedRecordFile.reader(f);
+		assertEquals(3000, rd.size());
+		// the file ends at the last record
+		assertEquals(f.length(), rd.offset(2999) + 4 + rd.bytes(2999).remaining());
+		for (int i = 2999; i >= 0; i -= 7) {
+			assertRecord(i, rd.read(i));
+		}
+		rd.close();
+	}
+
+	@Test
+	void recordBiggerThanARegion() throws Exception {
+		final File f = new File(dir, "big.dat");
+		final byte[] big = new byte[20 << 20];
+		for (int i = 0; i < big.length; i++) {
+			big[i] = (byte) (i * 31 + i / 1000);
+		}
+		final MappedRecordFile.Appender a = MappedRecordFile.appender(f);
+		a.append("before");
+		a.append(big);
+		a.append("after");
+		a.close();
+		final MappedRecordFile.Reader rd = MappedRecordFile.reader(f);
+		assertEquals("after", rd.read(2));
+		assertArrayEquals(big, (byte[]) rd.read(1));
+		assertEquals("before", rd.read(0));
+		rd.close();
+	}
+
+	@Test
+	void externalizableBiggerThanARegion() throws Exception {
+		final File f = new File(dir, "blob.dat");
+		final byte[] big = new byte[20 << 20];
+		for (int i = 0; i < big.length; i++) {
+			big[i] = (byte) (i * 17 + i / 999);
+		}
+		final MappedRecordFile.Appender a = MappedRecordFile.appender(f);
+		a.append("before");
+		a.append(new Blob(big));
+		a.append("after");
+		a.close();
+		final MappedRecordFile.Reader rd = MappedRecordFile.reader(f);
+		assertArrayEquals(big, ((Blob) rd.read(1)).data);
+		assertEquals("after", rd.read(2));
+		rd.close();
+	}
+
+	@Test
+	void reopenWithoutClose() throws Exception {
+		final File f = new File(dir, "crash.dat");
+		final MappedRecordFile.Appender crashed = MappedRecordFile.appender(f);
+		for (int i = 0; i < 100; i++) {
+			crashed.append(record(i));
+		}
+		// the file still holds the whole mapped region
+		crashed.flush();
+		assertTrue(f.length() > 1 << 20);
+		final MappedRecordFile.Appender a = MappedRecordFile.appender(f);
+		assertEquals(100, a.size());
+		for (int i = 100; i < 200; i++) {
+			assertEquals(i, a.append(record(i)));
+		}
+		a.close();
+		// the second appender went on right after the last record
+		assertTrue(f.length() < 1 << 20);
+		final MappedRecordFile.Reader rd = MappedRecordFile.reader(f);
+		assertEquals(200, rd.size());
+		assertEquals(f.length(), rd.offset(199) + 4 + rd.bytes(199).remaining());
+		for (int i = 0; i < 200; i++) {
+			assertRecord(i, rd.read(i));
+		}
+		rd.close();
+	}
+
+	@Test
+	void badRecordNumber() throws Exception {
+		final File f = new File(dir, "small.dat");
+		final MappedRecordFile.Appender a = MappedRecordFile.appender(f);
+		a.append("only");
+		a.close();
+		final MappedRecordFile.Reader rd = MappedRecordFile.reader(f);
+		assertThrows(IndexOutOfBoundsException.class, () -> rd.read(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> rd.read(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> rd.bytes(1));
+		assertEquals("only", rd.read(0));
+		rd.close();
+	}
+
+	@Test
+	void recordsAreSelfContained() throws Exception {
+		final File f = new File(dir, "raw.dat");
+		final MappedRecordFile.Appender a = MappedRecordFile.appender(f);
+		a.append(new Entry(1, "one"));
+		a.append(new Entry(2, "two"));
+		a.close();
+		final MappedRecordFile.Reader rd = MappedRecordFile.reader(f);
+		final ByteBuffer second = rd.bytes(1);
+		assertTrue(second.remaining() > 0);
+		assertEquals(new Entry(2, "two"), new BeanSerializer().deserialize(second));
+		rd.close();
+	}
+
+	@Test
+	void badRecordLength() throws Exception {
+		final File f = new File(dir, "bad.dat");
+		final MappedRecordFile.Appender a = MappedRecordFile.appender(f);
+		a.append("first");
+		a.append("second");
+		a.close();
+		final RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		raf.writeInt(Integer.MAX_VALUE);
+		raf.close();
+		final MappedRecordFile.Reader rd = MappedRecordFile.reader(f);
+		assertThrows(StreamCorruptedException.class, () -> rd.read(0));
+		assertThrows(StreamCorruptedException.class, () -> rd.bytes(0));
+		assertEquals("second", rd.read(1));
+		rd.close();
+	}
+}
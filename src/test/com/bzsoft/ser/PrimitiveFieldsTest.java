@@ -0,0 +1,117 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.Test;
+
+class PrimitiveFieldsTest {
+
+	static class Primitives implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		boolean							z;
+		byte								b;
+		char								c;
+		short								s;
+		int								i;
+		long								l;
+		float								f;
+		double							d;
+		Integer							boxed;
+		String							text;
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Primitives)) {
+				return false;
+			}
+			final Primitives p = (Primitives) o;
+			return p.z == z && p.b == b && p.c == c && p.s == s && p.i == i && p.l == l && Float.compare(p.f, f) == 0
+					&& Double.compare(p.d, d) == 0 && Objects.equals(p.boxed, boxed) && Objects.equals(p.text, text);
+		}
+
+		@Override
+		public int hashCode() {
+			return i;
+		}
+	}
+
+	private static Primitives primitives(final int k) {
+		final Primitives p = new Primitives();
+		p.z = k % 2 == 0;
+		p.b = (byte) (k * 37);
+		p.c = (char) (k * 4099);
+		p.s = (short) (k * 1009);
+		p.i = k * -100003;
+		p.l = (long) k << 40 ^ k;
+		p.f = k / 3f;
+		p.d = -k / 7.0;
+		p.boxed = k % 3 == 0 ? null : k;
+		p.text = "p" + k;
+		return p;
+	}
+
+	private static List<?> roundTrip(final List<?> list) throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeObject(list);
+		out.close();
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		final List<?> back = (List<?>) in.readObject();
+		assertEquals(-1, in.read());
+		assertEquals(list, back);
+		return back;
+	}
+
+	@Test
+	void everyPrimitiveType() throws Exception {
+		final List<Object> list = new ArrayList<Object>();
+		for (int k = 0; k < 100; k++) {
+			list.add(primitives(k));
+		}
+		roundTrip(list);
+	}
+
+	@Test
+	void extremes() throws Exception {
+		final Primitives min = new Primitives();
+		min.b = Byte.MIN_VALUE;
+		min.c = Character.MIN_VALUE;
+		min.s = Short.MIN_VALUE;
+		min.i = Integer.MIN_VALUE;
+		min.l = Long.MIN_VALUE;
+		min.f = Float.NEGATIVE_INFINITY;
+		min.d = Double.NaN;
+		final Primitives max = new Primitives();
+		max.z = true;
+		max.b = Byte.MAX_VALUE;
+		max.c = Character.MAX_VALUE;
+		max.s = Short.MAX_VALUE;
+		max.i = Integer.MAX_VALUE;
+		max.l = Long.MAX_VALUE;
+		max.f = Float.MAX_VALUE;
+		max.d = Double.MIN_VALUE;
+		roundTrip(Arrays.asList(min, max));
+	}
+
+	@Test
+	void backReferencesAroundPrimitiveFields() throws Exception {
+		// primitive fields take no slot in the reference set on either side
+		final String shared = "shared";
+		final Primitives p = primitives(4);
+		p.text = shared;
+		final List<?> back = roundTrip(new ArrayList<Object>(Arrays.asList(p, shared, p)));
+		assertSame(((Primitives) back.get(0)).text, back.get(1));
+		assertSame(back.get(0), back.get(2));
+	}
+}
@@ -0,0 +1,215 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class RecordStreamTest {
+
+	static class Bean implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		int								id;
+		String							name;
+
+		Bean(final int id) {
+			this.id = id;
+			name = "record-" + id;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Bean && ((Bean) o).id == id && ((Bean) o).name.equals(name);
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+	}
+
+	private static ExecutorService	executor;
+
+	@BeforeAll
+	static void start() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterAll
+	static void stop() {
+		executor.shutdown();
+	}
+
+	private static List<Object> records(final int n) {
+		final List<Object> ret = new ArrayList<Object>();
+		for (int i = 0; i < n; i++) {
+			// big records end batches early
+			ret.add(i % 1000 == 7 ? null : i % 5000 == 1 ? new int[100000 + i] : new Bean(i));
+		}
+		return ret;
+	}
+
+	/** a record that fills a batch alone and takes a while to read */
+	public static class Slow implements Externalizable {
+
+		static final AtomicInteger	READ	= new AtomicInteger();
+
+		public Slow() {
+			// for the serializer
+		}
+
+		@Override
+		public void writeExternal(final ObjectOutput out) throws IOException {
+			out.write(new byte[70000]);
+		}
+
+		@Override
+		public void readExternal(final ObjectInput in) throws IOException {
+			in.readFully(new byte[70000]);
+			try {
+				Thread.sleep(50);
+			} catch (final InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			READ.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Identifies a record of {@link #records(int)} by value.
+	 */
+	private static String key(final Object o) {
+		if (o instanceof int[]) {
+			return "array-" + ((int[]) o).length;
+		}
+		return o == null ? "null" : ((Bean) o).name;
+	}
+
+	private static byte[] write(final List<Object> records, final boolean compact) throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final RecordStream.Writer w = RecordStream.writer(bos, new BeanSerializer(new BeanSerializer.Options().compact(compact)));
+		for (final Object o : records) {
+			w.write(o);
+		}
+		w.close();
+		assertEquals(records.size(), w.size());
+		return bos.toByteArray();
+	}
+
+	private static List<Object> readAll(final RecordStream.Reader rd) throws Exception {
+		final List<Object> ret = new ArrayList<Object>();
+		while (rd.hasNext()) {
+			ret.add(rd.next());
+		}
+		rd.close();
+		return ret;
+	}
+
+	@Test
+	void ordered() throws Exception {
+		for (final int n : new int[] { 0, 1, 1023, 1024, 1025, 20000 }) {
+			final List<Object> records = records(n);
+			for (final boolean compact : new boolean[] { false, true }) {
+				final BeanSerializer.Options options = new BeanSerializer.Options().compact(compact);
+				final RecordStream.Reader rd = RecordStream.reader(new ByteArrayInputStream(write(records, compact)),
+						() -> new BeanSerializer(options), executor, true);
+				final List<Object> back = readAll(rd);
+				assertEquals(records.size(), back.size());
+				for (int i = 0; i < records.size(); i++) {
+					assertTrue(Objects.deepEquals(records.get(i), back.get(i)));
+				}
+			}
+		}
+	}
+
+	@Test
+	void unordered() throws Exception {
+		final List<Object> records = records(20000);
+		final List<Object> back = readAll(RecordStream.reader(new ByteArrayInputStream(write(records, false)), executor, false));
+		assertEquals(records.size(), back.size());
+		final Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < records.size(); i++) {
+			counts.merge(key(records.get(i)), 1, Integer::sum);
+			counts.merge(key(back.get(i)), -1, Integer::sum);
+		}
+		for (final int c : counts.values()) {
+			assertEquals(0, c);
+		}
+	}
+
+	@Test
+	void emptyStream() throws Exception {
+		final RecordStream.Reader rd = RecordStream.reader(new ByteArrayInputStream(new byte[0]), executor, true);
+		assertFalse(rd.hasNext());
+		assertThrows(NoSuchElementException.class, rd::next);
+	}
+
+	@Test
+	void closeBeforeTheEnd() throws Exception {
+		for (final boolean ordered : new boolean[] { true, false }) {
+			final RecordStream.Reader rd = RecordStream.reader(new ByteArrayInputStream(write(records(50000), false)), executor, ordered);
+			assertTrue(rd.hasNext());
+			rd.next();
+			// cancels the batches still being decoded
+			rd.close();
+		}
+	}
+
+	@Test
+	void closeCancelsUnorderedBatches() throws Exception {
+		final List<Object> records = new ArrayList<Object>();
+		for (int i = 0; i < 10; i++) {
+			records.add(new Slow());
+		}
+		final byte[] bytes = write(records, false);
+		final ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			Slow.READ.set(0);
+			final RecordStream.Reader rd = RecordStream.reader(new ByteArrayInputStream(bytes), BeanSerializer::new, single, false);
+			rd.next();
+			rd.close();
+			// runs after every batch that was not cancelled
+			single.submit(() -> null).get();
+			// the batch being decoded is interrupted, the queued ones never run
+			assertEquals(1, Slow.READ.get());
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	@Test
+	void corrupted() throws Exception {
+		final byte[] bytes = write(Arrays.asList((Object) "a", "b"), false);
+		final byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+		assertThrows(EOFException.class, () -> readAll(RecordStream.reader(new ByteArrayInputStream(truncated), executor, true)));
+		bytes[0] = (byte) 0x80;
+		assertThrows(StreamCorruptedException.class, () -> readAll(RecordStream.reader(new ByteArrayInputStream(bytes), executor, true)));
+	}
+}
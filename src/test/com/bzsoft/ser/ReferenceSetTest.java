@@ -0,0 +1,71 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class ReferenceSetTest {
+
+	@Test
+	void identityLookup() {
+		final ReferenceSet<Object> set = new ReferenceSet<Object>();
+		final String a = new String("same");
+		final String b = new String("same");
+		set.add(a);
+		assertEquals(0, set.indexOf(a));
+		assertEquals(-1, set.indexOf(b));
+		set.add(b);
+		assertEquals(1, set.indexOf(b));
+		assertSame(b, set.elementOf(1));
+		// added twice keeps the first index
+		set.add(a);
+		assertEquals(0, set.indexOf(a));
+		assertEquals(3, set.getSize());
+	}
+
+	@Test
+	void growsWhileLookingUp() {
+		final ReferenceSet<Object> set = new ReferenceSet<Object>();
+		final Object[] objects = new Object[100000];
+		for (int i = 0; i < objects.length; i++) {
+			objects[i] = new Object();
+			set.add(objects[i]);
+			if (i % 1000 == 0) {
+				// hashes the pending entries
+				assertEquals(i / 2, set.indexOf(objects[i / 2]));
+			}
+		}
+		for (int i = 0; i < objects.length; i++) {
+			assertEquals(i, set.indexOf(objects[i]));
+			assertSame(objects[i], set.elementOf(i));
+		}
+		assertEquals(-1, set.indexOf(new Object()));
+	}
+
+	@Test
+	void clearAndReuse() {
+		final ReferenceSet<Object> set = new ReferenceSet<Object>();
+		final Object[] objects = new Object[5000];
+		for (int i = 0; i < objects.length; i++) {
+			objects[i] = new Object();
+		}
+		// a full table, then a few entries left in the big table
+		for (final int n : new int[] { 5000, 10, 3000, 1, 0, 200 }) {
+			for (int i = 0; i < n; i++) {
+				set.add(objects[i]);
+			}
+			set.add(objects[0]);
+			assertEquals(n == 0 ? 0 : n - 1, set.indexOf(objects[n == 0 ? 0 : n - 1]));
+			set.clear();
+			assertEquals(0, set.getSize());
+			for (final Object o : objects) {
+				assertEquals(-1, set.indexOf(o));
+			}
+		}
+		set.add(objects[7]);
+		assertEquals(0, set.indexOf(objects[7]));
+		assertNull(set.elementOf(1));
+	}
+}
@@ -0,0 +1,165 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class RoundTripTest {
+
+	static class Point implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private int						x;
+		private String					label;
+		private long[]					values;
+		private Point					next;
+
+		Point() {
+			// for the serializer
+		}
+
+		Point(final int x, final String label, final long[] values, final Point next) {
+			this.x = x;
+			this.label = label;
+			this.values = values;
+			this.next = next;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Point)) {
+				return false;
+			}
+			final Point p = (Point) o;
+			return p.x == x && Objects.equals(p.label, label) && Arrays.equals(p.values, values) && Objects.equals(p.next, next);
+		}
+
+		@Override
+		public int hashCode() {
+			return x;
+		}
+	}
+
+	private static byte[] write(final Object... objects) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		for (final Object o : objects) {
+			out.writeObject(o);
+		}
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static Object roundTrip(final Object o) throws Exception {
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(o)));
+		final Object back = in.readObject();
+		assertEquals(-1, in.read(), "trailing bytes");
+		if (o != null) {
+			assertEquals(o.getClass(), back.getClass());
+		}
+		assertTrue(Objects.deepEquals(o, back), () -> o + " read as " + back);
+		return back;
+	}
+
+	@Test
+	void scalars() throws Exception {
+		for (final Object o : new Object[] { null, true, false, 0, 1, -1, 16, 17, -9, -10, 255, 256, -300, 65535, 70000, -70000, 1 << 24,
+				Integer.MIN_VALUE, Integer.MAX_VALUE, 0L, 16L, -1L, 1L << 20, 1L << 40, -(1L << 50), Long.MIN_VALUE, Long.MAX_VALUE, (byte) 0,
+				(byte) -1, Byte.MAX_VALUE, (char) 0, 'x', '€', Character.MAX_VALUE, (short) 0, (short) -200, Short.MIN_VALUE, Short.MAX_VALUE,
+				0f, -1f, 1.5f, 200f, Float.NaN, Float.MAX_VALUE, Float.NEGATIVE_INFINITY, 0d, 1d, -3000d, 70000d, 1.25d, Double.NaN,
+				Double.MIN_VALUE, Double.POSITIVE_INFINITY }) {
+			roundTrip(o);
+		}
+	}
+
+	@Test
+	void objects() throws Exception {
+		for (final Object o : new Object[] { "", "a", "hello world", "unicode €中", new BigInteger("-123456789012345678901234567890"),
+				new BigDecimal("12345.6789"), String.class, int[].class, new Date(123456789L), new UUID(1, -2) }) {
+			roundTrip(o);
+		}
+	}
+
+	@Test
+	void primitiveArrays() throws Exception {
+		final byte[] same = new byte[100];
+		Arrays.fill(same, (byte) 5);
+		for (final Object o : new Object[] { new byte[0], new byte[] { 1, -2, 3 }, same, new boolean[] { true, false, true },
+				new short[] { 1, -2, Short.MAX_VALUE }, new char[] { 'a', '€' }, new float[] { 1.5f, -2f }, new double[] { 3.25, -1e300 },
+				new int[0], new int[] { 1, -2, 100 }, new int[] { 1000, -20000 }, new int[] { 100000, 3 }, new int[] { Integer.MIN_VALUE, 0 },
+				new long[0], new long[] { 1, -2, 100 }, new long[] { 1000, -20000 }, new long[] { 100000, -100000 }, new long[] { 1L << 40, 3 },
+				new long[] { Long.MIN_VALUE, Long.MAX_VALUE } }) {
+			roundTrip(o);
+		}
+	}
+
+	@Test
+	void collections() throws Exception {
+		final List<Object> list = new ArrayList<Object>(Arrays.asList("a", 1, null, new int[] { 2 }));
+		final HashMap<Object, Object> map = new HashMap<Object, Object>();
+		map.put("k", 1);
+		map.put(2, "v");
+		map.put(null, null);
+		for (final Object o : new Object[] { new ArrayList<Object>(), new ArrayList<Object>(Arrays.asList(1L, 2L, null)),
+				new LinkedList<Object>(Arrays.asList("x", 2)), new HashSet<Object>(Arrays.asList("h", 2)),
+				new LinkedHashSet<Object>(Arrays.asList("l", 3)), new TreeSet<Object>(Arrays.asList("b", "a")), map,
+				new LinkedHashMap<Object, Object>(map), new TreeMap<Object, Object>(Collections.singletonMap("t", 1)) }) {
+			roundTrip(o);
+		}
+		final List<?> back = (List<?>) new ObjectInputStream(new ByteArrayInputStream(write(list))).readObject();
+		assertEquals(4, back.size());
+		assertEquals(Arrays.asList("a", 1, null), back.subList(0, 3));
+		assertTrue(Arrays.equals(new int[] { 2 }, (int[]) back.get(3)));
+	}
+
+	@Test
+	void objectArrays() throws Exception {
+		for (final Object o : new Object[] { new Object[0], new Object[3], new Object[] { "x", 1, null }, new String[] { "p", "q" },
+				new Object[] { 1L, -2L, 300L } }) {
+			roundTrip(o);
+		}
+	}
+
+	@Test
+	void beans() throws Exception {
+		roundTrip(new Point(1, null, null, null));
+		roundTrip(new Point(-7, "p", new long[] { 1, 2 }, new Point(2, "next", new long[0], null)));
+	}
+
+	@Test
+	void sharedAndCyclicReferences() throws Exception {
+		final Point shared = new Point(1, "shared", null, null);
+		final List<Object> list = new ArrayList<Object>(Arrays.asList(shared, shared, "x"));
+		list.add(list);
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(list, shared)));
+		final List<?> back = (List<?>) in.readObject();
+		assertEquals(shared, back.get(0));
+		assertSame(back.get(0), back.get(1));
+		assertSame(back, back.get(3));
+		assertSame(back.get(0), in.readObject());
+	}
+}
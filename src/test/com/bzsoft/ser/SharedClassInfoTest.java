@@ -0,0 +1,104 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class SharedClassInfoTest {
+
+	static class A implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		int								x;
+		String							s;
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof A && ((A) o).x == x && Objects.equals(((A) o).s, s);
+		}
+
+		@Override
+		public int hashCode() {
+			return x;
+		}
+	}
+
+	static class B extends A {
+
+		private static final long	serialVersionUID	= 1L;
+
+		long								y;
+		A									a;
+
+		@Override
+		public boolean equals(final Object o) {
+			return super.equals(o) && o instanceof B && ((B) o).y == y && Objects.equals(((B) o).a, a);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) y;
+		}
+	}
+
+	@Test
+	void oneClassInfoPerClass() throws Exception {
+		assertSame(BeanSerializer.getClassInfo(B.class), BeanSerializer.getClassInfo(B.class));
+		assertEquals(4, BeanSerializer.getClassInfo(B.class).getFieldCount());
+	}
+
+	@Test
+	void concurrentSerializers() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int t = 0; t < 32; t++) {
+				final int seed = t;
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						final List<Object> list = new ArrayList<Object>();
+						for (int i = 0; i < 500; i++) {
+							final A a = new A();
+							a.x = seed * 1000 + i;
+							a.s = "a" + i;
+							final B b = new B();
+							b.x = i;
+							b.y = seed;
+							b.a = i % 2 == 0 ? a : null;
+							list.add(i % 3 == 0 ? a : b);
+						}
+						final BeanSerializer.Options options = new BeanSerializer.Options().compact(seed % 2 == 0);
+						final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+						final ObjectOutputStream out = new ObjectOutputStream(bos, new BeanSerializer(options));
+						out.writeObject(list);
+						out.close();
+						final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()),
+								new BeanSerializer(options));
+						assertEquals(list, in.readObject());
+						return null;
+					}
+				}));
+			}
+			for (final Future<Void> f : futures) {
+				f.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class SkipTest {
+
+	enum Color {
+		RED, GREEN
+	}
+
+	static class Inner implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		String							a;
+		int								b;
+
+		Inner(final String a, final int b) {
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Inner && Objects.equals(((Inner) o).a, a) && ((Inner) o).b == b;
+		}
+
+		@Override
+		public int hashCode() {
+			return b;
+		}
+	}
+
+	/** every kind of field, for the BEAN, BEAN_COMPACT and BEAN_INDEXED skips */
+	static class Bean implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		boolean							z;
+		byte								by;
+		char								c;
+		short								s;
+		int								i;
+		long								l;
+		float								f;
+		double							d;
+		String							name;
+		Object							any;
+		Inner								inner;
+		Color								color;
+		int[]								arr;
+
+		Bean(final int k) {
+			z = k % 2 == 0;
+			by = (byte) k;
+			c = (char) (k * 31);
+			s = (short) (k * 1000);
+			i = -k * 100000;
+			l = 1L << k % 60;
+			f = k / 2f;
+			d = k / 3.0;
+			name = k % 3 == 0 ? null : "bean-" + k;
+			any = k % 4 == 0 ? Long.valueOf(k) : "any";
+			inner = new Inner("in" + k, k);
+			color = Color.values()[k % 2];
+			arr = k % 5 == 0 ? null : new int[] { k, k + 1 };
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Bean)) {
+				return false;
+			}
+			final Bean b = (Bean) o;
+			return b.z == z && b.by == by && b.c == c && b.s == s && b.i == i && b.l == l && b.f == f && b.d == d && Objects.equals(b.name, name)
+					&& Objects.equals(b.any, any) && Objects.equals(b.inner, inner) && b.color == color && Arrays.equals(b.arr, arr);
+		}
+
+		@Override
+		public int hashCode() {
+			return i;
+		}
+	}
+
+	public static class Ext implements Externalizable {
+
+		String	v;
+
+		public Ext() {
+			// for the serializer
+		}
+
+		Ext(final String v) {
+			this.v = v;
+		}
+
+		@Override
+		public void writeExternal(final ObjectOutput out) throws IOException {
+			out.writeObject(v);
+			out.writeInt(7);
+		}
+
+		@Override
+		public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+			v = (String) in.readObject();
+			in.readInt();
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Ext && Objects.equals(((Ext) o).v, v);
+		}
+
+		@Override
+		public int hashCode() {
+			return 1;
+		}
+	}
+
+	/**
+	 * One value per family of headers, with the small and packed boundaries.
+	 */
+	private static List<Object> values() {
+		final List<Object> v = new ArrayList<Object>();
+		Collections.addAll(v, null, true, false, 0, 16, -9, 255, 65535, -70000, Integer.MAX_VALUE, Integer.MIN_VALUE, 0L, 1234567890123L,
+				Long.MIN_VALUE, 1.5f, Float.NaN, 0.25, Double.MAX_VALUE, (byte) -3, (short) 1234, 'c', '€', "", "short", "a latin-1 string ä",
+				"a utf-8 string €", "a lone \ud800 surrogate", new BigInteger("-123456789012345678901234567890"), new BigDecimal("1.25"),
+				new Date(1), new UUID(1, 2), Color.GREEN, new Inner("x", 1), new Bean(1), new Bean(12), new Ext("e"));
+		final long[] ts = new long[300];
+		final int[] clustered = new int[300];
+		final boolean[] runs = new boolean[300];
+		for (int i = 0; i < ts.length; i++) {
+			ts[i] = 1700000000000L + i * 1000L;
+			clustered[i] = 1000000 + i * 7919 % 300;
+			runs[i] = i > 100 && i < 250;
+		}
+		final BitSet bits = new BitSet();
+		bits.set(5, 5000);
+		final byte[] bytes = new byte[100];
+		Arrays.fill(bytes, (byte) 4);
+		Collections.addAll(v, new int[0], new int[] { 1, -1 }, new int[] { 100000, -100000, 3 }, ts, clustered, new long[] { Long.MIN_VALUE, 7 },
+				new double[] { 1, 2 }, new float[] { 3 }, new short[] { 4 }, new char[] { 'x' }, bytes, new byte[] { 1, 2 }, runs,
+				new boolean[] { true, false, true }, bits, new String[] { "s", null }, new Object[] { 1, "two", new Inner("y", 2) });
+		final HashMap<Object, Object> map = new HashMap<Object, Object>();
+		map.put("k", new Inner("v", 3));
+		map.put(null, Arrays.asList(1, 2));
+		final TreeMap<Object, Object> tree = new TreeMap<Object, Object>();
+		tree.put("a", 1);
+		Collections.addAll(v, new ArrayList<Object>(Arrays.asList("l", 1L, null)), new LinkedList<Object>(Arrays.asList("linked")),
+				new HashSet<Object>(Arrays.asList("set")), map, tree, new ArrayList<Object>());
+		return v;
+	}
+
+	private static List<BeanSerializer> configurations(final int copies) {
+		final List<BeanSerializer> ret = new ArrayList<BeanSerializer>();
+		for (final TrackingPolicy policy : TrackingPolicy.values()) {
+			for (final boolean compact : new boolean[] { false, true }) {
+				for (final int dictionary : new int[] { 0, 64 }) {
+					for (final boolean indexed : new boolean[] { false, true }) {
+						final Set<Class<?>> classes = indexed ? new HashSet<Class<?>>(Arrays.asList(Bean.class, Inner.class)) : null;
+						final BeanSerializer.Options options = new BeanSerializer.Options().compact(compact).trackingPolicy(policy)
+								.stringDictionarySize(dictionary).indexedClasses(classes);
+						for (int i = 0; i < copies; i++) {
+							ret.add(new BeanSerializer(options));
+						}
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static byte[] write(final Serializer<Object> serializer, final Object... objects) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, serializer);
+		for (final Object o : objects) {
+			out.writeObject(o);
+		}
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static ObjectInputStream reader(final byte[] bytes, final Serializer<Object> serializer) throws IOException {
+		return new ObjectInputStream(new ByteArrayInputStream(bytes), serializer);
+	}
+
+	@Test
+	void skipEveryValue() throws Exception {
+		final List<Object> values = values();
+		final List<BeanSerializer> serializers = configurations(4);
+		for (int c = 0; c < serializers.size(); c += 4) {
+			// an object read before, referenced by the skipped and the read ones
+			final Inner shared = new Inner("shared", 42);
+			final List<Object> stream = new ArrayList<Object>();
+			stream.add(shared);
+			for (final Object o : values) {
+				stream.add(o);
+				stream.add(Arrays.asList(shared, "e" + stream.size()));
+			}
+			stream.add("tail");
+			stream.add(shared);
+			final byte[] bytes = write(serializers.get(c), stream.toArray());
+			// skip all, the odd ones and the even ones
+			for (int mode = 0; mode < 3; mode++) {
+				final ObjectInputStream in = reader(bytes, serializers.get(c + 1 + mode));
+				in.readObject();
+				for (int i = 1; i < stream.size() - 2; i++) {
+					if (mode == 0 || mode == 1 && i % 2 == 1 || mode == 2 && i % 2 == 0) {
+						in.skipObject();
+					} else {
+						final String where = "configuration " + c / 4 + " mode " + mode + " value " + i;
+						assertTrue(Objects.deepEquals(stream.get(i), in.readObject()), where);
+					}
+				}
+				assertEquals("tail", in.readObject());
+				assertEquals(shared, in.readObject());
+				assertEquals(-1, in.read());
+			}
+		}
+	}
+
+	@Test
+	void skipBuffers() throws Exception {
+		final List<Object> values = values();
+		for (final BeanSerializer s : configurations(1)) {
+			final ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+			for (final Object o : values) {
+				s.serialize(buf, o);
+			}
+			buf.flip();
+			final ByteBuffer skipped = buf.duplicate();
+			for (int i = 0; i < values.size(); i++) {
+				s.skip(skipped);
+				assertTrue(Objects.deepEquals(values.get(i), s.deserialize(buf)));
+				assertEquals(buf.position(), skipped.position());
+			}
+			assertEquals(buf.limit(), skipped.position());
+		}
+	}
+
+	@Test
+	void skipUnsizedContainers() throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, new BeanSerializer(new BeanSerializer.Options().compact(true)));
+		out.writeListStart();
+		out.writeObject("u1");
+		out.writeObject(new Inner("u", 3));
+		out.writeEnd();
+		out.writeMapStart();
+		out.writeObject("mk");
+		out.writeObject(new long[] { 1, 2 });
+		out.writeEnd();
+		out.writeObject("tail");
+		out.close();
+		final ObjectInputStream in = reader(bos.toByteArray(), new BeanSerializer(new BeanSerializer.Options().compact(true)));
+		in.skipObject();
+		in.skipObject();
+		assertEquals("tail", in.readObject());
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	void referenceToSkipped() throws Exception {
+		final Inner x = new Inner("x", 1);
+		final ObjectInputStream in = reader(write(new BeanSerializer(), x, x), new BeanSerializer());
+		in.skipObject();
+		assertThrows(StreamCorruptedException.class, in::readObject);
+	}
+}
@@ -0,0 +1,186 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.bzsoft.ser.BaseSerializer.Header;
+
+class SortedArraysTest {
+
+	/** empty, below and at the minimum length, around one and two blocks */
+	private static final int[]	LENGTHS	= { 0, 1, SortedArrays.MIN_LENGTH - 1, SortedArrays.MIN_LENGTH, SortedArrays.MIN_LENGTH + 1,
+			SortedArrays.BLOCK_SIZE - 1, SortedArrays.BLOCK_SIZE, SortedArrays.BLOCK_SIZE + 1, 2 * SortedArrays.BLOCK_SIZE + 1 };
+
+	private static byte[] write(final Object o) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeObject(o);
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static int header(final Object o) throws Exception {
+		return write(o)[0] & 0xFF;
+	}
+
+	private static void roundTrip(final Object o) throws Exception {
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(o)));
+		final Object back = in.readObject();
+		assertEquals(-1, in.read());
+		assertEquals(o.getClass(), back.getClass());
+		assertTrue(Objects.deepEquals(o, back));
+	}
+
+	@Test
+	void shortArraysKeepTheOldHeaders() throws Exception {
+		final long[] l = new long[SortedArrays.MIN_LENGTH - 1];
+		final int[] i = new int[SortedArrays.MIN_LENGTH - 1];
+		for (int k = 0; k < l.length; k++) {
+			l[k] = 1700000000000L + k * 1000L;
+			i[k] = 1000000000 + k * 1000;
+		}
+		for (final Object o : new Object[] { l, i, new long[0], new int[0] }) {
+			final int header = header(o);
+			assertTrue(header < Header.ARRAY_INT_DELTA || header > Header.ARRAY_LONG_FOR, () -> Integer.toString(header));
+		}
+		roundTrip(l);
+		roundTrip(i);
+		roundTrip(new long[0]);
+		roundTrip(new int[0]);
+	}
+
+	@Test
+	void deltaForSortedValues() throws Exception {
+		final long[] ts = new long[10000];
+		final int[] ids = new int[10000];
+		long t = 1700000000000L;
+		for (int i = 0; i < ts.length; i++) {
+			t += 1000 + i % 50;
+			ts[i] = t;
+			ids[i] = -2000000000 + i * 3;
+		}
+		assertEquals(Header.ARRAY_LONG_DELTA, header(ts));
+		assertEquals(Header.ARRAY_INT_DELTA, header(ids));
+		roundTrip(ts);
+		roundTrip(ids);
+	}
+
+	@Test
+	void framesForClusteredValues() throws Exception {
+		final Random r = new Random(7);
+		final long[] l = new long[10000];
+		final int[] i = new int[10000];
+		for (int k = 0; k < l.length; k++) {
+			l[k] = 123456789012L + r.nextInt(1000);
+			i[k] = 1000000000 + r.nextInt(300);
+		}
+		assertEquals(Header.ARRAY_LONG_FOR, header(l));
+		assertEquals(Header.ARRAY_INT_FOR, header(i));
+		roundTrip(l);
+		roundTrip(i);
+	}
+
+	@Test
+	void everyBitWidthAndBlockBoundary() throws Exception {
+		final Random r = new Random(7);
+		for (final int n : LENGTHS) {
+			for (int bits = 0; bits <= 64; bits++) {
+				final long[] a = new long[n];
+				final int[] ia = new int[n];
+				final long base = r.nextLong();
+				for (int k = 0; k < n; k++) {
+					final long off = bits == 0 ? 0 : bits == 64 ? r.nextLong() : r.nextLong() >>> 64 - bits;
+					a[k] = base + off;
+					ia[k] = (int) (base + off);
+				}
+				if (r.nextBoolean()) {
+					Arrays.sort(a);
+					Arrays.sort(ia);
+				}
+				assertArrays(a, ia);
+			}
+		}
+	}
+
+	@Test
+	void extremes() throws Exception {
+		for (final int n : new int[] { 1, 127, 128, 129, 300 }) {
+			final long[] a = new long[n];
+			final int[] ia = new int[n];
+			for (int k = 0; k < n; k++) {
+				a[k] = k % 3 == 0 ? Long.MIN_VALUE : k % 3 == 1 ? Long.MAX_VALUE : Long.MIN_VALUE + k;
+				ia[k] = k % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE - k;
+			}
+			assertArrays(a, ia);
+			Arrays.fill(a, Long.MAX_VALUE);
+			Arrays.fill(ia, Integer.MIN_VALUE);
+			assertArrays(a, ia);
+		}
+	}
+
+	/**
+	 * Both encodings directly, whichever the serializer would choose. Long
+	 * arrays with differences beyond the packed range can not be written with
+	 * them.
+	 */
+	private static void assertArrays(final long[] a, final int[] ia) throws Exception {
+		roundTrip(a);
+		roundTrip(ia);
+		final long[] sizes = SortedArrays.sizes(a);
+		final boolean delta = sizes[0] < Integer.MAX_VALUE;
+		final boolean frames = sizes[1] < Integer.MAX_VALUE;
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bos);
+		if (delta) {
+			SortedArrays.writeDelta(out, a);
+		}
+		if (frames) {
+			SortedArrays.writeFrames(out, a);
+		}
+		SortedArrays.writeDelta(out, ia);
+		SortedArrays.writeFrames(out, ia);
+		out.writeByte(42);
+		final byte[] bytes = bos.toByteArray();
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		final long[] a2 = new long[a.length];
+		final int[] ia2 = new int[ia.length];
+		if (delta) {
+			SortedArrays.readDelta(in, a2);
+			assertArrayEquals(a, a2);
+		}
+		if (frames) {
+			Arrays.fill(a2, 0);
+			SortedArrays.readFrames(in, a2);
+			assertArrayEquals(a, a2);
+		}
+		SortedArrays.readDelta(in, ia2);
+		assertArrayEquals(ia, ia2);
+		Arrays.fill(ia2, 0);
+		SortedArrays.readFrames(in, ia2);
+		assertArrayEquals(ia, ia2);
+		assertEquals(42, in.readByte());
+		// frames skipped without unpacking
+		in = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (delta) {
+			SortedArrays.readDelta(in, a2);
+		}
+		if (frames) {
+			SortedArrays.skipFrames(in, a.length, 64);
+		}
+		SortedArrays.readDelta(in, ia2);
+		SortedArrays.skipFrames(in, ia.length, 32);
+		assertEquals(42, in.readByte());
+	}
+}
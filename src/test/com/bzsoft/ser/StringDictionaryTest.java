@@ -0,0 +1,129 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class StringDictionaryTest {
+
+	private static String repeat(final char c, final int n) {
+		final char[] chars = new char[n];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	private static byte[] write(final Serializer<Object> serializer, final Object... objects) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, serializer);
+		for (final Object o : objects) {
+			out.writeObject(o);
+		}
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static ObjectInputStream reader(final byte[] bytes, final Serializer<Object> serializer) throws IOException {
+		return new ObjectInputStream(new ByteArrayInputStream(bytes), serializer);
+	}
+
+	@Test
+	void accepts() {
+		assertFalse(StringDictionary.accepts(""));
+		assertFalse(StringDictionary.accepts("a"));
+		assertTrue(StringDictionary.accepts("ab"));
+		assertTrue(StringDictionary.accepts(repeat('x', StringDictionary.MAX_LENGTH)));
+		assertFalse(StringDictionary.accepts(repeat('x', StringDictionary.MAX_LENGTH + 1)));
+	}
+
+	@Test
+	void clockEviction() {
+		final StringDictionary d = new StringDictionary(3);
+		assertEquals(0, d.add("s0"));
+		assertEquals(1, d.add("s1"));
+		assertEquals(2, d.add("s2"));
+		assertEquals(1, d.indexOf("s1"));
+		// s1 was hit, gets a second chance
+		assertEquals(0, d.add("s3"));
+		assertEquals(-1, d.indexOf("s0"));
+		assertEquals(2, d.add("s4"));
+		assertEquals(1, d.indexOf("s1"));
+		assertEquals("s3", d.get(0));
+		assertNull(d.get(3));
+		d.clear();
+		assertEquals(-1, d.indexOf("s1"));
+		assertEquals(0, d.add("s5"));
+	}
+
+	@Test
+	void writerAndReaderAgree() {
+		// same sequence of adds and hits on both sides, by value and by slot
+		final StringDictionary writer = new StringDictionary(16);
+		final StringDictionary reader = new StringDictionary(16);
+		final Random r = new Random(3);
+		for (int i = 0; i < 10000; i++) {
+			final String s = "str" + r.nextInt(r.nextBoolean() ? 8 : 100);
+			final int slot = writer.indexOf(s);
+			if (slot >= 0) {
+				assertEquals(s, reader.get(slot));
+			} else {
+				assertEquals(writer.add(s), reader.add(s));
+			}
+		}
+	}
+
+	@Test
+	void serializerRoundTrip() throws Exception {
+		final Random r = new Random(5);
+		final List<Object> strings = new ArrayList<Object>();
+		for (int i = 0; i < 5000; i++) {
+			// new instances, so only the dictionary makes them references
+			strings.add(new String("value-" + r.nextInt(r.nextBoolean() ? 5 : 300)));
+		}
+		for (final int size : new int[] { 1, 8, 64, 1024 }) {
+			for (final TrackingPolicy policy : TrackingPolicy.values()) {
+				final BeanSerializer.Options options = new BeanSerializer.Options().trackingPolicy(policy).stringDictionarySize(size);
+				final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				final ObjectOutputStream out = new ObjectOutputStream(bos, new BeanSerializer(options));
+				for (int i = 0; i < strings.size(); i++) {
+					out.writeObject(strings.get(i));
+					if (i == 2500) {
+						out.reset();
+					}
+				}
+				out.close();
+				final ObjectInputStream in = reader(bos.toByteArray(), new BeanSerializer(options));
+				for (final Object s : strings) {
+					assertEquals(s, in.readObject(), () -> size + " " + policy);
+				}
+				assertEquals(-1, in.read());
+			}
+		}
+	}
+
+	@Test
+	void repeatedStringsShareInstances() throws Exception {
+		final Object[] strings = new Object[100];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = new String("status-" + i % 2);
+		}
+		final BeanSerializer.Options options = new BeanSerializer.Options().trackingPolicy(TrackingPolicy.VALUE).stringDictionarySize(16);
+		final ObjectInputStream in = reader(write(new BeanSerializer(options), strings), new BeanSerializer(options));
+		final Object first = in.readObject();
+		in.readObject();
+		assertSame(first, in.readObject());
+		final int plain = write(new BeanSerializer(new BeanSerializer.Options().trackingPolicy(TrackingPolicy.VALUE)), strings).length;
+		assertTrue(write(new BeanSerializer(options), strings).length < plain);
+	}
+}
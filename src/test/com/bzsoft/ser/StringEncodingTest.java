@@ -0,0 +1,97 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class StringEncodingTest {
+
+	private static final String[]	STRINGS	= { "", "a", "ten chars.", "eleven char", "café crème brûlée", "ÿþýüûúùø÷öõ",
+			"中文字符串测试一二三四", "emoji 😀 and 𐀀 pairs", "lone high \ud800 in the middle",
+			"lone low \udc00 in the middle", "ends with a high \ud83d", "\ude00 starts with a low", "Ā just above latin-1 range" };
+
+	private static int header(final String s) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		BaseSerializer.serializeLongString(new DataOutputStream(bos), s);
+		return bos.toByteArray()[0] & 0xFF;
+	}
+
+	@Test
+	void headers() throws IOException {
+		assertEquals(BaseSerializer.Header.STRING_LATIN1, header("eleven char"));
+		assertEquals(BaseSerializer.Header.STRING_LATIN1, header("café crème brûlée"));
+		assertEquals(BaseSerializer.Header.STRING_UTF8, header("Ā just above latin-1 range"));
+		assertEquals(BaseSerializer.Header.STRING_UTF8, header("emoji 😀 and 𐀀 pairs"));
+		// unpaired surrogates keep the char form
+		assertEquals(BaseSerializer.Header.STRING, header("lone high \ud800 in the middle"));
+		assertEquals(BaseSerializer.Header.STRING, header("lone low \udc00 in the middle"));
+		assertEquals(BaseSerializer.Header.STRING, header("ends with a high \ud83d"));
+		assertEquals(BaseSerializer.Header.STRING, header("\ude00 starts with a low"));
+	}
+
+	@Test
+	void latin1IsOneBytePerChar() throws IOException {
+		final char[] c = new char[1000];
+		Arrays.fill(c, 'é');
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		BaseSerializer.serializeLongString(new DataOutputStream(bos), new String(c));
+		// header, 2 byte packed length, bytes
+		assertEquals(1 + 2 + 1000, bos.size());
+	}
+
+	@Test
+	void streamRoundTrip() throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		for (final String s : STRINGS) {
+			out.writeObject(s);
+			out.writeUTF(s);
+		}
+		out.writeObject(Arrays.asList(STRINGS));
+		out.close();
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		for (final String s : STRINGS) {
+			assertEquals(s, in.readObject());
+			assertEquals(s, in.readUTF());
+		}
+		assertEquals(Arrays.asList(STRINGS), in.readObject());
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	void byteBufferRoundTrip() throws Exception {
+		final BeanSerializer serializer = new BeanSerializer();
+		for (final ByteBuffer buf : new ByteBuffer[] { ByteBuffer.allocate(4096), ByteBuffer.allocateDirect(4096) }) {
+			serializer.serialize(buf, STRINGS);
+			buf.flip();
+			assertArrayEquals(STRINGS, (Object[]) serializer.deserialize(buf));
+		}
+	}
+
+	@Test
+	void backReferencesAfterWriteUTF() throws Exception {
+		final String s = "a string long enough for bytes";
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeUTF(s);
+		out.writeObject(Arrays.asList(s, "other", s));
+		out.close();
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		final String first = in.readUTF();
+		final List<?> l = (List<?>) in.readObject();
+		assertEquals(s, first);
+		assertSame(first, l.get(0));
+		assertEquals("other", l.get(1));
+		assertSame(first, l.get(2));
+	}
+}
@@ -0,0 +1,118 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TrackingPolicyTest {
+
+	static class Node implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		String							name;
+		Node								next;
+	}
+
+	private static byte[] write(final TrackingPolicy policy, final Object o) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, new BeanSerializer(new BeanSerializer.Options().trackingPolicy(policy)));
+		out.writeObject(o);
+		out.close();
+		return bos.toByteArray();
+	}
+
+	private static Object read(final TrackingPolicy policy, final byte[] bytes) throws Exception {
+		final BeanSerializer serializer = new BeanSerializer(new BeanSerializer.Options().trackingPolicy(policy));
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes), serializer);
+		final Object o = in.readObject();
+		assertEquals(-1, in.read());
+		return o;
+	}
+
+	/**
+	 * A shared list, a shared bean and shared values, interleaved so that the
+	 * back reference indexes depend on what each side tracked.
+	 */
+	private static List<Object> shared() {
+		final String s = new String("value");
+		final Long l = Long.valueOf(1234567890123L);
+		final BigInteger big = new BigInteger("123456789012345678901234567890");
+		final Date date = new Date(1);
+		final List<Object> inner = new ArrayList<Object>(Arrays.asList(s, l));
+		final Node node = new Node();
+		node.name = s;
+		return new ArrayList<Object>(Arrays.asList(s, inner, l, node, big, date, s, inner, node, big, date, l));
+	}
+
+	@Test
+	void full() throws Exception {
+		final List<?> back = (List<?>) read(TrackingPolicy.FULL, write(TrackingPolicy.FULL, shared()));
+		assertEquals(12, back.size());
+		assertSame(back.get(0), back.get(6));
+		assertSame(back.get(1), back.get(7));
+		assertSame(back.get(2), back.get(11));
+		assertSame(back.get(3), back.get(8));
+		assertSame(back.get(4), back.get(9));
+		assertSame(back.get(5), back.get(10));
+		assertSame(back.get(0), ((Node) back.get(3)).name);
+		// cycles
+		final Node a = new Node();
+		a.next = new Node();
+		a.next.next = a;
+		final Node b = (Node) read(TrackingPolicy.FULL, write(TrackingPolicy.FULL, a));
+		assertSame(b, b.next.next);
+	}
+
+	@Test
+	void tree() throws Exception {
+		final byte[] bytes = write(TrackingPolicy.TREE, shared());
+		assertTrue(bytes.length > write(TrackingPolicy.FULL, shared()).length);
+		final List<?> back = (List<?>) read(TrackingPolicy.TREE, bytes);
+		assertEquals(12, back.size());
+		assertEquals(back.get(1), back.get(7));
+		assertNotSame(back.get(1), back.get(7));
+		assertNotSame(back.get(3), back.get(8));
+		assertEquals("value", ((Node) back.get(8)).name);
+	}
+
+	@Test
+	void value() throws Exception {
+		final List<?> back = (List<?>) read(TrackingPolicy.VALUE, write(TrackingPolicy.VALUE, shared()));
+		// containers and beans keep their identity
+		assertSame(back.get(1), back.get(7));
+		assertSame(back.get(3), back.get(8));
+		// values are equal copies
+		assertEquals(back.get(0), back.get(6));
+		assertNotSame(back.get(0), back.get(6));
+		assertNotSame(back.get(4), back.get(9));
+		assertEquals(back.get(5), back.get(10));
+		assertEquals(1234567890123L, back.get(11));
+	}
+
+	@Test
+	void byteBufferMessagesUseThePolicy() throws Exception {
+		for (final TrackingPolicy policy : TrackingPolicy.values()) {
+			final ByteBuffer buf = ByteBuffer.allocate(4096);
+			new BeanSerializer(new BeanSerializer.Options().trackingPolicy(policy)).serialize(buf, shared());
+			buf.flip();
+			final List<?> back = (List<?>) new BeanSerializer(new BeanSerializer.Options().trackingPolicy(policy)).deserialize(buf);
+			assertEquals(shared().get(1), back.get(7));
+			assertEquals(policy == TrackingPolicy.TREE, back.get(1) != back.get(7));
+		}
+	}
+}
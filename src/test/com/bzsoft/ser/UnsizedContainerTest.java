@@ -0,0 +1,149 @@
+package com.bzsoft.ser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class UnsizedContainerTest {
+
+	static class Inner implements Serializable {
+
+		private static final long	serialVersionUID	= 1L;
+
+		String							a;
+		int								b;
+
+		Inner(final String a, final int b) {
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Inner && ((Inner) o).a.equals(a) && ((Inner) o).b == b;
+		}
+
+		@Override
+		public int hashCode() {
+			return b;
+		}
+	}
+
+	private static ObjectInputStream reader(final byte[] bytes, final Serializer<Object> serializer) throws IOException {
+		return new ObjectInputStream(new ByteArrayInputStream(bytes), serializer);
+	}
+
+	@Test
+	void nestedListsAndMaps() throws Exception {
+		for (final TrackingPolicy policy : TrackingPolicy.values()) {
+			for (final boolean compact : new boolean[] { false, true }) {
+				for (final int dictionary : new int[] { 0, 64 }) {
+					nestedListsAndMaps(policy, compact, dictionary);
+				}
+			}
+		}
+	}
+
+	private static void nestedListsAndMaps(final TrackingPolicy policy, final boolean compact, final int dictionary) throws Exception {
+		final Inner shared = new Inner("shared", 1);
+		final BeanSerializer.Options options = new BeanSerializer.Options().compact(compact).trackingPolicy(policy)
+				.stringDictionarySize(dictionary);
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos, new BeanSerializer(options));
+		out.writeObject(shared);
+		out.writeListStart();
+		out.writeObject("a");
+		out.writeListStart();
+		out.writeEnd();
+		out.writeMapStart();
+		out.writeObject("k");
+		out.writeObject(shared);
+		out.writeObject(null);
+		out.writeObject(new long[] { Long.MIN_VALUE });
+		out.writeEnd();
+		out.writeObject(shared);
+		out.writeEnd();
+		out.writeObject("tail");
+		out.close();
+		final ObjectInputStream in = reader(bos.toByteArray(), new BeanSerializer(options));
+		final Object first = in.readObject();
+		final List<?> list = (List<?>) in.readObject();
+		assertEquals(ArrayList.class, list.getClass());
+		assertEquals(4, list.size());
+		assertEquals("a", list.get(0));
+		assertEquals(new ArrayList<Object>(), list.get(1));
+		final Map<?, ?> map = (Map<?, ?>) list.get(2);
+		assertEquals(HashMap.class, map.getClass());
+		assertEquals(shared, map.get("k"));
+		assertArrayEquals(new long[] { Long.MIN_VALUE }, (long[]) map.get(null));
+		assertEquals(shared, list.get(3));
+		if (policy != TrackingPolicy.TREE) {
+			assertSame(first, map.get("k"));
+			assertSame(first, list.get(3));
+		}
+		assertEquals("tail", in.readObject());
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	void elementsAndEntries() throws Exception {
+		final Map<Object, Object> map = new HashMap<Object, Object>();
+		for (int i = 0; i < 300; i++) {
+			map.put("k" + i, i % 2 == 0 ? null : new Inner("v", i));
+		}
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeElements(IntStream.range(0, 1000).boxed());
+		out.writeElements(new ArrayList<Object>().iterator());
+		out.writeEntries(map.entrySet().iterator());
+		out.close();
+		final ObjectInputStream in = reader(bos.toByteArray(), new BeanSerializer());
+		assertEquals(IntStream.range(0, 1000).boxed().collect(Collectors.toList()), in.readObject());
+		assertEquals(new ArrayList<Object>(), in.readObject());
+		assertEquals(map, in.readObject());
+	}
+
+	@Test
+	void streamedBack() throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeElements(Arrays.asList("x", 1L, null).iterator());
+		out.writeMapStart();
+		out.writeObject("k");
+		out.writeObject("v");
+		out.writeEnd();
+		out.close();
+		final ObjectInputStream in = reader(bos.toByteArray(), new BeanSerializer());
+		assertEquals(Arrays.asList("x", 1L, null), in.readElementStream().collect(Collectors.toList()));
+		final Iterator<Object> it = in.readElements();
+		final Map.Entry<?, ?> e = (Map.Entry<?, ?>) it.next();
+		assertEquals("k", e.getKey());
+		assertEquals("v", e.getValue());
+	}
+
+	@Test
+	void endWithoutStart() throws Exception {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeEnd();
+		out.close();
+		assertThrows(StreamCorruptedException.class, () -> reader(bos.toByteArray(), new BeanSerializer()).readObject());
+	}
+}